@@ -30,6 +30,15 @@ import io.getlime.security.powerauth.lib.dataadapter.model.response.BankAccountL
 import io.getlime.security.powerauth.lib.dataadapter.model.response.CreateSMSAuthorizationResponse;
 import io.getlime.security.powerauth.lib.dataadapter.model.response.UserDetailResponse;
 import io.getlime.security.powerauth.lib.nextstep.model.entity.OperationFormData;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
@@ -42,11 +51,19 @@ import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Authentication services provides services for communication with the Data Adapter.
  * It uses the RestTemplate class to handle REST API calls. HTTP client is used instead of default client
- * so that error responses contain full response bodies.
+ * so that error responses contain full response bodies. All endpoints share a pool of keep-alive connections,
+ * timeouts and concurrency limits are configured per {@link DataAdapterEndpointGroup}.
  *
  * @author Roman Strobl
  */
@@ -54,11 +71,17 @@ public class DataAdapterClient {
 
     private String serviceUrl;
     private ObjectMapper objectMapper;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private final Map<DataAdapterEndpointGroup, RestTemplate> restTemplates = new EnumMap<>(DataAdapterEndpointGroup.class);
+    private final Map<DataAdapterEndpointGroup, Semaphore> bulkheads = new EnumMap<>(DataAdapterEndpointGroup.class);
+    private final Map<DataAdapterEndpointGroup, Long> acquireTimeouts = new EnumMap<>(DataAdapterEndpointGroup.class);
 
     /**
      * Default constructor.
      */
     public DataAdapterClient() {
+        this(null, new ObjectMapper(), new DataAdapterClientConfiguration());
     }
 
     /**
@@ -66,8 +89,7 @@ public class DataAdapterClient {
      * @param serviceUrl Base URL.
      */
     public DataAdapterClient(String serviceUrl) {
-        this.serviceUrl = serviceUrl;
-        this.objectMapper = new ObjectMapper();
+        this(serviceUrl, new ObjectMapper(), new DataAdapterClientConfiguration());
     }
 
     /**
@@ -76,18 +98,138 @@ public class DataAdapterClient {
      * @param objectMapper Object mapper.
      */
     public DataAdapterClient(String serviceUrl, ObjectMapper objectMapper) {
+        this(serviceUrl, objectMapper, new DataAdapterClientConfiguration());
+    }
+
+    /**
+     * Create a new client with provided base URL and HTTP transport configuration.
+     * @param serviceUrl Base URL.
+     * @param configuration HTTP transport configuration.
+     */
+    public DataAdapterClient(String serviceUrl, DataAdapterClientConfiguration configuration) {
+        this(serviceUrl, new ObjectMapper(), configuration);
+    }
+
+    /**
+     * Create a new client with provided base URL, custom object mapper and HTTP transport configuration.
+     * @param serviceUrl Base URL.
+     * @param objectMapper Object mapper.
+     * @param configuration HTTP transport configuration.
+     */
+    public DataAdapterClient(String serviceUrl, ObjectMapper objectMapper, DataAdapterClientConfiguration configuration) {
+        validateConfiguration(configuration);
         this.serviceUrl = serviceUrl;
         this.objectMapper = objectMapper;
+        this.httpClient = createHttpClient(configuration);
+        for (DataAdapterEndpointGroup group: DataAdapterEndpointGroup.values()) {
+            DataAdapterClientConfiguration.EndpointGroupConfiguration groupConfiguration = configuration.getEndpointGroup(group);
+            HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+            requestFactory.setConnectTimeout(configuration.getConnectTimeout());
+            requestFactory.setConnectionRequestTimeout(configuration.getConnectionRequestTimeout());
+            requestFactory.setReadTimeout(groupConfiguration.getReadTimeout());
+            restTemplates.put(group, new RestTemplate(requestFactory));
+            bulkheads.put(group, new Semaphore(groupConfiguration.getMaxConcurrentRequests()));
+            acquireTimeouts.put(group, groupConfiguration.getAcquireTimeout());
+        }
+    }
+
+    /**
+     * Validate that concurrent requests of all endpoint groups fit into the connection pool, so that a slow endpoint
+     * group cannot hold connections needed by other endpoint groups.
+     * @param configuration HTTP transport configuration.
+     */
+    private void validateConfiguration(DataAdapterClientConfiguration configuration) {
+        int maxConnections = Math.min(configuration.getMaxConnections(), configuration.getMaxConnectionsPerRoute());
+        int maxConcurrentRequests = 0;
+        for (DataAdapterEndpointGroup group: DataAdapterEndpointGroup.values()) {
+            maxConcurrentRequests += configuration.getEndpointGroup(group).getMaxConcurrentRequests();
+        }
+        if (maxConcurrentRequests > maxConnections) {
+            throw new IllegalArgumentException("Maximum number of concurrent requests of all endpoint groups: " + maxConcurrentRequests
+                    + " exceeds maximum number of connections: " + maxConnections);
+        }
+    }
+
+    /**
+     * Prepare a shared HTTP client backed by a pool of keep-alive connections. The client is created once
+     * per client instance and it is reused by all endpoint groups.
+     * @param configuration HTTP transport configuration.
+     * @return Pooled HTTP client.
+     */
+    private CloseableHttpClient createHttpClient(DataAdapterClientConfiguration configuration) {
+        Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", SSLConnectionSocketFactory.getSystemSocketFactory())
+                .build();
+        connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry, null, null, null,
+                configuration.getConnectionTimeToLive(), TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(configuration.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(configuration.getMaxConnectionsPerRoute());
+        return HttpClientBuilder.create()
+                .useSystemProperties()
+                .setConnectionManager(connectionManager)
+                .evictExpiredConnections()
+                .evictIdleConnections(configuration.getIdleConnectionTimeout(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Get statistics of the connection pool, i.e. number of leased, pending, available connections and pool size.
+     * @return Connection pool statistics.
+     */
+    public PoolStats getConnectionPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * Get number of requests which can be started in given endpoint group before its concurrency limit is reached.
+     * @param group Endpoint group.
+     * @return Number of available request permits.
+     */
+    public int getAvailableRequestPermits(DataAdapterEndpointGroup group) {
+        return bulkheads.get(group).availablePermits();
+    }
+
+    /**
+     * Close the HTTP client, shut down the idle connection evictor and release all pooled connections.
+     */
+    public void close() {
+        try {
+            httpClient.close();
+        } catch (IOException ex) {
+            Logger.getLogger(this.getClass().getName()).log(Level.WARNING, "Error while closing HTTP client", ex);
+        }
     }
 
     /**
-     * Prepare a default instance of REST client.
-     * @return RestTemplate with default configuration.
+     * Exchange a request with Data Adapter within the limits of an endpoint group. When the maximum number
+     * of concurrent requests in the group is reached, the call waits for a free slot at most for the configured
+     * acquire timeout and fails afterwards.
+     * @param group Endpoint group.
+     * @param path Path of the endpoint.
+     * @param entity Request entity.
+     * @param responseType Type of the response.
+     * @param <T> Response type.
+     * @return Response entity.
+     * @throws DataAdapterClientErrorException Thrown when the concurrency limit of the endpoint group is exceeded.
      */
-    private RestTemplate defaultTemplate() {
-        RestTemplate template = new RestTemplate();
-        template.setRequestFactory(new HttpComponentsClientHttpRequestFactory());
-        return template;
+    private <T> ResponseEntity<T> exchange(DataAdapterEndpointGroup group, String path, HttpEntity<?> entity, ParameterizedTypeReference<T> responseType) throws DataAdapterClientErrorException {
+        Semaphore bulkhead = bulkheads.get(group);
+        try {
+            if (!bulkhead.tryAcquire(acquireTimeouts.get(group), TimeUnit.MILLISECONDS)) {
+                DataAdapterError error = new DataAdapterError(DataAdapterError.Code.ERROR_GENERIC, "Too many concurrent requests to Data Adapter, endpoint group: " + group);
+                throw new DataAdapterClientErrorException(null, error);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            DataAdapterError error = new DataAdapterError(DataAdapterError.Code.ERROR_GENERIC, ex.getMessage());
+            throw new DataAdapterClientErrorException(ex, error);
+        }
+        try {
+            return restTemplates.get(group).exchange(serviceUrl + path, HttpMethod.POST, entity, responseType);
+        } finally {
+            bulkhead.release();
+        }
     }
 
     /**
@@ -102,7 +244,7 @@ public class DataAdapterClient {
             // Exchange authentication request with data adapter.
             AuthenticationRequest request = new AuthenticationRequest(username, password, AuthenticationType.BASIC);
             HttpEntity<ObjectRequest<AuthenticationRequest>> entity = new HttpEntity<>(new ObjectRequest<>(request));
-            ResponseEntity<ObjectResponse<AuthenticationResponse>> response = defaultTemplate().exchange(serviceUrl + "/api/auth/user/authenticate", HttpMethod.POST, entity, new ParameterizedTypeReference<ObjectResponse<AuthenticationResponse>>() {
+            ResponseEntity<ObjectResponse<AuthenticationResponse>> response = exchange(DataAdapterEndpointGroup.AUTH, "/api/auth/user/authenticate", entity, new ParameterizedTypeReference<ObjectResponse<AuthenticationResponse>>() {
             });
             return new ObjectResponse<>(response.getBody().getResponseObject());
         } catch (HttpStatusCodeException ex) {
@@ -127,7 +269,7 @@ public class DataAdapterClient {
             // Exchange user details with data adapter.
             UserDetailRequest request = new UserDetailRequest(userId);
             HttpEntity<ObjectRequest<UserDetailRequest>> entity = new HttpEntity<>(new ObjectRequest<>(request));
-            ResponseEntity<ObjectResponse<UserDetailResponse>> response = defaultTemplate().exchange(serviceUrl + "/api/auth/user/info", HttpMethod.POST, entity, new ParameterizedTypeReference<ObjectResponse<UserDetailResponse>>() {
+            ResponseEntity<ObjectResponse<UserDetailResponse>> response = exchange(DataAdapterEndpointGroup.AUTH, "/api/auth/user/info", entity, new ParameterizedTypeReference<ObjectResponse<UserDetailResponse>>() {
             });
             return new ObjectResponse<>(response.getBody().getResponseObject());
         } catch (HttpStatusCodeException ex) {
@@ -159,9 +301,7 @@ public class DataAdapterClient {
             HttpHeaders headers = new HttpHeaders();
             headers.set("Accept-Language", LocaleContextHolder.getLocale().getLanguage());
             HttpEntity<ObjectRequest<CreateSMSAuthorizationRequest>> entity = new HttpEntity<>(new ObjectRequest<>(request), headers);
-            ResponseEntity<ObjectResponse<CreateSMSAuthorizationResponse>> response = defaultTemplate().exchange(
-                    serviceUrl + "/api/auth/sms/create", HttpMethod.POST, entity,
-                    new ParameterizedTypeReference<ObjectResponse<CreateSMSAuthorizationResponse>>() {
+            ResponseEntity<ObjectResponse<CreateSMSAuthorizationResponse>> response = exchange(DataAdapterEndpointGroup.SMS, "/api/auth/sms/create", entity, new ParameterizedTypeReference<ObjectResponse<CreateSMSAuthorizationResponse>>() {
                     });
             return new ObjectResponse<>(response.getBody().getResponseObject());
         } catch (HttpStatusCodeException ex) {
@@ -187,7 +327,7 @@ public class DataAdapterClient {
         try {
             VerifySMSAuthorizationRequest request = new VerifySMSAuthorizationRequest(messageId, authorizationCode);
             HttpEntity<ObjectRequest<VerifySMSAuthorizationRequest>> entity = new HttpEntity<>(new ObjectRequest<>(request));
-            defaultTemplate().exchange(serviceUrl + "/api/auth/sms/verify", HttpMethod.POST, entity, new ParameterizedTypeReference<ObjectResponse>() {
+            exchange(DataAdapterEndpointGroup.SMS, "/api/auth/sms/verify", entity, new ParameterizedTypeReference<ObjectResponse>() {
             });
             return new ObjectResponse();
         } catch (HttpStatusCodeException ex) {
@@ -214,7 +354,7 @@ public class DataAdapterClient {
             HttpHeaders headers = new HttpHeaders();
             headers.set("Accept-Language", LocaleContextHolder.getLocale().getLanguage());
             HttpEntity<ObjectRequest<BankAccountListRequest>> entity = new HttpEntity<>(new ObjectRequest<>(request), headers);
-            ResponseEntity<ObjectResponse<BankAccountListResponse>> response = defaultTemplate().exchange(serviceUrl + "/api/auth/account/list", HttpMethod.POST, entity, new ParameterizedTypeReference<ObjectResponse<BankAccountListResponse>>() {
+            ResponseEntity<ObjectResponse<BankAccountListResponse>> response = exchange(DataAdapterEndpointGroup.ACCOUNTS, "/api/auth/account/list", entity, new ParameterizedTypeReference<ObjectResponse<BankAccountListResponse>>() {
             });
             return new ObjectResponse<>(response.getBody().getResponseObject());
         } catch (HttpStatusCodeException ex) {
@@ -243,7 +383,7 @@ public class DataAdapterClient {
             request.setOperationId(operationId);
             request.setFormDataChange(formDataChange);
             HttpEntity<ObjectRequest<FormDataChangeNotificationRequest>> entity = new HttpEntity<>(new ObjectRequest<>(request));
-            ResponseEntity<ObjectResponse> response = defaultTemplate().exchange(serviceUrl + "/api/operation/formData/change", HttpMethod.POST, entity, new ParameterizedTypeReference<ObjectResponse>() {
+            ResponseEntity<ObjectResponse> response = exchange(DataAdapterEndpointGroup.NOTIFICATIONS, "/api/operation/formData/change", entity, new ParameterizedTypeReference<ObjectResponse>() {
             });
             return new ObjectResponse<>(response.getBody().getResponseObject());
         } catch (HttpStatusCodeException ex) {
@@ -272,7 +412,57 @@ public class DataAdapterClient {
             request.setOperationId(operationId);
             request.setOperationChange(operationChange);
             HttpEntity<ObjectRequest<OperationChangeNotificationRequest>> entity = new HttpEntity<>(new ObjectRequest<>(request));
-            ResponseEntity<ObjectResponse> response = defaultTemplate().exchange(serviceUrl + "/api/operation/change", HttpMethod.POST, entity, new ParameterizedTypeReference<ObjectResponse>() {
+            ResponseEntity<ObjectResponse> response = exchange(DataAdapterEndpointGroup.NOTIFICATIONS, "/api/operation/change", entity, new ParameterizedTypeReference<ObjectResponse>() {
+            });
+            return new ObjectResponse<>(response.getBody().getResponseObject());
+        } catch (HttpStatusCodeException ex) {
+            try {
+                throw httpStatusException(ex);
+            } catch (IOException ex2) { // JSON parsing failed
+                throw invalidErrorResponseBodyException(ex2);
+
+            }
+        } catch (ResourceAccessException ex) { // Data Adapter service is down
+            throw resourceAccessException(ex);
+        }
+    }
+
+    /**
+     * Send multiple notifications about formData change in a single request.
+     *
+     * @param notifications FormData change notifications.
+     * @return Object response.
+     */
+    public ObjectResponse formDataChangedNotifications(List<FormDataChangeNotificationRequest> notifications) throws DataAdapterClientErrorException {
+        try {
+            FormDataChangeNotificationBatchRequest request = new FormDataChangeNotificationBatchRequest(notifications);
+            HttpEntity<ObjectRequest<FormDataChangeNotificationBatchRequest>> entity = new HttpEntity<>(new ObjectRequest<>(request));
+            ResponseEntity<ObjectResponse> response = exchange(DataAdapterEndpointGroup.NOTIFICATIONS, "/api/operation/formData/change/batch", entity, new ParameterizedTypeReference<ObjectResponse>() {
+            });
+            return new ObjectResponse<>(response.getBody().getResponseObject());
+        } catch (HttpStatusCodeException ex) {
+            try {
+                throw httpStatusException(ex);
+            } catch (IOException ex2) { // JSON parsing failed
+                throw invalidErrorResponseBodyException(ex2);
+
+            }
+        } catch (ResourceAccessException ex) { // Data Adapter service is down
+            throw resourceAccessException(ex);
+        }
+    }
+
+    /**
+     * Send multiple notifications about operation change in a single request.
+     *
+     * @param notifications Operation change notifications.
+     * @return Object response.
+     */
+    public ObjectResponse operationChangedNotifications(List<OperationChangeNotificationRequest> notifications) throws DataAdapterClientErrorException {
+        try {
+            OperationChangeNotificationBatchRequest request = new OperationChangeNotificationBatchRequest(notifications);
+            HttpEntity<ObjectRequest<OperationChangeNotificationBatchRequest>> entity = new HttpEntity<>(new ObjectRequest<>(request));
+            ResponseEntity<ObjectResponse> response = exchange(DataAdapterEndpointGroup.NOTIFICATIONS, "/api/operation/change/batch", entity, new ParameterizedTypeReference<ObjectResponse>() {
             });
             return new ObjectResponse<>(response.getBody().getResponseObject());
         } catch (HttpStatusCodeException ex) {
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.lib.dataadapter.client;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Configuration of the HTTP transport used by {@link DataAdapterClient}. All endpoints share a single pool
+ * of keep-alive connections. Read timeout and the maximum number of concurrent requests (bulkhead) are configured
+ * separately for each {@link DataAdapterEndpointGroup}, so that a slow endpoint cannot exhaust connections and
+ * threads needed by other endpoints. The sum of maximum numbers of concurrent requests of all endpoint groups must not
+ * exceed the maximum number of connections per route, otherwise requests of one endpoint group could wait for
+ * connections held by another endpoint group. All timeouts are in milliseconds.
+ *
+ * @author Roman Strobl
+ */
+public class DataAdapterClientConfiguration {
+
+    /**
+     * Maximum number of connections in the pool.
+     */
+    private int maxConnections = 100;
+
+    /**
+     * Maximum number of connections per route (Data Adapter is usually a single route).
+     */
+    private int maxConnectionsPerRoute = 100;
+
+    /**
+     * Timeout for establishing a TCP connection.
+     */
+    private int connectTimeout = 5000;
+
+    /**
+     * Timeout for obtaining a connection from the pool.
+     */
+    private int connectionRequestTimeout = 5000;
+
+    /**
+     * Time after which idle connections are evicted from the pool.
+     */
+    private long idleConnectionTimeout = 60000;
+
+    /**
+     * Maximum lifetime of a pooled connection, use a non-positive value for unlimited lifetime.
+     */
+    private long connectionTimeToLive = -1;
+
+    /**
+     * Configuration of endpoint groups.
+     */
+    private final Map<DataAdapterEndpointGroup, EndpointGroupConfiguration> endpointGroups = new EnumMap<>(DataAdapterEndpointGroup.class);
+
+    /**
+     * Create configuration with default values.
+     */
+    public DataAdapterClientConfiguration() {
+        for (DataAdapterEndpointGroup group: DataAdapterEndpointGroup.values()) {
+            endpointGroups.put(group, new EndpointGroupConfiguration());
+        }
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+        this.connectionRequestTimeout = connectionRequestTimeout;
+    }
+
+    public long getIdleConnectionTimeout() {
+        return idleConnectionTimeout;
+    }
+
+    public void setIdleConnectionTimeout(long idleConnectionTimeout) {
+        this.idleConnectionTimeout = idleConnectionTimeout;
+    }
+
+    public long getConnectionTimeToLive() {
+        return connectionTimeToLive;
+    }
+
+    public void setConnectionTimeToLive(long connectionTimeToLive) {
+        this.connectionTimeToLive = connectionTimeToLive;
+    }
+
+    /**
+     * Get configuration of an endpoint group, the returned object can be modified.
+     * @param group Endpoint group.
+     * @return Endpoint group configuration.
+     */
+    public EndpointGroupConfiguration getEndpointGroup(DataAdapterEndpointGroup group) {
+        return endpointGroups.get(group);
+    }
+
+    /**
+     * Timeouts and concurrency limit of a group of endpoints.
+     */
+    public static class EndpointGroupConfiguration {
+
+        /**
+         * Timeout for reading data from an established connection.
+         */
+        private int readTimeout = 30000;
+
+        /**
+         * Maximum number of concurrent requests, defaults of all endpoint groups fit into the default connection pool.
+         */
+        private int maxConcurrentRequests = 25;
+
+        /**
+         * Maximum time to wait for a free slot when the maximum number of concurrent requests is reached.
+         */
+        private long acquireTimeout = 1000;
+
+        public int getReadTimeout() {
+            return readTimeout;
+        }
+
+        public void setReadTimeout(int readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+
+        public int getMaxConcurrentRequests() {
+            return maxConcurrentRequests;
+        }
+
+        public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+        }
+
+        public long getAcquireTimeout() {
+            return acquireTimeout;
+        }
+
+        public void setAcquireTimeout(long acquireTimeout) {
+            this.acquireTimeout = acquireTimeout;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.lib.dataadapter.client;
+
+/**
+ * Groups of Data Adapter endpoints with separately configured timeouts and concurrency limits.
+ *
+ * @author Roman Strobl
+ */
+public enum DataAdapterEndpointGroup {
+
+    /**
+     * User authentication and user detail.
+     */
+    AUTH,
+
+    /**
+     * Creation and verification of SMS authorization messages.
+     */
+    SMS,
+
+    /**
+     * Bank account list.
+     */
+    ACCOUNTS,
+
+    /**
+     * Notifications about operation and form data changes.
+     */
+    NOTIFICATIONS
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.lib.dataadapter.model.entity;
+
+/**
+ * Notification about formData change of an operation, as passed to the data adapter.
+ *
+ * @author Roman Strobl, roman.strobl@lime-company.eu
+ */
+public class FormDataChangeNotification {
+
+    private final String userId;
+    private final String operationId;
+    private final FormDataChange formDataChange;
+
+    /**
+     * Constructor with user ID, operation ID and formData change.
+     * @param userId User ID.
+     * @param operationId Operation ID.
+     * @param formDataChange FormData change.
+     */
+    public FormDataChangeNotification(String userId, String operationId, FormDataChange formDataChange) {
+        this.userId = userId;
+        this.operationId = operationId;
+        this.formDataChange = formDataChange;
+    }
+
+    /**
+     * Get user ID.
+     * @return User ID.
+     */
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * Get operation ID.
+     * @return Operation ID.
+     */
+    public String getOperationId() {
+        return operationId;
+    }
+
+    /**
+     * Get formData change.
+     * @return FormData change.
+     */
+    public FormDataChange getFormDataChange() {
+        return formDataChange;
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.lib.dataadapter.model.request;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Request object for notifying data adapter about multiple operation changes at once.
+ *
+ * @author Roman Strobl, roman.strobl@lime-company.eu
+ */
+public class OperationChangeNotificationBatchRequest {
+
+    private List<OperationChangeNotificationRequest> notifications;
+
+    /**
+     * Default constructor
+     */
+    public OperationChangeNotificationBatchRequest() {
+        this.notifications = new ArrayList<>();
+    }
+
+    /**
+     * Constructor with list of notifications.
+     * @param notifications Notifications.
+     */
+    public OperationChangeNotificationBatchRequest(List<OperationChangeNotificationRequest> notifications) {
+        this.notifications = notifications;
+    }
+
+    /**
+     * Get notifications.
+     * @return Notifications.
+     */
+    public List<OperationChangeNotificationRequest> getNotifications() {
+        return notifications;
+    }
+
+    /**
+     * Set notifications.
+     * @param notifications Notifications.
+     */
+    public void setNotifications(List<OperationChangeNotificationRequest> notifications) {
+        this.notifications = notifications;
+    }
+}
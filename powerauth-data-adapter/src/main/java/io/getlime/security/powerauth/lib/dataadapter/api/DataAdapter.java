@@ -20,7 +20,9 @@ import io.getlime.security.powerauth.lib.dataadapter.exception.SMSAuthorizationF
 import io.getlime.security.powerauth.lib.dataadapter.exception.UserNotFoundException;
 import io.getlime.security.powerauth.lib.dataadapter.model.entity.BankAccount;
 import io.getlime.security.powerauth.lib.dataadapter.model.entity.FormDataChange;
+import io.getlime.security.powerauth.lib.dataadapter.model.entity.FormDataChangeNotification;
 import io.getlime.security.powerauth.lib.dataadapter.model.entity.OperationChange;
+import io.getlime.security.powerauth.lib.dataadapter.model.entity.OperationChangeNotification;
 import io.getlime.security.powerauth.lib.dataadapter.model.response.UserDetailResponse;
 
 import java.util.List;
@@ -74,6 +76,28 @@ public interface DataAdapter {
      */
     void operationChangedNotification(String userId, String operationId, OperationChange operationChange);
 
+    /**
+     * Receive multiple notifications about formData change. Default implementation handles the notifications one by one,
+     * override this method to forward notifications to bank backend in bulk.
+     * @param notifications FormData change notifications.
+     */
+    default void formDataChangedNotifications(List<FormDataChangeNotification> notifications) {
+        for (FormDataChangeNotification notification: notifications) {
+            formDataChangedNotification(notification.getUserId(), notification.getOperationId(), notification.getFormDataChange());
+        }
+    }
+
+    /**
+     * Receive multiple notifications about operation change. Default implementation handles the notifications one by one,
+     * override this method to forward notifications to bank backend in bulk.
+     * @param notifications Operation change notifications.
+     */
+    default void operationChangedNotifications(List<OperationChangeNotification> notifications) {
+        for (OperationChangeNotification notification: notifications) {
+            operationChangedNotification(notification.getUserId(), notification.getOperationId(), notification.getOperationChange());
+        }
+    }
+
     /**
      * Send an authorization SMS with generated OTP.
      * @param userId User ID.
@@ -19,6 +19,8 @@ import io.getlime.core.rest.model.base.request.ObjectRequest;
 import io.getlime.core.rest.model.base.response.ObjectResponse;
 import io.getlime.security.powerauth.lib.dataadapter.api.DataAdapter;
 import io.getlime.security.powerauth.lib.dataadapter.model.entity.FormDataChange;
+import io.getlime.security.powerauth.lib.dataadapter.model.entity.FormDataChangeNotification;
+import io.getlime.security.powerauth.lib.dataadapter.model.request.FormDataChangeNotificationBatchRequest;
 import io.getlime.security.powerauth.lib.dataadapter.model.request.FormDataChangeNotificationRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -27,6 +29,9 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Controller class which handles notifications about changes of operation formData.
  *
@@ -59,4 +64,21 @@ public class FormDataChangeController {
         return new ObjectResponse();
     }
 
+    /**
+     * Receive multiple operation formData change notifications at once.
+     *
+     * @param request Request with list of change notifications.
+     * @return Object response.
+     */
+    @RequestMapping(value = "/change/batch", method = RequestMethod.POST)
+    public @ResponseBody ObjectResponse formDataChangedNotifications(@RequestBody ObjectRequest<FormDataChangeNotificationBatchRequest> request) {
+        FormDataChangeNotificationBatchRequest batch = request.getRequestObject();
+        List<FormDataChangeNotification> notifications = new ArrayList<>();
+        for (FormDataChangeNotificationRequest notification: batch.getNotifications()) {
+            notifications.add(new FormDataChangeNotification(notification.getUserId(), notification.getOperationId(), notification.getFormDataChange()));
+        }
+        dataAdapter.formDataChangedNotifications(notifications);
+        return new ObjectResponse();
+    }
+
 }
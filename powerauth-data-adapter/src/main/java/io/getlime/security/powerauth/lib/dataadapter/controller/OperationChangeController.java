@@ -19,6 +19,8 @@ import io.getlime.core.rest.model.base.request.ObjectRequest;
 import io.getlime.core.rest.model.base.response.ObjectResponse;
 import io.getlime.security.powerauth.lib.dataadapter.api.DataAdapter;
 import io.getlime.security.powerauth.lib.dataadapter.model.entity.OperationChange;
+import io.getlime.security.powerauth.lib.dataadapter.model.entity.OperationChangeNotification;
+import io.getlime.security.powerauth.lib.dataadapter.model.request.OperationChangeNotificationBatchRequest;
 import io.getlime.security.powerauth.lib.dataadapter.model.request.OperationChangeNotificationRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -27,6 +29,9 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Controller class which handles notifications about changes of operation state.
  *
@@ -59,4 +64,21 @@ public class OperationChangeController {
         return new ObjectResponse();
     }
 
+    /**
+     * Receive multiple operation change notifications at once.
+     *
+     * @param request Request with list of change notifications.
+     * @return Object response.
+     */
+    @RequestMapping(value = "/change/batch", method = RequestMethod.POST)
+    public @ResponseBody ObjectResponse operationChangedNotifications(@RequestBody ObjectRequest<OperationChangeNotificationBatchRequest> request) {
+        OperationChangeNotificationBatchRequest batch = request.getRequestObject();
+        List<OperationChangeNotification> notifications = new ArrayList<>();
+        for (OperationChangeNotificationRequest notification: batch.getNotifications()) {
+            notifications.add(new OperationChangeNotification(notification.getUserId(), notification.getOperationId(), notification.getOperationChange()));
+        }
+        dataAdapter.operationChangedNotifications(notifications);
+        return new ObjectResponse();
+    }
+
 }
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.lib.nextstep.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.getlime.core.rest.model.base.entity.Error;
+import io.getlime.core.rest.model.base.request.ObjectRequest;
+import io.getlime.core.rest.model.base.response.ObjectResponse;
+import io.getlime.security.powerauth.lib.nextstep.model.entity.KeyValueParameter;
+import io.getlime.security.powerauth.lib.nextstep.model.entity.OperationFormData;
+import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthMethod;
+import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthStepResult;
+import io.getlime.security.powerauth.lib.nextstep.model.exception.NextStepServiceException;
+import io.getlime.security.powerauth.lib.nextstep.model.request.*;
+import io.getlime.security.powerauth.lib.nextstep.model.response.*;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.HttpComponentsAsyncClientHttpRequestFactory;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.client.AsyncRestTemplate;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Non-blocking variant of {@link NextStepClient}. Requests are executed by an NIO HTTP client, so the calling
+ * thread is not blocked while the request is in progress and independent requests can be executed concurrently.
+ * <p>
+ * The number of requests in flight is bounded by {@link NextStepClientConfiguration#getMaxInFlightRequests()}.
+ * When the limit is reached, new requests are rejected immediately with {@link NextStepServiceException} instead
+ * of being queued, so that a slow Next Step server does not cause unbounded growth of pending requests.
+ *
+ * @author Roman Strobl
+ */
+public class NextStepAsyncClient {
+
+    private static final Logger logger = Logger.getLogger(NextStepAsyncClient.class.getName());
+
+    private final String serviceUrl;
+    private final NextStepClientErrorHandler errorHandler;
+    private final Semaphore inFlightRequests;
+    private final PoolingNHttpClientConnectionManager connectionManager;
+    private final CloseableHttpAsyncClient httpClient;
+    private final AsyncRestTemplate restTemplate;
+    private final ScheduledExecutorService connectionEvictor;
+
+    /**
+     * Create a new client with provided base URL.
+     * @param serviceUrl Base URL.
+     */
+    public NextStepAsyncClient(String serviceUrl) {
+        this(serviceUrl, new ObjectMapper(), new NextStepClientConfiguration());
+    }
+
+    /**
+     * Create a new client with provided base URL and HTTP transport configuration.
+     * @param serviceUrl Base URL.
+     * @param configuration HTTP transport configuration.
+     */
+    public NextStepAsyncClient(String serviceUrl, NextStepClientConfiguration configuration) {
+        this(serviceUrl, new ObjectMapper(), configuration);
+    }
+
+    /**
+     * Create a new client with provided base URL, custom object mapper and HTTP transport configuration.
+     * @param serviceUrl Base URL.
+     * @param objectMapper Object mapper.
+     * @param configuration HTTP transport configuration.
+     */
+    public NextStepAsyncClient(String serviceUrl, ObjectMapper objectMapper, NextStepClientConfiguration configuration) {
+        this.serviceUrl = serviceUrl;
+        this.errorHandler = new NextStepClientErrorHandler(objectMapper);
+        this.inFlightRequests = new Semaphore(configuration.getMaxInFlightRequests());
+        this.connectionManager = createConnectionManager(configuration);
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(configuration.getConnectTimeout())
+                .setSocketTimeout(configuration.getReadTimeout())
+                .setConnectionRequestTimeout(configuration.getConnectionRequestTimeout())
+                .build();
+        this.httpClient = HttpAsyncClients.custom()
+                .useSystemProperties()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .build();
+        this.httpClient.start();
+        this.restTemplate = new AsyncRestTemplate(new HttpComponentsAsyncClientHttpRequestFactory(httpClient));
+        this.connectionEvictor = createConnectionEvictor(configuration.getIdleConnectionTimeout());
+    }
+
+    /**
+     * Prepare a pool of non-blocking keep-alive connections.
+     * @param configuration HTTP transport configuration.
+     * @return Connection manager.
+     */
+    private PoolingNHttpClientConnectionManager createConnectionManager(NextStepClientConfiguration configuration) {
+        IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                .setConnectTimeout(configuration.getConnectTimeout())
+                .setSoTimeout(configuration.getReadTimeout())
+                .build();
+        DefaultConnectingIOReactor ioReactor;
+        try {
+            ioReactor = new DefaultConnectingIOReactor(ioReactorConfig);
+        } catch (IOReactorException ex) {
+            throw new IllegalStateException("Unable to initialize I/O reactor for Next Step client", ex);
+        }
+        Registry<SchemeIOSessionStrategy> sessionStrategyRegistry = RegistryBuilder.<SchemeIOSessionStrategy>create()
+                .register("http", NoopIOSessionStrategy.INSTANCE)
+                .register("https", SSLIOSessionStrategy.getSystemDefaultStrategy())
+                .build();
+        PoolingNHttpClientConnectionManager manager = new PoolingNHttpClientConnectionManager(ioReactor, null,
+                sessionStrategyRegistry, null, null, configuration.getConnectionTimeToLive(), TimeUnit.MILLISECONDS);
+        manager.setMaxTotal(configuration.getMaxConnections());
+        manager.setDefaultMaxPerRoute(configuration.getMaxConnectionsPerRoute());
+        return manager;
+    }
+
+    /**
+     * The NIO client does not evict stale connections on its own, schedule periodic eviction of expired and idle connections.
+     * @param idleConnectionTimeout Time after which idle connections are evicted from the pool.
+     * @return Executor which runs the eviction.
+     */
+    private ScheduledExecutorService createConnectionEvictor(long idleConnectionTimeout) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "nextstep-async-connection-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(idleConnectionTimeout / 2, 1000);
+        executor.scheduleWithFixedDelay(() -> {
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(idleConnectionTimeout, TimeUnit.MILLISECONDS);
+        }, period, period, TimeUnit.MILLISECONDS);
+        return executor;
+    }
+
+    /**
+     * Get statistics of the connection pool, i.e. number of leased, pending, available connections and pool size.
+     * @return Connection pool statistics.
+     */
+    public PoolStats getConnectionPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * Get number of requests which can be started before the in-flight limit is reached.
+     * @return Number of available request permits.
+     */
+    public int getAvailableRequestPermits() {
+        return inFlightRequests.availablePermits();
+    }
+
+    /**
+     * Close the HTTP client, stop the idle connection evictor and release all pooled connections.
+     */
+    public void close() {
+        connectionEvictor.shutdownNow();
+        try {
+            httpClient.close();
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Error while closing HTTP client", ex);
+        }
+    }
+
+    /**
+     * Calls the operation endpoint via POST method to create a new operation.
+     *
+     * @param operationName operation name
+     * @param operationId   operation ID (optional - if null, unique ID is automatically generated)
+     * @param operationData operation data
+     * @param formData operation form data, such as title, message and displayable attributes
+     * @param params        list of generic parameters
+     * @return Future with CreateOperationResponse, completed exceptionally with NextStepServiceException in case of an error
+     */
+    public CompletableFuture<ObjectResponse<CreateOperationResponse>> createOperation(String operationName, String operationId, String operationData, OperationFormData formData, List<KeyValueParameter> params) {
+        CreateOperationRequest request = new CreateOperationRequest();
+        request.setOperationName(operationName);
+        request.setOperationId(operationId);
+        request.setOperationData(operationData);
+        request.setFormData(formData);
+        if (params != null) {
+            request.getParams().addAll(params);
+        }
+        return exchange("/operation", HttpMethod.POST, request, new ParameterizedTypeReference<ObjectResponse<CreateOperationResponse>>() {});
+    }
+
+    /**
+     * Calls the operation endpoint via PUT method to update an existing operation.
+     *
+     * @param operationId    id of the updated operation
+     * @param userId         user id
+     * @param authMethod     authentication method
+     * @param authStepResult result of the last step
+     * @param authStepResultDescription description of the result
+     * @param params         list of generic parameters
+     * @return Future with UpdateOperationResponse, completed exceptionally with NextStepServiceException in case of an error
+     */
+    public CompletableFuture<ObjectResponse<UpdateOperationResponse>> updateOperation(String operationId, String userId, AuthMethod authMethod, AuthStepResult authStepResult, String authStepResultDescription, List<KeyValueParameter> params) {
+        UpdateOperationRequest request = new UpdateOperationRequest();
+        request.setOperationId(operationId);
+        request.setUserId(userId);
+        request.setAuthMethod(authMethod);
+        request.setAuthStepResult(authStepResult);
+        request.setAuthStepResultDescription(authStepResultDescription);
+        if (params != null) {
+            request.getParams().addAll(params);
+        }
+        return exchange("/operation", HttpMethod.PUT, request, new ParameterizedTypeReference<ObjectResponse<UpdateOperationResponse>>() {});
+    }
+
+    /**
+     * Calls the operation details endpoint via POST method to get operation details.
+     *
+     * @param id operation id
+     * @return Future with GetOperationDetailResponse, completed exceptionally with NextStepServiceException in case of an error
+     */
+    public CompletableFuture<ObjectResponse<GetOperationDetailResponse>> getOperationDetail(String id) {
+        GetOperationDetailRequest request = new GetOperationDetailRequest();
+        request.setOperationId(id);
+        return exchange("/operation/detail", HttpMethod.POST, request, new ParameterizedTypeReference<ObjectResponse<GetOperationDetailResponse>>() {});
+    }
+
+    /**
+     * Calls the operation detail batch endpoint via POST method to get details of multiple operations at once.
+     *
+     * @param operationIds operation IDs
+     * @return Future with list of GetOperationDetailResponse, completed exceptionally with NextStepServiceException in case of an error
+     */
+    public CompletableFuture<ObjectResponse<List<GetOperationDetailResponse>>> getOperationDetails(Collection<String> operationIds) {
+        GetOperationDetailBatchRequest request = new GetOperationDetailBatchRequest();
+        request.getOperationIds().addAll(operationIds);
+        return exchange("/operation/detail/batch", HttpMethod.POST, request, new ParameterizedTypeReference<ObjectResponse<List<GetOperationDetailResponse>>>() {});
+    }
+
+    /**
+     * Calls the get pending operations endpoint to get a list of pending operations.
+     *
+     * @param userId user id
+     * @param authMethod authentication method
+     * @return Future with list of GetOperationDetailResponse, completed exceptionally with NextStepServiceException in case of an error
+     */
+    public CompletableFuture<ObjectResponse<List<GetOperationDetailResponse>>> getPendingOperations(String userId, AuthMethod authMethod) {
+        GetPendingOperationsRequest request = new GetPendingOperationsRequest();
+        request.setUserId(userId);
+        request.setAuthMethod(authMethod);
+        return exchange("/user/operation/list", HttpMethod.POST, request, new ParameterizedTypeReference<ObjectResponse<List<GetOperationDetailResponse>>>() {});
+    }
+
+    /**
+     * Calls the get pending operations endpoint to get a page of pending operations. Operations are ordered by
+     * creation time and operation ID, the next page is requested using creation time and operation ID of the last
+     * operation from previous page.
+     *
+     * @param userId user id
+     * @param authMethod authentication method
+     * @param lastTimestampCreated creation time of the last operation from previous page, null for the first page
+     * @param lastOperationId operation ID of the last operation from previous page, null for the first page
+     * @param limit maximum number of operations
+     * @param summary whether only operation summaries with form data title are returned
+     * @return Future with list of GetOperationDetailResponse, completed exceptionally with NextStepServiceException in case of an error
+     */
+    public CompletableFuture<ObjectResponse<List<GetOperationDetailResponse>>> getPendingOperations(String userId, AuthMethod authMethod, Date lastTimestampCreated,
+                                                                                                    String lastOperationId, int limit, boolean summary) {
+        GetPendingOperationsRequest request = new GetPendingOperationsRequest();
+        request.setUserId(userId);
+        request.setAuthMethod(authMethod);
+        request.setLastTimestampCreated(lastTimestampCreated);
+        request.setLastOperationId(lastOperationId);
+        request.setLimit(limit);
+        request.setSummary(summary);
+        return exchange("/user/operation/list", HttpMethod.POST, request, new ParameterizedTypeReference<ObjectResponse<List<GetOperationDetailResponse>>>() {});
+    }
+
+    /**
+     * Get all enabled authentication methods for given user.
+     *
+     * @param userId User ID
+     * @return Future with GetUserAuthMethodsResponse, completed exceptionally with NextStepServiceException in case of an error
+     */
+    public CompletableFuture<ObjectResponse<GetUserAuthMethodsResponse>> getAuthMethodsEnabledForUser(String userId) {
+        GetUserAuthMethodsRequest request = new GetUserAuthMethodsRequest();
+        request.setUserId(userId);
+        return exchange("/user/auth-method/list", HttpMethod.POST, request, new ParameterizedTypeReference<ObjectResponse<GetUserAuthMethodsResponse>>() {});
+    }
+
+    /**
+     * Exchange a request with Next Step server asynchronously. The request is rejected when the maximum number
+     * of requests in flight is reached.
+     *
+     * @param path Path of the endpoint.
+     * @param method HTTP method.
+     * @param request Request object.
+     * @param responseType Type of the response.
+     * @param <R> Request object type.
+     * @param <T> Response object type.
+     * @return Future with the response.
+     */
+    private <R, T> CompletableFuture<ObjectResponse<T>> exchange(String path, HttpMethod method, R request, ParameterizedTypeReference<ObjectResponse<T>> responseType) {
+        final CompletableFuture<ObjectResponse<T>> result = new CompletableFuture<>();
+        if (!inFlightRequests.tryAcquire()) {
+            Error error = new Error(Error.Code.ERROR_GENERIC, "Too many concurrent requests to Next Step server");
+            result.completeExceptionally(new NextStepServiceException(null, error));
+            return result;
+        }
+        final ListenableFuture<ResponseEntity<ObjectResponse<T>>> future;
+        try {
+            HttpEntity<ObjectRequest<R>> entity = new HttpEntity<>(new ObjectRequest<>(request));
+            future = restTemplate.exchange(serviceUrl + path, method, entity, responseType);
+        } catch (RuntimeException ex) {
+            inFlightRequests.release();
+            result.completeExceptionally(errorHandler.handleError(ex));
+            return result;
+        }
+        future.addCallback(response -> {
+            inFlightRequests.release();
+            result.complete(new ObjectResponse<>(response.getBody().getResponseObject()));
+        }, ex -> {
+            inFlightRequests.release();
+            Throwable cause = ex instanceof ExecutionException && ex.getCause() != null ? ex.getCause() : ex;
+            result.completeExceptionally(errorHandler.handleError(cause));
+        });
+        return result;
+    }
+
+}
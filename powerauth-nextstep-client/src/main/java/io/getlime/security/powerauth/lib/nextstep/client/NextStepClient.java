@@ -16,7 +16,6 @@
 
 package io.getlime.security.powerauth.lib.nextstep.client;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.getlime.core.rest.model.base.entity.Error;
 import io.getlime.core.rest.model.base.request.ObjectRequest;
@@ -26,10 +25,18 @@ import io.getlime.security.powerauth.lib.nextstep.model.entity.OperationFormData
 import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthMethod;
 import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthStepResult;
 import io.getlime.security.powerauth.lib.nextstep.model.exception.NextStepServiceException;
-import io.getlime.security.powerauth.lib.nextstep.model.exception.OperationAlreadyFailedException;
-import io.getlime.security.powerauth.lib.nextstep.model.exception.OperationAlreadyFinishedException;
 import io.getlime.security.powerauth.lib.nextstep.model.request.*;
 import io.getlime.security.powerauth.lib.nextstep.model.response.*;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
@@ -40,7 +47,14 @@ import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * This service handles communication with the Next Step server.
@@ -50,12 +64,17 @@ import java.util.List;
 public class NextStepClient {
 
     private String serviceUrl;
-    private ObjectMapper objectMapper;
+    private NextStepClientErrorHandler errorHandler;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private RestTemplate restTemplate;
+    private final List<UserAuthMethodsChangeListener> userAuthMethodsChangeListeners = new CopyOnWriteArrayList<>();
 
     /**
      * Default constructor.
      */
     public NextStepClient() {
+        this(null, new ObjectMapper(), new NextStepClientConfiguration());
     }
 
     /**
@@ -63,8 +82,7 @@ public class NextStepClient {
      * @param serviceUrl Base URL.
      */
     public NextStepClient(String serviceUrl) {
-        this.serviceUrl = serviceUrl;
-        this.objectMapper = new ObjectMapper();
+        this(serviceUrl, new ObjectMapper(), new NextStepClientConfiguration());
     }
 
     /**
@@ -73,20 +91,99 @@ public class NextStepClient {
      * @param objectMapper Object mapper.
      */
     public NextStepClient(String serviceUrl, ObjectMapper objectMapper) {
+        this(serviceUrl, objectMapper, new NextStepClientConfiguration());
+    }
+
+    /**
+     * Create a new client with provided base URL and HTTP transport configuration.
+     * @param serviceUrl Base URL.
+     * @param configuration HTTP transport configuration.
+     */
+    public NextStepClient(String serviceUrl, NextStepClientConfiguration configuration) {
+        this(serviceUrl, new ObjectMapper(), configuration);
+    }
+
+    /**
+     * Create a new client with provided base URL, custom object mapper and HTTP transport configuration.
+     * @param serviceUrl Base URL.
+     * @param objectMapper Object mapper.
+     * @param configuration HTTP transport configuration.
+     */
+    public NextStepClient(String serviceUrl, ObjectMapper objectMapper, NextStepClientConfiguration configuration) {
         this.serviceUrl = serviceUrl;
-        this.objectMapper = objectMapper;
+        this.errorHandler = new NextStepClientErrorHandler(objectMapper);
+        this.restTemplate = createTemplate(configuration);
     }
 
     /**
-     * Prepare a default instance of REST client.
-     * @return RestTemplate with default configuration.
+     * Prepare a shared instance of REST client backed by a pool of keep-alive connections. The template
+     * is created once per client instance and it is reused by all requests.
+     * @param configuration HTTP transport configuration.
+     * @return RestTemplate with pooled HTTP client.
      */
-    private RestTemplate defaultTemplate() {
+    private RestTemplate createTemplate(NextStepClientConfiguration configuration) {
+        Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", SSLConnectionSocketFactory.getSystemSocketFactory())
+                .build();
+        connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry, null, null, null,
+                configuration.getConnectionTimeToLive(), TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(configuration.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(configuration.getMaxConnectionsPerRoute());
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(configuration.getConnectTimeout())
+                .setSocketTimeout(configuration.getReadTimeout())
+                .setConnectionRequestTimeout(configuration.getConnectionRequestTimeout())
+                .build();
+        httpClient = HttpClientBuilder.create()
+                .useSystemProperties()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(configuration.getIdleConnectionTimeout(), TimeUnit.MILLISECONDS)
+                .build();
         RestTemplate template = new RestTemplate();
-        template.setRequestFactory(new HttpComponentsClientHttpRequestFactory());
+        template.setRequestFactory(new HttpComponentsClientHttpRequestFactory(httpClient));
         return template;
     }
 
+    /**
+     * Get statistics of the connection pool, i.e. number of leased, pending, available connections and pool size.
+     * @return Connection pool statistics.
+     */
+    public PoolStats getConnectionPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * Register a listener which is notified when authentication methods enabled for a user are changed using this client.
+     * @param listener Listener to register.
+     */
+    public void addUserAuthMethodsChangeListener(UserAuthMethodsChangeListener listener) {
+        userAuthMethodsChangeListeners.add(listener);
+    }
+
+    /**
+     * Notify listeners about change of authentication methods enabled for a user.
+     * @param userId User ID.
+     */
+    private void notifyUserAuthMethodsChanged(String userId) {
+        for (UserAuthMethodsChangeListener listener: userAuthMethodsChangeListeners) {
+            listener.userAuthMethodsChanged(userId);
+        }
+    }
+
+    /**
+     * Close the HTTP client, shut down the idle connection evictor and release all pooled connections.
+     */
+    public void close() {
+        try {
+            httpClient.close();
+        } catch (IOException ex) {
+            Logger.getLogger(this.getClass().getName()).log(Level.WARNING, "Error while closing HTTP client", ex);
+        }
+    }
+
     /**
      * Calls the operation endpoint via POST method to create a new operation.
      *
@@ -135,13 +232,13 @@ public class NextStepClient {
                 request.getParams().addAll(params);
             }
             HttpEntity<ObjectRequest<CreateOperationRequest>> entity = new HttpEntity<>(new ObjectRequest<>(request));
-            ResponseEntity<ObjectResponse<CreateOperationResponse>> response = defaultTemplate().exchange(serviceUrl + "/operation", HttpMethod.POST, entity, new ParameterizedTypeReference<ObjectResponse<CreateOperationResponse>>() {});
+            ResponseEntity<ObjectResponse<CreateOperationResponse>> response = restTemplate.exchange(serviceUrl + "/operation", HttpMethod.POST, entity, new ParameterizedTypeReference<ObjectResponse<CreateOperationResponse>>() {});
             return new ObjectResponse<>(response.getBody().getResponseObject());
         } catch (HttpStatusCodeException ex) {
-            throw handleHttpError(ex);
+            throw errorHandler.handleHttpError(ex);
         } catch (ResourceAccessException ex) {
             // Next Step service is down
-            throw handleResourceAccessError(ex);
+            throw errorHandler.handleResourceAccessError(ex);
         }
     }
 
@@ -158,6 +255,30 @@ public class NextStepClient {
         return createOperation(operationName, null, operationData, formData, params);
     }
 
+    /**
+     * Calls the operation batch endpoint via POST method to create multiple operations at once. Operations which
+     * cannot be created are reported in results and do not prevent creating other operations.
+     *
+     * @param operations requests to create new operations
+     * @return a Response with CreateOperationBatchResponse object for OK status or ErrorModel for ERROR status
+     * @throws NextStepServiceException Thrown when batch request fails.
+     */
+    public ObjectResponse<CreateOperationBatchResponse> createOperations(List<CreateOperationRequest> operations) throws NextStepServiceException {
+        try {
+            // Exchange next step request with NextStep server.
+            CreateOperationBatchRequest request = new CreateOperationBatchRequest();
+            request.getOperations().addAll(operations);
+            HttpEntity<ObjectRequest<CreateOperationBatchRequest>> entity = new HttpEntity<>(new ObjectRequest<>(request));
+            ResponseEntity<ObjectResponse<CreateOperationBatchResponse>> response = restTemplate.exchange(serviceUrl + "/operation/batch", HttpMethod.POST, entity, new ParameterizedTypeReference<ObjectResponse<CreateOperationBatchResponse>>() {});
+            return new ObjectResponse<>(response.getBody().getResponseObject());
+        } catch (HttpStatusCodeException ex) {
+            throw errorHandler.handleHttpError(ex);
+        } catch (ResourceAccessException ex) {
+            // Next Step service is down
+            throw errorHandler.handleResourceAccessError(ex);
+        }
+    }
+
     /**
      * Calls the operation endpoint via PUT method to update an existing.
      *
@@ -181,13 +302,52 @@ public class NextStepClient {
                 request.getParams().addAll(params);
             }
             HttpEntity<ObjectRequest<UpdateOperationRequest>> entity = new HttpEntity<>(new ObjectRequest<>(request));
-            ResponseEntity<ObjectResponse<UpdateOperationResponse>> response = defaultTemplate().exchange(serviceUrl + "/operation", HttpMethod.PUT, entity, new ParameterizedTypeReference<ObjectResponse<UpdateOperationResponse>>() {
+            ResponseEntity<ObjectResponse<UpdateOperationResponse>> response = restTemplate.exchange(serviceUrl + "/operation", HttpMethod.PUT, entity, new ParameterizedTypeReference<ObjectResponse<UpdateOperationResponse>>() {
+            });
+            return new ObjectResponse<>(response.getBody().getResponseObject());
+        } catch (HttpStatusCodeException ex) {
+            throw errorHandler.handleHttpError(ex);
+        } catch (ResourceAccessException ex) {
+            throw errorHandler.handleResourceAccessError(ex);
+        }
+    }
+
+    /**
+     * Calls the operation detail endpoint via PUT method to validate and update an existing operation in a single
+     * request. The updated operation detail is returned, so that it does not need to be fetched again.
+     *
+     * @param operationId    id of the updated operation
+     * @param userId         user id
+     * @param authMethod     authentication method
+     * @param authStepResult result of the last step
+     * @param authStepResultDescription description of the result of the last step
+     * @param params         list of generic parameters
+     * @param expectedVersion expected version of the operation, use null to skip the concurrent modification check
+     * @return a Response with {@link GetOperationDetailResponse} object for OK status or ErrorModel for ERROR status
+     * @throws NextStepServiceException Thrown when update fails, {@link io.getlime.security.powerauth.lib.nextstep.model.exception.OperationVersionConflictException}
+     * is thrown when the operation was modified concurrently.
+     */
+    public ObjectResponse<GetOperationDetailResponse> updateOperationWithDetail(String operationId, String userId, AuthMethod authMethod, AuthStepResult authStepResult, String authStepResultDescription, List<KeyValueParameter> params, Long expectedVersion) throws NextStepServiceException {
+        try {
+            // Exchange next step request with NextStep server.
+            UpdateOperationRequest request = new UpdateOperationRequest();
+            request.setOperationId(operationId);
+            request.setUserId(userId);
+            request.setAuthMethod(authMethod);
+            request.setAuthStepResult(authStepResult);
+            request.setAuthStepResultDescription(authStepResultDescription);
+            request.setExpectedVersion(expectedVersion);
+            if (params != null) {
+                request.getParams().addAll(params);
+            }
+            HttpEntity<ObjectRequest<UpdateOperationRequest>> entity = new HttpEntity<>(new ObjectRequest<>(request));
+            ResponseEntity<ObjectResponse<GetOperationDetailResponse>> response = restTemplate.exchange(serviceUrl + "/operation/detail", HttpMethod.PUT, entity, new ParameterizedTypeReference<ObjectResponse<GetOperationDetailResponse>>() {
             });
             return new ObjectResponse<>(response.getBody().getResponseObject());
         } catch (HttpStatusCodeException ex) {
-            throw handleHttpError(ex);
+            throw errorHandler.handleHttpError(ex);
         } catch (ResourceAccessException ex) {
-            throw handleResourceAccessError(ex);
+            throw errorHandler.handleResourceAccessError(ex);
         }
     }
 
@@ -205,13 +365,37 @@ public class NextStepClient {
             request.setOperationId(operationId);
             request.setFormData(formData);
             HttpEntity<ObjectRequest<UpdateFormDataRequest>> entity = new HttpEntity<>(new ObjectRequest<>(request));
-            ResponseEntity<ObjectResponse> response = defaultTemplate().exchange(serviceUrl + "/operation/formData", HttpMethod.PUT, entity, new ParameterizedTypeReference<ObjectResponse>() {
+            ResponseEntity<ObjectResponse> response = restTemplate.exchange(serviceUrl + "/operation/formData", HttpMethod.PUT, entity, new ParameterizedTypeReference<ObjectResponse>() {
+            });
+            return new ObjectResponse<>(response.getBody().getResponseObject());
+        } catch (HttpStatusCodeException ex) {
+            throw errorHandler.handleHttpError(ex);
+        } catch (ResourceAccessException ex) {
+            throw errorHandler.handleResourceAccessError(ex);
+        }
+    }
+
+    /**
+     * Update changed keys of user input in operation formData, user input with null value is removed.
+     * @param operationId Operation ID.
+     * @param userInput Changed user input.
+     * @return Object response.
+     * @throws NextStepServiceException Thrown when update request fails.
+     */
+    public ObjectResponse updateOperationUserInput(String operationId, Map<String, String> userInput) throws NextStepServiceException {
+        try {
+            // Exchange next step request with NextStep server.
+            UpdateUserInputRequest request = new UpdateUserInputRequest();
+            request.setOperationId(operationId);
+            request.setUserInput(userInput);
+            HttpEntity<ObjectRequest<UpdateUserInputRequest>> entity = new HttpEntity<>(new ObjectRequest<>(request));
+            ResponseEntity<ObjectResponse> response = restTemplate.exchange(serviceUrl + "/operation/formData/userInput", HttpMethod.PUT, entity, new ParameterizedTypeReference<ObjectResponse>() {
             });
             return new ObjectResponse<>(response.getBody().getResponseObject());
         } catch (HttpStatusCodeException ex) {
-            throw handleHttpError(ex);
+            throw errorHandler.handleHttpError(ex);
         } catch (ResourceAccessException ex) {
-            throw handleResourceAccessError(ex);
+            throw errorHandler.handleResourceAccessError(ex);
         }
     }
 
@@ -229,13 +413,13 @@ public class NextStepClient {
             request.setOperationId(operationId);
             request.setChosenAuthMethod(chosenAuthMethod);
             HttpEntity<ObjectRequest<UpdateChosenAuthMethodRequest>> entity = new HttpEntity<>(new ObjectRequest<>(request));
-            ResponseEntity<ObjectResponse> response = defaultTemplate().exchange(serviceUrl + "/operation/chosenAuthMethod", HttpMethod.PUT, entity, new ParameterizedTypeReference<ObjectResponse>() {
+            ResponseEntity<ObjectResponse> response = restTemplate.exchange(serviceUrl + "/operation/chosenAuthMethod", HttpMethod.PUT, entity, new ParameterizedTypeReference<ObjectResponse>() {
             });
             return new ObjectResponse<>(response.getBody().getResponseObject());
         } catch (HttpStatusCodeException ex) {
-            throw handleHttpError(ex);
+            throw errorHandler.handleHttpError(ex);
         } catch (ResourceAccessException ex) {
-            throw handleResourceAccessError(ex);
+            throw errorHandler.handleResourceAccessError(ex);
         }
     }
 
@@ -252,13 +436,37 @@ public class NextStepClient {
             GetOperationDetailRequest request = new GetOperationDetailRequest();
             request.setOperationId(id);
             HttpEntity<ObjectRequest<GetOperationDetailRequest>> entity = new HttpEntity<>(new ObjectRequest<>(request));
-            ResponseEntity<ObjectResponse<GetOperationDetailResponse>> response = defaultTemplate().exchange(serviceUrl + "/operation/detail", HttpMethod.POST, entity, new ParameterizedTypeReference<ObjectResponse<GetOperationDetailResponse>>() {});
+            ResponseEntity<ObjectResponse<GetOperationDetailResponse>> response = restTemplate.exchange(serviceUrl + "/operation/detail", HttpMethod.POST, entity, new ParameterizedTypeReference<ObjectResponse<GetOperationDetailResponse>>() {});
+            return new ObjectResponse<>(response.getBody().getResponseObject());
+        } catch (HttpStatusCodeException ex) {
+            throw errorHandler.handleHttpError(ex);
+        } catch (ResourceAccessException ex) {
+            // Next Step service is down
+            throw errorHandler.handleResourceAccessError(ex);
+        }
+    }
+
+    /**
+     * Calls the operation detail batch endpoint via POST method to get details of multiple operations at once.
+     * Operations which do not exist are not included in the response.
+     *
+     * @param operationIds operation IDs
+     * @return a Response with list of GetOperationDetailResponse objects for OK status or ErrorModel for ERROR status
+     * @throws NextStepServiceException Thrown when batch request fails.
+     */
+    public ObjectResponse<List<GetOperationDetailResponse>> getOperationDetails(Collection<String> operationIds) throws NextStepServiceException {
+        try {
+            // Exchange next step request with NextStep server.
+            GetOperationDetailBatchRequest request = new GetOperationDetailBatchRequest();
+            request.getOperationIds().addAll(operationIds);
+            HttpEntity<ObjectRequest<GetOperationDetailBatchRequest>> entity = new HttpEntity<>(new ObjectRequest<>(request));
+            ResponseEntity<ObjectResponse<List<GetOperationDetailResponse>>> response = restTemplate.exchange(serviceUrl + "/operation/detail/batch", HttpMethod.POST, entity, new ParameterizedTypeReference<ObjectResponse<List<GetOperationDetailResponse>>>() {});
             return new ObjectResponse<>(response.getBody().getResponseObject());
         } catch (HttpStatusCodeException ex) {
-            throw handleHttpError(ex);
+            throw errorHandler.handleHttpError(ex);
         } catch (ResourceAccessException ex) {
             // Next Step service is down
-            throw handleResourceAccessError(ex);
+            throw errorHandler.handleResourceAccessError(ex);
         }
     }
 
@@ -280,13 +488,48 @@ public class NextStepClient {
             request.setUserId(userId);
             request.setAuthMethod(authMethod);
             HttpEntity<ObjectRequest<GetPendingOperationsRequest>> entity = new HttpEntity<>(new ObjectRequest<>(request));
-            ResponseEntity<ObjectResponse<List<GetOperationDetailResponse>>> response = defaultTemplate().exchange(serviceUrl + "/user/operation/list", HttpMethod.POST, entity, new ParameterizedTypeReference<ObjectResponse<List<GetOperationDetailResponse>>>() {
+            ResponseEntity<ObjectResponse<List<GetOperationDetailResponse>>> response = restTemplate.exchange(serviceUrl + "/user/operation/list", HttpMethod.POST, entity, new ParameterizedTypeReference<ObjectResponse<List<GetOperationDetailResponse>>>() {
+            });
+            return new ObjectResponse<>(response.getBody().getResponseObject());
+        } catch (HttpStatusCodeException ex) {
+            throw errorHandler.handleHttpError(ex);
+        } catch (ResourceAccessException ex) {
+            throw errorHandler.handleResourceAccessError(ex);
+        }
+    }
+
+    /**
+     * Calls the get pending operations endpoint via POST method to get a page of pending operations. Operations are
+     * ordered by creation time and operation ID, the next page is requested using creation time and operation ID
+     * of the last operation from previous page.
+     * @param userId user id
+     * @param authMethod authentication method
+     * @param lastTimestampCreated creation time of the last operation from previous page, null for the first page
+     * @param lastOperationId operation ID of the last operation from previous page, null for the first page
+     * @param limit maximum number of operations
+     * @param summary whether only operation summaries with form data title are returned
+     * @return a Response with list of {@link GetOperationDetailResponse} for OK status
+     * @throws NextStepServiceException Exception with {@link Error} for ERROR status
+     */
+    public ObjectResponse<List<GetOperationDetailResponse>> getPendingOperations(String userId, AuthMethod authMethod, Date lastTimestampCreated,
+                                                                                 String lastOperationId, int limit, boolean summary) throws NextStepServiceException {
+        try {
+            // Exchange next step request with NextStep server.
+            GetPendingOperationsRequest request = new GetPendingOperationsRequest();
+            request.setUserId(userId);
+            request.setAuthMethod(authMethod);
+            request.setLastTimestampCreated(lastTimestampCreated);
+            request.setLastOperationId(lastOperationId);
+            request.setLimit(limit);
+            request.setSummary(summary);
+            HttpEntity<ObjectRequest<GetPendingOperationsRequest>> entity = new HttpEntity<>(new ObjectRequest<>(request));
+            ResponseEntity<ObjectResponse<List<GetOperationDetailResponse>>> response = restTemplate.exchange(serviceUrl + "/user/operation/list", HttpMethod.POST, entity, new ParameterizedTypeReference<ObjectResponse<List<GetOperationDetailResponse>>>() {
             });
             return new ObjectResponse<>(response.getBody().getResponseObject());
         } catch (HttpStatusCodeException ex) {
-            throw handleHttpError(ex);
+            throw errorHandler.handleHttpError(ex);
         } catch (ResourceAccessException ex) {
-            throw handleResourceAccessError(ex);
+            throw errorHandler.handleResourceAccessError(ex);
         }
     }
 
@@ -301,13 +544,13 @@ public class NextStepClient {
             // Exchange next step request with NextStep server.
             GetAuthMethodsRequest request = new GetAuthMethodsRequest();
             HttpEntity<ObjectRequest<GetAuthMethodsRequest>> entity = new HttpEntity<>(new ObjectRequest<>(request));
-            ResponseEntity<ObjectResponse<GetAuthMethodsResponse>> response = defaultTemplate().exchange(serviceUrl + "/auth-method/list", HttpMethod.POST, entity, new ParameterizedTypeReference<ObjectResponse<GetAuthMethodsResponse>>() {
+            ResponseEntity<ObjectResponse<GetAuthMethodsResponse>> response = restTemplate.exchange(serviceUrl + "/auth-method/list", HttpMethod.POST, entity, new ParameterizedTypeReference<ObjectResponse<GetAuthMethodsResponse>>() {
             });
             return new ObjectResponse<>(response.getBody().getResponseObject());
         } catch (HttpStatusCodeException ex) {
-            throw handleHttpError(ex);
+            throw errorHandler.handleHttpError(ex);
         } catch (ResourceAccessException ex) {
-            throw handleResourceAccessError(ex);
+            throw errorHandler.handleResourceAccessError(ex);
         }
     }
 
@@ -324,13 +567,13 @@ public class NextStepClient {
             GetUserAuthMethodsRequest request = new GetUserAuthMethodsRequest();
             request.setUserId(userId);
             HttpEntity<ObjectRequest<GetUserAuthMethodsRequest>> entity = new HttpEntity<>(new ObjectRequest<>(request));
-            ResponseEntity<ObjectResponse<GetUserAuthMethodsResponse>> response = defaultTemplate().exchange(serviceUrl + "/user/auth-method/list", HttpMethod.POST, entity, new ParameterizedTypeReference<ObjectResponse<GetUserAuthMethodsResponse>>() {
+            ResponseEntity<ObjectResponse<GetUserAuthMethodsResponse>> response = restTemplate.exchange(serviceUrl + "/user/auth-method/list", HttpMethod.POST, entity, new ParameterizedTypeReference<ObjectResponse<GetUserAuthMethodsResponse>>() {
             });
             return new ObjectResponse<>(response.getBody().getResponseObject());
         } catch (HttpStatusCodeException ex) {
-            throw handleHttpError(ex);
+            throw errorHandler.handleHttpError(ex);
         } catch (ResourceAccessException ex) {
-            throw handleResourceAccessError(ex);
+            throw errorHandler.handleResourceAccessError(ex);
         }
     }
 
@@ -349,13 +592,16 @@ public class NextStepClient {
             request.setAuthMethod(authMethod);
             HttpEntity<ObjectRequest<UpdateAuthMethodRequest>> entity = new HttpEntity<>(new ObjectRequest<>(request));
             // Exchange next step request with NextStep server.
-            ResponseEntity<ObjectResponse<GetAuthMethodsResponse>> response = defaultTemplate().exchange(serviceUrl + "/user/auth-method", HttpMethod.POST, entity, new ParameterizedTypeReference<ObjectResponse<GetAuthMethodsResponse>>() {
+            ResponseEntity<ObjectResponse<GetAuthMethodsResponse>> response = restTemplate.exchange(serviceUrl + "/user/auth-method", HttpMethod.POST, entity, new ParameterizedTypeReference<ObjectResponse<GetAuthMethodsResponse>>() {
             });
+            notifyUserAuthMethodsChanged(userId);
             return new ObjectResponse<>(response.getBody().getResponseObject());
         } catch (HttpStatusCodeException ex) {
-            throw handleHttpError(ex);
+            throw errorHandler.handleHttpError(ex);
         } catch (ResourceAccessException ex) {
-            throw handleResourceAccessError(ex);
+            // the request could have been processed by Next Step server before the connection failed
+            notifyUserAuthMethodsChanged(userId);
+            throw errorHandler.handleResourceAccessError(ex);
         }
     }
 
@@ -374,51 +620,16 @@ public class NextStepClient {
             request.setAuthMethod(authMethod);
             HttpEntity<ObjectRequest<UpdateAuthMethodRequest>> entity = new HttpEntity<>(new ObjectRequest<>(request));
             // Exchange next step request with NextStep server.
-            ResponseEntity<ObjectResponse<GetAuthMethodsResponse>> response = defaultTemplate().exchange(serviceUrl + "/user/auth-method", HttpMethod.DELETE, entity, new ParameterizedTypeReference<ObjectResponse<GetAuthMethodsResponse>>() {
+            ResponseEntity<ObjectResponse<GetAuthMethodsResponse>> response = restTemplate.exchange(serviceUrl + "/user/auth-method", HttpMethod.DELETE, entity, new ParameterizedTypeReference<ObjectResponse<GetAuthMethodsResponse>>() {
             });
+            notifyUserAuthMethodsChanged(userId);
             return new ObjectResponse<>(response.getBody().getResponseObject());
         } catch (HttpStatusCodeException ex) {
-            throw handleHttpError(ex);
+            throw errorHandler.handleHttpError(ex);
         } catch (ResourceAccessException ex) {
-            throw handleResourceAccessError(ex);
-        }
-    }
-
-
-    /**
-     * Handle resource access error (i.e. server not available).
-     * @param ex Exception to handle
-     * @return Next step service exception
-     * @throws NextStepServiceException exception with ErrorModel
-     */
-    private NextStepServiceException handleResourceAccessError(ResourceAccessException ex) throws NextStepServiceException {
-        Error error = new Error(Error.Code.ERROR_GENERIC, ex.getMessage());
-        return new NextStepServiceException(ex, error);
-    }
-
-    /**
-     * Handle HTTP error.
-     * @param ex Exception to handle
-     * @return Next step service exception
-     * @throws NextStepServiceException exception with ErrorModel
-     */
-    private NextStepServiceException handleHttpError(HttpStatusCodeException ex) throws NextStepServiceException {
-        try {
-            TypeReference<ObjectResponse<Error>> typeReference = new TypeReference<ObjectResponse<Error>>() {};
-            ObjectResponse<Error> errorResponse = objectMapper.readValue(ex.getResponseBodyAsString(), typeReference);
-            Error error = errorResponse.getResponseObject();
-            switch (error.getCode()) {
-                case OperationAlreadyFinishedException.CODE:
-                    throw new OperationAlreadyFinishedException(error.getMessage());
-                case OperationAlreadyFailedException.CODE:
-                    throw new OperationAlreadyFailedException(error.getMessage());
-                default:
-                    return new NextStepServiceException(ex, error);
-            }
-        } catch (IOException ex2) {
-            // JSON parsing failed
-            Error error = new Error(Error.Code.ERROR_GENERIC, ex2.getMessage());
-            return new NextStepServiceException(ex, error);
+            // the request could have been processed by Next Step server before the connection failed
+            notifyUserAuthMethodsChanged(userId);
+            throw errorHandler.handleResourceAccessError(ex);
         }
     }
 
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.lib.nextstep.client;
+
+/**
+ * Configuration of the HTTP transport used by {@link NextStepClient} and {@link NextStepAsyncClient}. The client keeps a single pool
+ * of keep-alive connections to the Next Step server for its whole lifetime, values in this class
+ * control the size of the pool and timeouts. All timeouts are in milliseconds.
+ *
+ * @author Roman Strobl
+ */
+public class NextStepClientConfiguration {
+
+    /**
+     * Maximum number of connections in the pool.
+     */
+    private int maxConnections = 100;
+
+    /**
+     * Maximum number of connections per route (Next Step server is usually a single route).
+     */
+    private int maxConnectionsPerRoute = 100;
+
+    /**
+     * Timeout for establishing a TCP connection.
+     */
+    private int connectTimeout = 5000;
+
+    /**
+     * Timeout for reading data from an established connection.
+     */
+    private int readTimeout = 30000;
+
+    /**
+     * Timeout for obtaining a connection from the pool.
+     */
+    private int connectionRequestTimeout = 5000;
+
+    /**
+     * Time after which idle connections are evicted from the pool.
+     */
+    private long idleConnectionTimeout = 60000;
+
+    /**
+     * Maximum lifetime of a pooled connection, use a non-positive value for unlimited lifetime.
+     */
+    private long connectionTimeToLive = -1;
+
+    /**
+     * Maximum number of requests in flight in the asynchronous client, requests over the limit are rejected.
+     */
+    private int maxInFlightRequests = 200;
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public int getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+        this.connectionRequestTimeout = connectionRequestTimeout;
+    }
+
+    public long getIdleConnectionTimeout() {
+        return idleConnectionTimeout;
+    }
+
+    public void setIdleConnectionTimeout(long idleConnectionTimeout) {
+        this.idleConnectionTimeout = idleConnectionTimeout;
+    }
+
+    public long getConnectionTimeToLive() {
+        return connectionTimeToLive;
+    }
+
+    public void setConnectionTimeToLive(long connectionTimeToLive) {
+        this.connectionTimeToLive = connectionTimeToLive;
+    }
+
+    public int getMaxInFlightRequests() {
+        return maxInFlightRequests;
+    }
+
+    public void setMaxInFlightRequests(int maxInFlightRequests) {
+        this.maxInFlightRequests = maxInFlightRequests;
+    }
+}
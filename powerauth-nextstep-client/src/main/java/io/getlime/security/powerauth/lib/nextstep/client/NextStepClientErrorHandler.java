@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.lib.nextstep.client;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.getlime.core.rest.model.base.entity.Error;
+import io.getlime.core.rest.model.base.response.ObjectResponse;
+import io.getlime.security.powerauth.lib.nextstep.model.exception.NextStepServiceException;
+import io.getlime.security.powerauth.lib.nextstep.model.exception.OperationAlreadyFailedException;
+import io.getlime.security.powerauth.lib.nextstep.model.exception.OperationAlreadyFinishedException;
+import io.getlime.security.powerauth.lib.nextstep.model.exception.OperationVersionConflictException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+
+/**
+ * Conversion of HTTP errors into Next Step service exceptions, shared by synchronous and asynchronous clients.
+ *
+ * @author Roman Strobl
+ */
+class NextStepClientErrorHandler {
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Create error handler with object mapper used for parsing of error responses.
+     * @param objectMapper Object mapper.
+     */
+    NextStepClientErrorHandler(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Handle resource access error (i.e. server not available).
+     * @param ex Exception to handle
+     * @return Next step service exception
+     */
+    NextStepServiceException handleResourceAccessError(ResourceAccessException ex) {
+        Error error = new Error(Error.Code.ERROR_GENERIC, ex.getMessage());
+        return new NextStepServiceException(ex, error);
+    }
+
+    /**
+     * Handle HTTP error.
+     * @param ex Exception to handle
+     * @return Next step service exception
+     */
+    NextStepServiceException handleHttpError(HttpStatusCodeException ex) {
+        try {
+            TypeReference<ObjectResponse<Error>> typeReference = new TypeReference<ObjectResponse<Error>>() {};
+            ObjectResponse<Error> errorResponse = objectMapper.readValue(ex.getResponseBodyAsString(), typeReference);
+            Error error = errorResponse.getResponseObject();
+            switch (error.getCode()) {
+                case OperationAlreadyFinishedException.CODE:
+                    return new OperationAlreadyFinishedException(error.getMessage());
+                case OperationAlreadyFailedException.CODE:
+                    return new OperationAlreadyFailedException(error.getMessage());
+                case OperationVersionConflictException.CODE:
+                    return new OperationVersionConflictException(error.getMessage());
+                default:
+                    return new NextStepServiceException(ex, error);
+            }
+        } catch (IOException ex2) {
+            // JSON parsing failed
+            Error error = new Error(Error.Code.ERROR_GENERIC, ex2.getMessage());
+            return new NextStepServiceException(ex, error);
+        }
+    }
+
+    /**
+     * Handle any error which occurred during communication with Next Step server.
+     * @param ex Exception to handle
+     * @return Next step service exception
+     */
+    NextStepServiceException handleError(Throwable ex) {
+        if (ex instanceof NextStepServiceException) {
+            return (NextStepServiceException) ex;
+        }
+        if (ex instanceof HttpStatusCodeException) {
+            return handleHttpError((HttpStatusCodeException) ex);
+        }
+        if (ex instanceof ResourceAccessException) {
+            return handleResourceAccessError((ResourceAccessException) ex);
+        }
+        Error error = new Error(Error.Code.ERROR_GENERIC, ex.getMessage());
+        return new NextStepServiceException(ex, error);
+    }
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.lib.nextstep.client;
+
+/**
+ * Listener which is notified when {@link NextStepClient} changes authentication methods enabled for a user.
+ *
+ * @author Roman Strobl
+ */
+public interface UserAuthMethodsChangeListener {
+
+    /**
+     * Called after a request to enable or disable an authentication method for a user succeeds. The listener is also
+     * called when the connection to Next Step server fails, because the change could have been applied before the
+     * failure. Requests rejected by Next Step server do not change anything and the listener is not called.
+     *
+     * @param userId User ID.
+     */
+    void userAuthMethodsChanged(String userId);
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.lib.nextstep.model.entity;
+
+import io.getlime.security.powerauth.lib.nextstep.model.response.CreateOperationResponse;
+
+/**
+ * Result of creating a single operation within a batch. Either the created operation or the error message
+ * is available, failure of a single operation does not prevent creating other operations in the batch.
+ *
+ * @author Roman Strobl
+ */
+public class CreateOperationResult {
+
+    private CreateOperationResponse operation;
+    private String errorMessage;
+
+    /**
+     * Default constructor.
+     */
+    public CreateOperationResult() {
+    }
+
+    /**
+     * Constructor with created operation or error message.
+     * @param operation Created operation, null in case operation was not created.
+     * @param errorMessage Error message, null in case operation was created.
+     */
+    public CreateOperationResult(CreateOperationResponse operation, String errorMessage) {
+        this.operation = operation;
+        this.errorMessage = errorMessage;
+    }
+
+    /**
+     * Get created operation.
+     * @return Created operation, null in case operation was not created.
+     */
+    public CreateOperationResponse getOperation() {
+        return operation;
+    }
+
+    /**
+     * Set created operation.
+     * @param operation Created operation.
+     */
+    public void setOperation(CreateOperationResponse operation) {
+        this.operation = operation;
+    }
+
+    /**
+     * Get error message.
+     * @return Error message, null in case operation was created.
+     */
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    /**
+     * Set error message.
+     * @param errorMessage Error message.
+     */
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.lib.nextstep.model.exception;
+
+import io.getlime.core.rest.model.base.entity.Error;
+
+/**
+ * Exception for case when operation was modified concurrently and the expected operation version does not match.
+ *
+ * @author Roman Strobl, roman.strobl@lime-company.eu
+ */
+public class OperationVersionConflictException extends NextStepServiceException {
+
+    public static final String CODE = "OPERATION_VERSION_CONFLICT";
+
+    private Error error;
+
+    /**
+     * Constructor with error message.
+     * @param message Error message.
+     */
+    public OperationVersionConflictException(String message) {
+        super(message);
+    }
+
+    /**
+     * Constructor with cause.
+     * @param cause Original exception.
+     */
+    public OperationVersionConflictException(Throwable cause) {
+        super(cause);
+    }
+
+    /**
+     * Constructor with cause and error details.
+     * @param cause Original exception.
+     * @param error Object with error information.
+     */
+    public OperationVersionConflictException(Throwable cause, Error error) {
+        super(cause);
+        this.error = error;
+    }
+
+    /**
+     * Get error detail information.
+     * @return Error detail information.
+     */
+    public Error getError() {
+        return error;
+    }
+}
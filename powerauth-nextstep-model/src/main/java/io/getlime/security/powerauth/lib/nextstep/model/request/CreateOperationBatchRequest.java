@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.lib.nextstep.model.request;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Request object used for creating multiple operations at once, e.g. for authorization of a batch of payments.
+ *
+ * @author Roman Strobl
+ */
+public class CreateOperationBatchRequest {
+
+    private List<CreateOperationRequest> operations;
+
+    /**
+     * Default constructor.
+     */
+    public CreateOperationBatchRequest() {
+        operations = new ArrayList<>();
+    }
+
+    public List<CreateOperationRequest> getOperations() {
+        return operations;
+    }
+
+    public void setOperations(List<CreateOperationRequest> operations) {
+        this.operations = operations;
+    }
+}
@@ -17,8 +17,12 @@ package io.getlime.security.powerauth.lib.nextstep.model.request;
 
 import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthMethod;
 
+import java.util.Date;
+
 /**
- * Request object used for querying of pending operations.
+ * Request object used for querying of pending operations. Pages of pending operations are ordered by creation time and
+ * operation ID. In case limit is specified, a single page of operations is returned, the next page is requested
+ * using creation time and operation ID of the last operation from previous page.
  *
  * @author Roman Strobl, roman.strobl@lime-company.eu
  */
@@ -26,6 +30,10 @@ public class GetPendingOperationsRequest {
 
     private String userId;
     private AuthMethod authMethod;
+    private Date lastTimestampCreated;
+    private String lastOperationId;
+    private Integer limit;
+    private boolean summary;
 
     /**
      * Get the user id.
@@ -62,4 +70,77 @@ public class GetPendingOperationsRequest {
     public void setAuthMethod(AuthMethod authMethod) {
         this.authMethod = authMethod;
     }
+
+    /**
+     * Get creation time of the last operation from previous page.
+     *
+     * @return creation time of the last operation, null for the first page
+     */
+    public Date getLastTimestampCreated() {
+        return lastTimestampCreated;
+    }
+
+    /**
+     * Set creation time of the last operation from previous page.
+     *
+     * @param lastTimestampCreated creation time of the last operation, null for the first page
+     */
+    public void setLastTimestampCreated(Date lastTimestampCreated) {
+        this.lastTimestampCreated = lastTimestampCreated;
+    }
+
+    /**
+     * Get operation ID of the last operation from previous page.
+     *
+     * @return operation ID of the last operation, null for the first page
+     */
+    public String getLastOperationId() {
+        return lastOperationId;
+    }
+
+    /**
+     * Set operation ID of the last operation from previous page.
+     *
+     * @param lastOperationId operation ID of the last operation, null for the first page
+     */
+    public void setLastOperationId(String lastOperationId) {
+        this.lastOperationId = lastOperationId;
+    }
+
+    /**
+     * Get maximum number of returned operations.
+     *
+     * @return maximum number of operations, null for all pending operations
+     */
+    public Integer getLimit() {
+        return limit;
+    }
+
+    /**
+     * Set maximum number of returned operations.
+     *
+     * @param limit maximum number of operations, null for all pending operations
+     */
+    public void setLimit(Integer limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Get whether only operation summaries are returned. Operation summary contains only the title from form data
+     * and it does not contain operation data.
+     *
+     * @return whether only operation summaries are returned
+     */
+    public boolean isSummary() {
+        return summary;
+    }
+
+    /**
+     * Set whether only operation summaries are returned.
+     *
+     * @param summary whether only operation summaries are returned
+     */
+    public void setSummary(boolean summary) {
+        this.summary = summary;
+    }
 }
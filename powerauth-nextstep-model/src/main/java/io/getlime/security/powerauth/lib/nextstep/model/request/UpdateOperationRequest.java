@@ -35,6 +35,7 @@ public class UpdateOperationRequest {
     private AuthStepResult authStepResult;
     private String authStepResultDescription;
     private List<KeyValueParameter> params;
+    private Long expectedVersion;
 
     /**
      * Default constructor.
@@ -124,6 +125,7 @@ public class UpdateOperationRequest {
     public void setAuthStepResultDescription(String authStepResultDescription) {
         this.authStepResultDescription = authStepResultDescription;
     }
+
     /**
      * Get the list with optional extra parameters.
      * @return Extra parameters.
@@ -132,4 +134,21 @@ public class UpdateOperationRequest {
         return params;
     }
 
+    /**
+     * Get the expected version of the operation. When set, the update with operation detail response is rejected
+     * in case the operation was modified in the meantime.
+     * @return Expected operation version, null if version should not be checked.
+     */
+    public Long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    /**
+     * Set the expected version of the operation.
+     * @param expectedVersion Expected operation version, null if version should not be checked.
+     */
+    public void setExpectedVersion(Long expectedVersion) {
+        this.expectedVersion = expectedVersion;
+    }
+
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.lib.nextstep.model.request;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Request object used for partial update of user input in form data of an operation. Only the keys present
+ * in the request are changed, a key with null value is removed from user input.
+ *
+ * @author Roman Strobl, roman.strobl@lime-company.eu
+ */
+public class UpdateUserInputRequest {
+
+    private String operationId;
+    private Map<String, String> userInput;
+
+    /**
+     * Default constructor.
+     */
+    public UpdateUserInputRequest() {
+        this.userInput = new LinkedHashMap<>();
+    }
+
+    /**
+     * Constructor with operation ID and changed user input.
+     * @param operationId Operation ID.
+     * @param userInput Changed user input.
+     */
+    public UpdateUserInputRequest(String operationId, Map<String, String> userInput) {
+        this.operationId = operationId;
+        this.userInput = userInput;
+    }
+
+    /**
+     * Get operation ID.
+     * @return Operation ID.
+     */
+    public String getOperationId() {
+        return operationId;
+    }
+
+    /**
+     * Set operation ID.
+     * @param operationId Operation ID.
+     */
+    public void setOperationId(String operationId) {
+        this.operationId = operationId;
+    }
+
+    /**
+     * Get changed user input.
+     * @return Changed user input.
+     */
+    public Map<String, String> getUserInput() {
+        return userInput;
+    }
+
+    /**
+     * Set changed user input.
+     * @param userInput Changed user input.
+     */
+    public void setUserInput(Map<String, String> userInput) {
+        this.userInput = userInput;
+    }
+}
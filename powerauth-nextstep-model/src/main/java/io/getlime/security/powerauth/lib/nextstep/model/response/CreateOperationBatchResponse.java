@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.lib.nextstep.model.response;
+
+import io.getlime.security.powerauth.lib.nextstep.model.entity.CreateOperationResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Response object used for creating multiple operations at once. Results are in the same order as operations
+ * in the request.
+ *
+ * @author Roman Strobl
+ */
+public class CreateOperationBatchResponse {
+
+    private List<CreateOperationResult> results;
+
+    /**
+     * Default constructor.
+     */
+    public CreateOperationBatchResponse() {
+        results = new ArrayList<>();
+    }
+
+    public List<CreateOperationResult> getResults() {
+        return results;
+    }
+
+    public void setResults(List<CreateOperationResult> results) {
+        this.results = results;
+    }
+}
@@ -36,13 +36,16 @@ public class GetOperationDetailResponse {
     private String operationName;
     private String userId;
     private AuthResult result;
+    private String resultDescription;
     private Date timestampCreated;
     private Date timestampExpires;
+    private Date timestampUpdated;
     private String operationData;
     private List<AuthStep> steps;
     private List<OperationHistory> history;
     private OperationFormData formData;
     private AuthMethod chosenAuthMethod;
+    private Long version;
 
     /**
      * Default constructor.
@@ -148,6 +151,22 @@ public class GetOperationDetailResponse {
         this.timestampExpires = timestampExpires;
     }
 
+    /**
+     * Get the timestamp of the last update of the operation.
+     * @return Timestamp of the last update of the operation.
+     */
+    public Date getTimestampUpdated() {
+        return timestampUpdated;
+    }
+
+    /**
+     * Set the timestamp of the last update of the operation.
+     * @param timestampUpdated Timestamp of the last update of the operation.
+     */
+    public void setTimestampUpdated(Date timestampUpdated) {
+        this.timestampUpdated = timestampUpdated;
+    }
+
     /**
      * Get operation data.
      * @return Operation data.
@@ -220,4 +239,36 @@ public class GetOperationDetailResponse {
     public void setChosenAuthMethod(AuthMethod chosenAuthMethod) {
         this.chosenAuthMethod = chosenAuthMethod;
     }
+
+    /**
+     * Get description of the operation result.
+     * @return Result description.
+     */
+    public String getResultDescription() {
+        return resultDescription;
+    }
+
+    /**
+     * Set description of the operation result.
+     * @param resultDescription Result description.
+     */
+    public void setResultDescription(String resultDescription) {
+        this.resultDescription = resultDescription;
+    }
+
+    /**
+     * Get version of the operation, the version changes with each update of the operation.
+     * @return Operation version.
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    /**
+     * Set version of the operation.
+     * @param version Operation version.
+     */
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.lib.nextstep.model.response;
+
+import java.util.Date;
+
+/**
+ * Response object used for getting the version of step definitions active in Next Step server.
+ *
+ * @author Roman Strobl
+ */
+public class GetStepDefinitionVersionResponse {
+
+    private String version;
+    private Date timestampLoaded;
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public Date getTimestampLoaded() {
+        return timestampLoaded;
+    }
+
+    public void setTimestampLoaded(Date timestampLoaded) {
+        this.timestampLoaded = timestampLoaded;
+    }
+}
@@ -34,6 +34,60 @@ public class NextStepServerConfiguration {
     @Value("${powerauth.nextstep.operation.expirationTimeInSeconds}")
     private int operationExpirationTime;
 
+    /**
+     * Interval in seconds for checking changes of step definitions in database.
+     */
+    @Value("${powerauth.nextstep.stepDefinition.refreshIntervalInSeconds}")
+    private int stepDefinitionRefreshInterval;
+
+    /**
+     * Interval in seconds for reloading authentication methods from database.
+     */
+    @Value("${powerauth.nextstep.authMethod.refreshIntervalInSeconds}")
+    private int authMethodRefreshInterval;
+
+    /**
+     * Maximum number of users with cached user preferences.
+     */
+    @Value("${powerauth.nextstep.userPrefs.cache.maxSize}")
+    private int userPrefsCacheMaxSize;
+
+    /**
+     * Time to live of cached user preferences in seconds.
+     */
+    @Value("${powerauth.nextstep.userPrefs.cache.timeToLiveInSeconds}")
+    private int userPrefsCacheTimeToLive;
+
+    /**
+     * Maximum number of operations which can be created in a single batch.
+     */
+    @Value("${powerauth.nextstep.operation.batch.maxSize}")
+    private int operationBatchMaxSize;
+
+    /**
+     * Interval in seconds between runs of the background job which fails expired operations and archives finished operations.
+     */
+    @Value("${powerauth.nextstep.operation.reaper.intervalInSeconds}")
+    private int operationReaperInterval;
+
+    /**
+     * Number of operations processed by the background job in a single batch.
+     */
+    @Value("${powerauth.nextstep.operation.reaper.batchSize}")
+    private int operationReaperBatchSize;
+
+    /**
+     * Time in seconds for which a Next Step node holds the lease of the background job.
+     */
+    @Value("${powerauth.nextstep.operation.reaper.leaseTimeInSeconds}")
+    private int operationReaperLeaseTime;
+
+    /**
+     * Retention period of finished operations in days.
+     */
+    @Value("${powerauth.nextstep.operation.archive.retentionInDays}")
+    private int operationRetentionPeriod;
+
     /**
      * Get the operation expiration time.
      *
@@ -42,4 +96,85 @@ public class NextStepServerConfiguration {
     public int getOperationExpirationTime() {
         return operationExpirationTime;
     }
+
+    /**
+     * Get the interval for checking changes of step definitions.
+     *
+     * @return refresh interval in seconds, non-positive value disables the refresh
+     */
+    public int getStepDefinitionRefreshInterval() {
+        return stepDefinitionRefreshInterval;
+    }
+
+    /**
+     * Get the interval for reloading authentication methods.
+     *
+     * @return refresh interval in seconds, non-positive value disables the refresh
+     */
+    public int getAuthMethodRefreshInterval() {
+        return authMethodRefreshInterval;
+    }
+
+    /**
+     * Get the maximum number of users with cached user preferences.
+     *
+     * @return maximum cache size, non-positive value disables the cache
+     */
+    public int getUserPrefsCacheMaxSize() {
+        return userPrefsCacheMaxSize;
+    }
+
+    /**
+     * Get the time to live of cached user preferences.
+     *
+     * @return time to live in seconds, non-positive value disables the cache
+     */
+    public int getUserPrefsCacheTimeToLive() {
+        return userPrefsCacheTimeToLive;
+    }
+
+    /**
+     * Get the interval between runs of the background job which fails expired operations and archives finished operations.
+     *
+     * @return interval in seconds, non-positive value disables the background job
+     */
+    public int getOperationReaperInterval() {
+        return operationReaperInterval;
+    }
+
+    /**
+     * Get the number of operations processed by the background job in a single batch.
+     *
+     * @return batch size
+     */
+    public int getOperationReaperBatchSize() {
+        return operationReaperBatchSize;
+    }
+
+    /**
+     * Get the time for which a Next Step node holds the lease of the background job.
+     *
+     * @return lease time in seconds
+     */
+    public int getOperationReaperLeaseTime() {
+        return operationReaperLeaseTime;
+    }
+
+    /**
+     * Get the retention period of finished operations, finished operations are moved to archive tables after this period.
+     *
+     * @return retention period in days, non-positive value disables archiving
+     */
+    public int getOperationRetentionPeriod() {
+        return operationRetentionPeriod;
+    }
+
+    /**
+     * Get the maximum number of operations which can be created in a single batch.
+     *
+     * @return maximum number of operations in a batch
+     */
+    public int getOperationBatchMaxSize() {
+        return operationBatchMaxSize;
+    }
 }
@@ -18,6 +18,7 @@ package io.getlime.security.powerauth.app.nextstep.controller;
 
 import io.getlime.core.rest.model.base.request.ObjectRequest;
 import io.getlime.core.rest.model.base.response.ObjectResponse;
+import io.getlime.security.powerauth.app.nextstep.service.AuthMethodCatalog;
 import io.getlime.security.powerauth.app.nextstep.service.AuthMethodService;
 import io.getlime.security.powerauth.lib.nextstep.model.entity.AuthMethodDetail;
 import io.getlime.security.powerauth.lib.nextstep.model.entity.UserAuthMethodDetail;
@@ -46,10 +47,12 @@ import java.util.Map;
 public class AuthMethodController {
 
     private AuthMethodService authMethodService;
+    private AuthMethodCatalog authMethodCatalog;
 
     @Autowired
-    public AuthMethodController(AuthMethodService authMethodService) {
+    public AuthMethodController(AuthMethodService authMethodService, AuthMethodCatalog authMethodCatalog) {
         this.authMethodService = authMethodService;
+        this.authMethodCatalog = authMethodCatalog;
     }
 
     /**
@@ -69,6 +72,19 @@ public class AuthMethodController {
         return new ObjectResponse<>(response);
     }
 
+    /**
+     * Reload authentication methods from database immediately, e.g. after authentication methods were changed.
+     *
+     * @return List of authentication methods after the reload wrapped in GetAuthMethodResponse.
+     */
+    @RequestMapping(value = "/auth-method/reload", method = RequestMethod.POST)
+    public @ResponseBody ObjectResponse<GetAuthMethodsResponse> reloadAuthMethods() {
+        authMethodCatalog.reload();
+        GetAuthMethodsResponse response = new GetAuthMethodsResponse();
+        response.setAuthMethods(authMethodService.listAuthMethods());
+        return new ObjectResponse<>(response);
+    }
+
     /**
      * Get all enabled authentication methods for given user.
      *
@@ -16,17 +16,23 @@
 
 package io.getlime.security.powerauth.app.nextstep.controller;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.getlime.core.rest.model.base.request.ObjectRequest;
 import io.getlime.core.rest.model.base.response.ObjectResponse;
+import io.getlime.security.powerauth.app.nextstep.configuration.NextStepServerConfiguration;
 import io.getlime.security.powerauth.app.nextstep.repository.model.entity.OperationEntity;
 import io.getlime.security.powerauth.app.nextstep.repository.model.entity.OperationHistoryEntity;
+import io.getlime.security.powerauth.app.nextstep.repository.model.projection.OperationSummary;
+import io.getlime.security.powerauth.app.nextstep.repository.model.projection.OperationTitleSummary;
 import io.getlime.security.powerauth.app.nextstep.service.OperationPersistenceService;
-import io.getlime.security.powerauth.app.nextstep.service.StepResolutionService;
+import io.getlime.security.powerauth.app.nextstep.service.OperationUpdateService;
 import io.getlime.security.powerauth.lib.nextstep.model.entity.OperationFormData;
 import io.getlime.security.powerauth.lib.nextstep.model.entity.OperationHistory;
+import io.getlime.security.powerauth.lib.nextstep.model.entity.attribute.OperationFormAttribute;
 import io.getlime.security.powerauth.lib.nextstep.model.exception.NextStepServiceException;
 import io.getlime.security.powerauth.lib.nextstep.model.request.*;
+import io.getlime.security.powerauth.lib.nextstep.model.response.CreateOperationBatchResponse;
 import io.getlime.security.powerauth.lib.nextstep.model.response.CreateOperationResponse;
 import io.getlime.security.powerauth.lib.nextstep.model.response.GetOperationDetailResponse;
 import io.getlime.security.powerauth.lib.nextstep.model.response.UpdateOperationResponse;
@@ -39,7 +45,12 @@ import org.springframework.web.bind.annotation.ResponseBody;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -52,13 +63,17 @@ import java.util.logging.Logger;
 public class OperationController {
 
     private OperationPersistenceService operationPersistenceService;
-    private StepResolutionService stepResolutionService;
+    private OperationUpdateService operationUpdateService;
+    private NextStepServerConfiguration nextStepServerConfiguration;
+    private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Autowired
     public OperationController(OperationPersistenceService operationPersistenceService,
-                               StepResolutionService stepResolutionService) {
+                               OperationUpdateService operationUpdateService,
+                               NextStepServerConfiguration nextStepServerConfiguration) {
         this.operationPersistenceService = operationPersistenceService;
-        this.stepResolutionService = stepResolutionService;
+        this.operationUpdateService = operationUpdateService;
+        this.nextStepServerConfiguration = nextStepServerConfiguration;
     }
 
     /**
@@ -69,12 +84,22 @@ public class OperationController {
      */
     @RequestMapping(value = "/operation", method = RequestMethod.POST)
     public @ResponseBody ObjectResponse<CreateOperationResponse> createOperation(@RequestBody ObjectRequest<CreateOperationRequest> request) {
-        // resolve response based on dynamic step definitions
-        CreateOperationResponse response = stepResolutionService.resolveNextStepResponse(request.getRequestObject());
-
-        // persist new operation
-        operationPersistenceService.createOperation(request.getRequestObject(), response);
+        // resolve response based on dynamic step definitions and persist new operation
+        CreateOperationResponse response = operationUpdateService.createOperation(request.getRequestObject());
+        return new ObjectResponse<>(response);
+    }
 
+    /**
+     * Create a batch of new operations, e.g. for authorization of a batch of payments. Operations which
+     * cannot be created are reported in the response and do not prevent creating other operations.
+     *
+     * @param request Create operation batch request.
+     * @return Create operation batch response.
+     */
+    @RequestMapping(value = "/operation/batch", method = RequestMethod.POST)
+    public @ResponseBody ObjectResponse<CreateOperationBatchResponse> createOperations(@RequestBody ObjectRequest<CreateOperationBatchRequest> request) {
+        // resolve responses based on dynamic step definitions and persist new operations
+        CreateOperationBatchResponse response = operationUpdateService.createOperations(request.getRequestObject());
         return new ObjectResponse<>(response);
     }
 
@@ -86,12 +111,8 @@ public class OperationController {
      */
     @RequestMapping(value = "/operation", method = RequestMethod.PUT)
     public @ResponseBody ObjectResponse<UpdateOperationResponse> updateOperation(@RequestBody ObjectRequest<UpdateOperationRequest> request) throws NextStepServiceException {
-        // resolve response based on dynamic step definitions
-        UpdateOperationResponse response = stepResolutionService.resolveNextStepResponse(request.getRequestObject());
-
-        // persist operation update
-        operationPersistenceService.updateOperation(request.getRequestObject(), response);
-
+        // resolve response based on dynamic step definitions and persist operation update
+        UpdateOperationResponse response = operationUpdateService.updateOperation(request.getRequestObject());
         return new ObjectResponse<>(response);
     }
 
@@ -106,12 +127,79 @@ public class OperationController {
 
         GetOperationDetailRequest requestObject = request.getRequestObject();
 
-        GetOperationDetailResponse response = new GetOperationDetailResponse();
-
         OperationEntity operation = operationPersistenceService.getOperation(requestObject.getOperationId());
         if (operation == null) {
             throw new IllegalArgumentException("Invalid operationId: " + requestObject.getOperationId());
         }
+        List<OperationHistoryEntity> operationHistory = operationPersistenceService.getOperationHistory(operation.getOperationId());
+        return new ObjectResponse<>(createOperationDetail(operation, operationHistory));
+    }
+
+    /**
+     * Get details of operations with given IDs. Operations are loaded using a single query and their history
+     * using one more query. Details are returned in the order of requested IDs, operations which do not exist
+     * are not included in the response.
+     *
+     * @param request Get operation detail batch request.
+     * @return List with operation details.
+     */
+    @RequestMapping(value = "/operation/detail/batch", method = RequestMethod.POST)
+    public @ResponseBody ObjectResponse<List<GetOperationDetailResponse>> operationDetails(@RequestBody ObjectRequest<GetOperationDetailBatchRequest> request) {
+
+        GetOperationDetailBatchRequest requestObject = request.getRequestObject();
+        if (requestObject == null || requestObject.getOperationIds() == null) {
+            throw new IllegalArgumentException("Invalid request for operation details.");
+        }
+        Set<String> operationIds = new LinkedHashSet<>(requestObject.getOperationIds());
+        if (operationIds.size() > nextStepServerConfiguration.getOperationBatchMaxSize()) {
+            throw new IllegalArgumentException("Invalid request for operation details, request contains more than "
+                    + nextStepServerConfiguration.getOperationBatchMaxSize() + " operations.");
+        }
+
+        Map<String, OperationEntity> operations = new HashMap<>();
+        for (OperationEntity operation : operationPersistenceService.getOperations(operationIds)) {
+            operations.put(operation.getOperationId(), operation);
+        }
+        Map<String, List<OperationHistoryEntity>> operationHistory = operationPersistenceService.getOperationHistory(operations.keySet());
+
+        List<GetOperationDetailResponse> responseList = new ArrayList<>();
+        for (String operationId : operationIds) {
+            OperationEntity operation = operations.get(operationId);
+            if (operation == null) {
+                continue;
+            }
+            List<OperationHistoryEntity> history = operationHistory.get(operationId);
+            responseList.add(createOperationDetail(operation, history == null ? new ArrayList<>() : history));
+        }
+        return new ObjectResponse<>(responseList);
+    }
+
+    /**
+     * Validate and update operation with given ID with a previous authentication step result and return
+     * the updated operation detail. Validation, step resolution and persistence are performed in a single
+     * transaction. In case expected version is specified in the request, the update is rejected when
+     * the operation was modified concurrently.
+     *
+     * @param request Update operation request.
+     * @return Get operation detail response with updated operation.
+     * @throws NextStepServiceException Thrown when operation state is invalid or when operation version does not match.
+     */
+    @RequestMapping(value = "/operation/detail", method = RequestMethod.PUT)
+    public @ResponseBody ObjectResponse<GetOperationDetailResponse> updateOperationWithDetail(@RequestBody ObjectRequest<UpdateOperationRequest> request) throws NextStepServiceException {
+        OperationEntity operation = operationUpdateService.updateOperationWithDetail(request.getRequestObject());
+        List<OperationHistoryEntity> operationHistory = operationPersistenceService.getOperationHistory(operation.getOperationId());
+        return new ObjectResponse<>(createOperationDetail(operation, operationHistory));
+    }
+
+    /**
+     * Convert operation entity into operation detail.
+     *
+     * @param operation Operation entity.
+     * @param operationHistory Operation history ordered by resultId.
+     * @return Operation detail.
+     */
+    private GetOperationDetailResponse createOperationDetail(OperationEntity operation, List<OperationHistoryEntity> operationHistory) {
+        GetOperationDetailResponse response = new GetOperationDetailResponse();
         response.setOperationId(operation.getOperationId());
         response.setOperationName(operation.getOperationName());
         response.setUserId(operation.getUserId());
@@ -119,9 +207,9 @@ public class OperationController {
         if (operation.getResult() != null) {
             response.setResult(operation.getResult());
         }
-        assignFormData(response, operation);
+        assignFormData(response, operation.getOperationFormData(), operation.getOperationUserInput());
 
-        for (OperationHistoryEntity history: operation.getOperationHistory()) {
+        for (OperationHistoryEntity history: operationHistory) {
             OperationHistory h = new OperationHistory();
             h.setAuthMethod(history.getRequestAuthMethod());
             h.setRequestAuthStepResult(history.getRequestAuthStepResult());
@@ -129,23 +217,27 @@ public class OperationController {
             response.getHistory().add(h);
         }
 
-        // set chosen authentication method
-        OperationHistoryEntity currentHistory = operation.getCurrentOperationHistoryEntity();
+        // set chosen authentication method and result description
+        OperationHistoryEntity currentHistory = operationHistory.isEmpty() ? null : operationHistory.get(operationHistory.size() - 1);
         if (currentHistory != null) {
             response.setChosenAuthMethod(currentHistory.getChosenAuthMethod());
+            response.setResultDescription(currentHistory.getResponseResultDescription());
+            response.setTimestampUpdated(currentHistory.getResponseTimestampCreated());
         }
 
         // add steps from current response
-        response.getSteps().addAll(operationPersistenceService.getResponseAuthSteps(operation));
+        response.getSteps().addAll(operationPersistenceService.getResponseAuthSteps(currentHistory));
 
         response.setTimestampCreated(operation.getTimestampCreated());
         response.setTimestampExpires(operation.getTimestampExpires());
-        return new ObjectResponse<>(response);
+        response.setVersion(operation.getVersion());
+        return response;
     }
 
-
     /**
-     * Get the list of pending operations for user.
+     * Get the list of pending operations for user. In case limit is specified in the request, a single page
+     * of pending operations ordered by creation time is returned. In case summary is requested, operation data
+     * and form data are not loaded and only the title stored with the operation is returned in form data.
      *
      * @param request Get pending operations request.
      * @return List with operation details.
@@ -155,23 +247,62 @@ public class OperationController {
 
         GetPendingOperationsRequest requestObject = request.getRequestObject();
 
+        if (requestObject.getLimit() != null && requestObject.getLimit() < 1) {
+            throw new IllegalArgumentException("Invalid query for pending operations, limit: " + requestObject.getLimit());
+        }
+
         List<GetOperationDetailResponse> responseList = new ArrayList<>();
 
-        List<OperationEntity> operations = operationPersistenceService.getPendingOperations(requestObject.getUserId(), requestObject.getAuthMethod());
+        if (requestObject.isSummary()) {
+            List<OperationTitleSummary> operations;
+            if (requestObject.getLimit() == null) {
+                operations = operationPersistenceService.getPendingOperationTitles(requestObject.getUserId(), requestObject.getAuthMethod());
+            } else {
+                operations = operationPersistenceService.getPendingOperationTitles(requestObject.getUserId(), requestObject.getAuthMethod(),
+                        requestObject.getLastTimestampCreated(), requestObject.getLastOperationId(), requestObject.getLimit());
+            }
+            if (operations == null) {
+                throw new IllegalArgumentException("Invalid query for pending operations, userId: " + requestObject.getUserId()
+                        + ", authMethod: " + requestObject.getAuthMethod());
+            }
+            for (OperationTitleSummary operation : operations) {
+                GetOperationDetailResponse response = new GetOperationDetailResponse();
+                response.setOperationId(operation.getOperationId());
+                response.setOperationName(operation.getOperationName());
+                response.setUserId(operation.getUserId());
+                if (operation.getResult() != null) {
+                    response.setResult(operation.getResult());
+                }
+                // operation summary contains only the title from form data
+                assignFormDataTitle(response, operation.getOperationTitle());
+                response.setTimestampCreated(operation.getTimestampCreated());
+                response.setTimestampExpires(operation.getTimestampExpires());
+                responseList.add(response);
+            }
+            return new ObjectResponse<>(responseList);
+        }
+
+        List<OperationSummary> operations;
+        if (requestObject.getLimit() == null) {
+            operations = operationPersistenceService.getPendingOperations(requestObject.getUserId(), requestObject.getAuthMethod());
+        } else {
+            operations = operationPersistenceService.getPendingOperations(requestObject.getUserId(), requestObject.getAuthMethod(),
+                    requestObject.getLastTimestampCreated(), requestObject.getLastOperationId(), requestObject.getLimit());
+        }
         if (operations == null) {
             throw new IllegalArgumentException("Invalid query for pending operations, userId: " + requestObject.getUserId()
                     + ", authMethod: " + requestObject.getAuthMethod());
         }
-        for (OperationEntity operation : operations) {
+        for (OperationSummary operation : operations) {
             GetOperationDetailResponse response = new GetOperationDetailResponse();
             response.setOperationId(operation.getOperationId());
             response.setOperationName(operation.getOperationName());
             response.setUserId(operation.getUserId());
-            response.setOperationData(operation.getOperationData());
             if (operation.getResult() != null) {
                 response.setResult(operation.getResult());
             }
-            assignFormData(response, operation);
+            response.setOperationData(operation.getOperationData());
+            assignFormData(response, operation.getOperationFormData(), operation.getOperationUserInput());
             response.setTimestampCreated(operation.getTimestampCreated());
             response.setTimestampExpires(operation.getTimestampExpires());
             responseList.add(response);
@@ -192,6 +323,19 @@ public class OperationController {
         return new ObjectResponse();
     }
 
+    /**
+     * Update changed keys of user input in operation formData.
+     *
+     * @param request Update user input request.
+     * @return Update user input response.
+     */
+    @RequestMapping(value = "/operation/formData/userInput", method = RequestMethod.PUT)
+    public @ResponseBody ObjectResponse updateOperationUserInput(@RequestBody ObjectRequest<UpdateUserInputRequest> request) {
+        // persist operation user input update
+        operationPersistenceService.updateUserInput(request.getRequestObject());
+        return new ObjectResponse();
+    }
+
     /**
      * Update operation with chosen authentication method.
      * @param request Update operation request.
@@ -205,17 +349,23 @@ public class OperationController {
     }
 
     /**
-     * In case operation entity has serialized form data, attempt to deserialize the
-     * object and assign it to the response with operation detail.
+     * In case operation has serialized form data, attempt to deserialize the
+     * object and assign it to the response with operation detail. User input
+     * stored separately from the form definition replaces user input in form data.
      * @param response Response to be enriched by operation detail.
-     * @param operation Database entity representing operation.
+     * @param operationFormData Serialized form data of the operation.
+     * @param operationUserInput Serialized user input of the operation.
      */
-    private void assignFormData(GetOperationDetailResponse response, OperationEntity operation) {
-        if (operation.getOperationFormData() != null) {
+    private void assignFormData(GetOperationDetailResponse response, String operationFormData, String operationUserInput) {
+        if (operationFormData != null) {
             //TODO: This needs to be written better, see issue #39.
             OperationFormData formData = null;
             try {
-                formData = new ObjectMapper().readValue(operation.getOperationFormData(), OperationFormData.class);
+                formData = objectMapper.readValue(operationFormData, OperationFormData.class);
+                if (formData != null && operationUserInput != null) {
+                    formData.setUserInput(objectMapper.readValue(operationUserInput, new TypeReference<LinkedHashMap<String, String>>() {
+                    }));
+                }
             } catch (IOException ex) {
                 Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error while deserializing operation display formData", ex);
             }
@@ -223,4 +373,22 @@ public class OperationController {
         }
     }
 
+    /**
+     * Assign form data containing only the title to the response with operation summary. The title is stored
+     * separately from form data, so the form definition is neither loaded nor deserialized.
+     * @param response Response to be enriched by operation title.
+     * @param operationTitle Serialized title of the operation.
+     */
+    private void assignFormDataTitle(GetOperationDetailResponse response, String operationTitle) {
+        OperationFormData formData = new OperationFormData();
+        if (operationTitle != null) {
+            try {
+                formData.setTitle(objectMapper.readValue(operationTitle, OperationFormAttribute.class));
+            } catch (IOException ex) {
+                Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error while deserializing operation title", ex);
+            }
+        }
+        response.setFormData(formData);
+    }
+
 }
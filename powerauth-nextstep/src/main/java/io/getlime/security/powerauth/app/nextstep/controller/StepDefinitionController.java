@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.app.nextstep.controller;
+
+import io.getlime.core.rest.model.base.response.ObjectResponse;
+import io.getlime.security.powerauth.app.nextstep.service.StepDecisionTable;
+import io.getlime.security.powerauth.app.nextstep.service.StepResolutionService;
+import io.getlime.security.powerauth.lib.nextstep.model.response.GetStepDefinitionVersionResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * Controller class related to administration of step definitions.
+ *
+ * @author Roman Strobl
+ */
+@Controller
+public class StepDefinitionController {
+
+    private StepResolutionService stepResolutionService;
+
+    @Autowired
+    public StepDefinitionController(StepResolutionService stepResolutionService) {
+        this.stepResolutionService = stepResolutionService;
+    }
+
+    /**
+     * Get version of step definitions active in this Next Step server node.
+     *
+     * @return Version of active step definitions.
+     */
+    @RequestMapping(value = "/step-definition/version", method = RequestMethod.GET)
+    public @ResponseBody ObjectResponse<GetStepDefinitionVersionResponse> getStepDefinitionVersion() {
+        return new ObjectResponse<>(createVersionResponse(stepResolutionService.getStepDecisionTable()));
+    }
+
+    /**
+     * Reload step definitions from database immediately.
+     *
+     * @return Version of active step definitions after the reload.
+     */
+    @RequestMapping(value = "/step-definition/reload", method = RequestMethod.POST)
+    public @ResponseBody ObjectResponse<GetStepDefinitionVersionResponse> reloadStepDefinitions() {
+        return new ObjectResponse<>(createVersionResponse(stepResolutionService.reloadStepDefinitions()));
+    }
+
+    private GetStepDefinitionVersionResponse createVersionResponse(StepDecisionTable stepDecisionTable) {
+        GetStepDefinitionVersionResponse response = new GetStepDefinitionVersionResponse();
+        response.setVersion(stepDecisionTable.getVersion());
+        response.setTimestampLoaded(stepDecisionTable.getTimestampCreated());
+        return response;
+    }
+
+}
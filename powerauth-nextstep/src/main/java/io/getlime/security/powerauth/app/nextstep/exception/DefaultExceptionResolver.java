@@ -21,7 +21,9 @@ import io.getlime.core.rest.model.base.response.ErrorResponse;
 import io.getlime.core.rest.model.base.response.ObjectResponse;
 import io.getlime.security.powerauth.lib.nextstep.model.exception.OperationAlreadyFailedException;
 import io.getlime.security.powerauth.lib.nextstep.model.exception.OperationAlreadyFinishedException;
+import io.getlime.security.powerauth.lib.nextstep.model.exception.OperationVersionConflictException;
 import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
@@ -73,4 +75,28 @@ public class DefaultExceptionResolver {
         Error error = new Error(OperationAlreadyFailedException.CODE, "Operation is already in FAILED state.");
         return new ErrorResponse(error);
     }
+
+    /**
+     * Exception handler for operation version conflict error.
+     * @return Response with error details.
+     */
+    @ExceptionHandler(OperationVersionConflictException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public @ResponseBody ObjectResponse<Error> handleOperationVersionConflictException(OperationVersionConflictException ex) {
+        Logger.getLogger(this.getClass().getName()).log(Level.WARNING, "Error occurred in Next Step server", ex);
+        Error error = new Error(OperationVersionConflictException.CODE, "Operation was modified concurrently.");
+        return new ErrorResponse(error);
+    }
+
+    /**
+     * Exception handler for concurrent modification of an operation detected while persisting changes.
+     * @return Response with error details.
+     */
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public @ResponseBody ObjectResponse<Error> handleOptimisticLockingFailureException(ObjectOptimisticLockingFailureException ex) {
+        Logger.getLogger(this.getClass().getName()).log(Level.WARNING, "Error occurred in Next Step server", ex);
+        Error error = new Error(OperationVersionConflictException.CODE, "Operation was modified concurrently.");
+        return new ErrorResponse(error);
+    }
 }
@@ -16,9 +16,15 @@
 package io.getlime.security.powerauth.app.nextstep.repository;
 
 import io.getlime.security.powerauth.app.nextstep.repository.model.entity.OperationHistoryEntity;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * CrudRepository for persistence of operation history.
  *
@@ -28,11 +34,47 @@ import org.springframework.stereotype.Component;
 public interface OperationHistoryRepository extends CrudRepository<OperationHistoryEntity, OperationHistoryEntity.OperationHistoryKey> {
 
     /**
-     * Finds the newest resultId for given operation.
+     * Columns of operation history copied into the archive table.
+     */
+    String HISTORY_COLUMNS = "operation_id, result_id, request_auth_method, request_auth_step_result, request_params, response_result, " +
+            "response_result_description, response_steps, response_auth_methods, response_timestamp_created, response_timestamp_expires, chosen_auth_method";
+
+    /**
+     * Finds the whole history of an operation ordered by resultId.
      *
      * @param operationId id of an operation
-     * @return newest resultId
+     * @return List of operation history records.
+     */
+    List<OperationHistoryEntity> findOperationHistory(String operationId);
+
+    /**
+     * Finds the whole history of given operations ordered by operationId and resultId.
+     *
+     * @param operationIds ids of operations
+     * @return List of operation history records.
+     */
+    List<OperationHistoryEntity> findOperationHistoryForOperations(Collection<String> operationIds);
+
+    /**
+     * Copies history of finished operations into the archive table.
+     *
+     * @param operationIds operation IDs
+     * @return Number of archived history records.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO ns_operation_history_archive (" + HISTORY_COLUMNS + ") SELECT " + HISTORY_COLUMNS + " FROM ns_operation_history " +
+            "WHERE operation_id IN (SELECT operation_id FROM ns_operation WHERE operation_id IN (:operationIds) AND result IN ('DONE', 'FAILED'))", nativeQuery = true)
+    int archiveFinishedOperationHistory(@Param("operationIds") List<String> operationIds);
+
+    /**
+     * Deletes history of finished operations.
+     *
+     * @param operationIds operation IDs
+     * @return Number of deleted history records.
      */
-    Long findMaxResultId(String operationId);
+    @Modifying
+    @Query(value = "DELETE FROM ns_operation_history " +
+            "WHERE operation_id IN (SELECT operation_id FROM ns_operation WHERE operation_id IN (:operationIds) AND result IN ('DONE', 'FAILED'))", nativeQuery = true)
+    int deleteFinishedOperationHistory(@Param("operationIds") List<String> operationIds);
 
 }
@@ -16,9 +16,20 @@
 package io.getlime.security.powerauth.app.nextstep.repository;
 
 import io.getlime.security.powerauth.app.nextstep.repository.model.entity.OperationEntity;
+import io.getlime.security.powerauth.app.nextstep.repository.model.projection.OperationExpiration;
+import io.getlime.security.powerauth.app.nextstep.repository.model.projection.OperationSummary;
+import io.getlime.security.powerauth.app.nextstep.repository.model.projection.OperationTitleSummary;
+import io.getlime.security.powerauth.app.nextstep.repository.model.projection.OperationUserInput;
+import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthMethod;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -30,11 +41,200 @@ import java.util.List;
 public interface OperationRepository extends CrudRepository<OperationEntity, String> {
 
     /**
-     * Finds all pending operations for user.
+     * Columns of operations copied into the archive table.
+     */
+    String OPERATION_COLUMNS = "operation_id, operation_name, operation_data, operation_form_data, operation_user_input, operation_title, user_id, result, timestamp_created, " +
+            "timestamp_expires, last_result_id, auth_failure_counts, failed_auth_methods, last_auth_step_result, terminal_result, version";
+
+    /**
+     * Flushes all pending changes of operations to the database.
+     */
+    void flush();
+
+    /**
+     * Finds summaries of all pending operations for user.
+     *
+     * @param userId user ID
+     * @return List of pending operations.
+     */
+    List<OperationSummary> findPendingOperationsForUser(String userId);
+
+    /**
+     * Finds summaries of pending operations for user for which given authentication method has been chosen
+     * in any step of the operation.
+     *
+     * @param userId user ID
+     * @param authMethod chosen authentication method
+     * @return List of pending operations.
+     */
+    List<OperationSummary> findPendingOperationsForUserAndAuthMethod(String userId, AuthMethod authMethod);
+
+    /**
+     * Finds a page of summaries of pending operations for user ordered by creation time and operation ID. The page
+     * starts after the operation with given creation time and operation ID. Creation time and operation ID never
+     * change, so the order of operations is stable between pages. The first page is requested using
+     * {@code new Date(0)} and an empty operation ID.
+     *
+     * @param userId user ID
+     * @param lastTimestampCreated creation time of the last operation from previous page
+     * @param lastOperationId operation ID of the last operation from previous page
+     * @param pageable page with maximum number of operations
+     * @return List of pending operations.
+     */
+    List<OperationSummary> findPendingOperationsForUserAfter(String userId, Date lastTimestampCreated, String lastOperationId, Pageable pageable);
+
+    /**
+     * Finds a page of summaries of pending operations for user for which given authentication method has been
+     * chosen in any step of the operation. The page starts after the operation with given creation time
+     * and operation ID.
+     *
+     * @param userId user ID
+     * @param authMethod chosen authentication method
+     * @param lastTimestampCreated creation time of the last operation from previous page
+     * @param lastOperationId operation ID of the last operation from previous page
+     * @param pageable page with maximum number of operations
+     * @return List of pending operations.
+     */
+    List<OperationSummary> findPendingOperationsForUserAndAuthMethodAfter(String userId, AuthMethod authMethod, Date lastTimestampCreated,
+                                                                          String lastOperationId, Pageable pageable);
+
+    /**
+     * Finds title summaries of all pending operations for user. Operation data and form data are not loaded.
+     *
+     * @param userId user ID
+     * @return List of pending operations.
+     */
+    List<OperationTitleSummary> findPendingOperationTitlesForUser(String userId);
+
+    /**
+     * Finds title summaries of pending operations for user for which given authentication method has been chosen
+     * in any step of the operation. Operation data and form data are not loaded.
+     *
+     * @param userId user ID
+     * @param authMethod chosen authentication method
+     * @return List of pending operations.
+     */
+    List<OperationTitleSummary> findPendingOperationTitlesForUserAndAuthMethod(String userId, AuthMethod authMethod);
+
+    /**
+     * Finds a page of title summaries of pending operations for user ordered by creation time and operation ID.
      *
      * @param userId user ID
+     * @param lastTimestampCreated creation time of the last operation from previous page
+     * @param lastOperationId operation ID of the last operation from previous page
+     * @param pageable page with maximum number of operations
      * @return List of pending operations.
      */
-    List<OperationEntity> findPendingOperationsForUser(String userId);
+    List<OperationTitleSummary> findPendingOperationTitlesForUserAfter(String userId, Date lastTimestampCreated, String lastOperationId, Pageable pageable);
+
+    /**
+     * Finds a page of title summaries of pending operations for user for which given authentication method has been
+     * chosen in any step of the operation ordered by creation time and operation ID.
+     *
+     * @param userId user ID
+     * @param authMethod chosen authentication method
+     * @param lastTimestampCreated creation time of the last operation from previous page
+     * @param lastOperationId operation ID of the last operation from previous page
+     * @param pageable page with maximum number of operations
+     * @return List of pending operations.
+     */
+    List<OperationTitleSummary> findPendingOperationTitlesForUserAndAuthMethodAfter(String userId, AuthMethod authMethod, Date lastTimestampCreated,
+                                                                                    String lastOperationId, Pageable pageable);
+
+    /**
+     * Finds IDs of operations which already exist out of given operation IDs.
+     *
+     * @param operationIds operation IDs
+     * @return IDs of existing operations.
+     */
+    @Query("SELECT o.operationId FROM OperationEntity o WHERE o.operationId IN (:operationIds)")
+    List<String> findExistingOperationIds(@Param("operationIds") Collection<String> operationIds);
+
+    /**
+     * Finds serialized user input of an operation without loading the form definition.
+     *
+     * @param operationId operation ID
+     * @return User input of the operation.
+     */
+    OperationUserInput findOperationUserInput(String operationId);
+
+    /**
+     * Updates serialized user input of an operation in case the operation version matches and increments the version.
+     * The form definition is not read nor written.
+     *
+     * @param operationId operation ID
+     * @param operationUserInput serialized user input
+     * @param version expected operation version
+     * @return Number of updated operations, 0 in case the operation was modified concurrently.
+     */
+    @Modifying
+    @Query("UPDATE OperationEntity o SET o.operationUserInput=:operationUserInput, o.version=o.version+1 WHERE o.operationId=:operationId AND o.version=:version")
+    int updateOperationUserInput(@Param("operationId") String operationId, @Param("operationUserInput") String operationUserInput, @Param("version") Long version);
+
+    /**
+     * Finds an operation which is going to be updated. Every update of the operation modifies its row (at least
+     * the history counter and summary columns), so the version of the operation is checked and incremented by the
+     * update statement itself and concurrent updates of the operation are detected without an extra lock statement.
+     *
+     * @param operationId operation ID
+     * @return Operation.
+     */
+    OperationEntity findOperationForUpdate(String operationId);
+
+    /**
+     * Finds pending operations which expired before given time. Operations are ordered by expiration time and
+     * operation ID and the next page is found using expiration time and operation ID of the last found operation.
+     *
+     * @param now current time
+     * @param lastTimestampExpires expiration time of the last found operation
+     * @param lastOperationId operation ID of the last found operation
+     * @param pageable page size, the page number should always be 0
+     * @return List of expired operations.
+     */
+    List<OperationExpiration> findExpiredOperations(Date now, Date lastTimestampExpires, String lastOperationId, Pageable pageable);
+
+    /**
+     * Finds finished operations which expired before given time. Operations are ordered by expiration time and
+     * operation ID and the next page is found using expiration time and operation ID of the last found operation.
+     *
+     * @param timestampExpires maximum expiration time of found operations
+     * @param lastTimestampExpires expiration time of the last found operation
+     * @param lastOperationId operation ID of the last found operation
+     * @param pageable page size, the page number should always be 0
+     * @return List of finished operations.
+     */
+    List<OperationExpiration> findFinishedOperations(Date timestampExpires, Date lastTimestampExpires, String lastOperationId, Pageable pageable);
+
+    /**
+     * Increments version of finished operations, so that the operations are locked until the current transaction
+     * commits. Concurrent updates of these operations fail.
+     *
+     * @param operationIds operation IDs
+     * @return Number of locked operations.
+     */
+    @Modifying
+    @Query(value = "UPDATE ns_operation SET version = version + 1 WHERE operation_id IN (:operationIds) AND result IN ('DONE', 'FAILED')", nativeQuery = true)
+    int lockFinishedOperations(@Param("operationIds") List<String> operationIds);
+
+    /**
+     * Copies finished operations into the archive table.
+     *
+     * @param operationIds operation IDs
+     * @return Number of archived operations.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO ns_operation_archive (" + OPERATION_COLUMNS + ") SELECT " + OPERATION_COLUMNS + " FROM ns_operation " +
+            "WHERE operation_id IN (:operationIds) AND result IN ('DONE', 'FAILED')", nativeQuery = true)
+    int archiveFinishedOperations(@Param("operationIds") List<String> operationIds);
+
+    /**
+     * Deletes finished operations. History of the operations needs to be deleted first.
+     *
+     * @param operationIds operation IDs
+     * @return Number of deleted operations.
+     */
+    @Modifying
+    @Query(value = "DELETE FROM ns_operation WHERE operation_id IN (:operationIds) AND result IN ('DONE', 'FAILED')", nativeQuery = true)
+    int deleteFinishedOperations(@Param("operationIds") List<String> operationIds);
 
 }
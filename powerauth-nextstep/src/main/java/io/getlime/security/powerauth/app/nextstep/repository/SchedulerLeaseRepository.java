@@ -0,0 +1,57 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.app.nextstep.repository;
+
+import io.getlime.security.powerauth.app.nextstep.repository.model.entity.SchedulerLeaseEntity;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+
+/**
+ * CrudRepository for persistence of leases of background jobs.
+ *
+ * @author Roman Strobl
+ */
+@Component
+public interface SchedulerLeaseRepository extends CrudRepository<SchedulerLeaseEntity, String> {
+
+    /**
+     * Acquires or renews a lease. The lease is acquired in case it is held by the same owner or in case it has expired.
+     * The method needs to be called within a transaction.
+     *
+     * @param leaseName name of the lease
+     * @param owner owner of the lease
+     * @param timestampExpires new expiration time of the lease
+     * @param now current time
+     * @return 1 in case the lease was acquired, 0 otherwise
+     */
+    @Modifying
+    int acquireLease(String leaseName, String owner, Date timestampExpires, Date now);
+
+    /**
+     * Releases a lease held by given owner. The method needs to be called within a transaction.
+     *
+     * @param leaseName name of the lease
+     * @param owner owner of the lease
+     * @param now current time
+     * @return 1 in case the lease was released, 0 otherwise
+     */
+    @Modifying
+    int releaseLease(String leaseName, String owner, Date now);
+
+}
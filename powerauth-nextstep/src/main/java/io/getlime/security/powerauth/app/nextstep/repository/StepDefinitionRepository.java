@@ -44,4 +44,11 @@ public interface StepDefinitionRepository extends CrudRepository<StepDefinitionE
      */
     List<String> findDistinctOperationNames();
 
+    /**
+     * Finds all step definitions ordered by their ID.
+     *
+     * @return List of step definitions
+     */
+    List<StepDefinitionEntity> findAllStepDefinitions();
+
 }
@@ -15,12 +15,13 @@
  */
 package io.getlime.security.powerauth.app.nextstep.repository.model.entity;
 
+import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthMethod;
 import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthResult;
+import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthStepResult;
 
 import javax.persistence.*;
 import java.io.Serializable;
-import java.util.Date;
-import java.util.List;
+import java.util.*;
 
 /**
  * Entity which stores status of an operation, its parameters and last result.
@@ -30,8 +31,50 @@ import java.util.List;
 @Entity
 @Table(name = "ns_operation")
 @NamedQueries({
-        @NamedQuery(name = "OperationEntity.findPendingOperationsForUser", query = "SELECT o FROM OperationEntity o WHERE o.userId=?1 AND o.result='CONTINUE' " +
-                "AND o.timestampExpires > CURRENT_TIMESTAMP ORDER BY o.timestampExpires")
+        @NamedQuery(name = "OperationEntity.findPendingOperationsForUser", query = "SELECT new io.getlime.security.powerauth.app.nextstep.repository.model.projection.OperationSummary(" +
+                "o.operationId, o.operationName, o.userId, o.operationData, o.result, o.operationFormData, o.operationUserInput, o.timestampCreated, o.timestampExpires) " +
+                "FROM OperationEntity o WHERE o.userId=?1 AND o.result='CONTINUE' AND o.timestampExpires > CURRENT_TIMESTAMP ORDER BY o.timestampExpires, o.operationId"),
+        @NamedQuery(name = "OperationEntity.findPendingOperationsForUserAndAuthMethod", query = "SELECT new io.getlime.security.powerauth.app.nextstep.repository.model.projection.OperationSummary(" +
+                "o.operationId, o.operationName, o.userId, o.operationData, o.result, o.operationFormData, o.operationUserInput, o.timestampCreated, o.timestampExpires) " +
+                "FROM OperationEntity o WHERE o.userId=?1 AND o.result='CONTINUE' AND o.timestampExpires > CURRENT_TIMESTAMP " +
+                "AND EXISTS (SELECT h FROM OperationHistoryEntity h WHERE h.primaryKey.operationId=o.operationId AND h.chosenAuthMethod=?2) " +
+                "ORDER BY o.timestampExpires, o.operationId"),
+        @NamedQuery(name = "OperationEntity.findPendingOperationsForUserAfter", query = "SELECT new io.getlime.security.powerauth.app.nextstep.repository.model.projection.OperationSummary(" +
+                "o.operationId, o.operationName, o.userId, o.operationData, o.result, o.operationFormData, o.operationUserInput, o.timestampCreated, o.timestampExpires) " +
+                "FROM OperationEntity o WHERE o.userId=?1 AND o.result='CONTINUE' AND o.timestampExpires > CURRENT_TIMESTAMP " +
+                "AND (o.timestampCreated > ?2 OR (o.timestampCreated = ?2 AND o.operationId > ?3)) ORDER BY o.timestampCreated, o.operationId"),
+        @NamedQuery(name = "OperationEntity.findPendingOperationsForUserAndAuthMethodAfter", query = "SELECT new io.getlime.security.powerauth.app.nextstep.repository.model.projection.OperationSummary(" +
+                "o.operationId, o.operationName, o.userId, o.operationData, o.result, o.operationFormData, o.operationUserInput, o.timestampCreated, o.timestampExpires) " +
+                "FROM OperationEntity o WHERE o.userId=?1 AND o.result='CONTINUE' AND o.timestampExpires > CURRENT_TIMESTAMP " +
+                "AND EXISTS (SELECT h FROM OperationHistoryEntity h WHERE h.primaryKey.operationId=o.operationId AND h.chosenAuthMethod=?2) " +
+                "AND (o.timestampCreated > ?3 OR (o.timestampCreated = ?3 AND o.operationId > ?4)) ORDER BY o.timestampCreated, o.operationId"),
+        @NamedQuery(name = "OperationEntity.findPendingOperationTitlesForUser", query = "SELECT new io.getlime.security.powerauth.app.nextstep.repository.model.projection.OperationTitleSummary(" +
+                "o.operationId, o.operationName, o.userId, o.result, o.operationTitle, o.timestampCreated, o.timestampExpires) " +
+                "FROM OperationEntity o WHERE o.userId=?1 AND o.result='CONTINUE' AND o.timestampExpires > CURRENT_TIMESTAMP " +
+                "ORDER BY o.timestampExpires, o.operationId"),
+        @NamedQuery(name = "OperationEntity.findPendingOperationTitlesForUserAndAuthMethod", query = "SELECT new io.getlime.security.powerauth.app.nextstep.repository.model.projection.OperationTitleSummary(" +
+                "o.operationId, o.operationName, o.userId, o.result, o.operationTitle, o.timestampCreated, o.timestampExpires) " +
+                "FROM OperationEntity o WHERE o.userId=?1 AND o.result='CONTINUE' AND o.timestampExpires > CURRENT_TIMESTAMP " +
+                "AND EXISTS (SELECT h FROM OperationHistoryEntity h WHERE h.primaryKey.operationId=o.operationId AND h.chosenAuthMethod=?2) " +
+                "ORDER BY o.timestampExpires, o.operationId"),
+        @NamedQuery(name = "OperationEntity.findPendingOperationTitlesForUserAfter", query = "SELECT new io.getlime.security.powerauth.app.nextstep.repository.model.projection.OperationTitleSummary(" +
+                "o.operationId, o.operationName, o.userId, o.result, o.operationTitle, o.timestampCreated, o.timestampExpires) " +
+                "FROM OperationEntity o WHERE o.userId=?1 AND o.result='CONTINUE' AND o.timestampExpires > CURRENT_TIMESTAMP " +
+                "AND (o.timestampCreated > ?2 OR (o.timestampCreated = ?2 AND o.operationId > ?3)) ORDER BY o.timestampCreated, o.operationId"),
+        @NamedQuery(name = "OperationEntity.findPendingOperationTitlesForUserAndAuthMethodAfter", query = "SELECT new io.getlime.security.powerauth.app.nextstep.repository.model.projection.OperationTitleSummary(" +
+                "o.operationId, o.operationName, o.userId, o.result, o.operationTitle, o.timestampCreated, o.timestampExpires) " +
+                "FROM OperationEntity o WHERE o.userId=?1 AND o.result='CONTINUE' AND o.timestampExpires > CURRENT_TIMESTAMP " +
+                "AND EXISTS (SELECT h FROM OperationHistoryEntity h WHERE h.primaryKey.operationId=o.operationId AND h.chosenAuthMethod=?2) " +
+                "AND (o.timestampCreated > ?3 OR (o.timestampCreated = ?3 AND o.operationId > ?4)) ORDER BY o.timestampCreated, o.operationId"),
+        @NamedQuery(name = "OperationEntity.findOperationUserInput", query = "SELECT new io.getlime.security.powerauth.app.nextstep.repository.model.projection.OperationUserInput(" +
+                "o.operationId, o.operationUserInput, o.version) FROM OperationEntity o WHERE o.operationId=?1"),
+        @NamedQuery(name = "OperationEntity.findOperationForUpdate", query = "SELECT o FROM OperationEntity o WHERE o.operationId=?1"),
+        @NamedQuery(name = "OperationEntity.findExpiredOperations", query = "SELECT new io.getlime.security.powerauth.app.nextstep.repository.model.projection.OperationExpiration(" +
+                "o.operationId, o.timestampExpires) FROM OperationEntity o WHERE o.result='CONTINUE' AND o.timestampExpires < ?1 " +
+                "AND (o.timestampExpires > ?2 OR (o.timestampExpires = ?2 AND o.operationId > ?3)) ORDER BY o.timestampExpires, o.operationId"),
+        @NamedQuery(name = "OperationEntity.findFinishedOperations", query = "SELECT new io.getlime.security.powerauth.app.nextstep.repository.model.projection.OperationExpiration(" +
+                "o.operationId, o.timestampExpires) FROM OperationEntity o WHERE o.result IN ('DONE', 'FAILED') AND o.timestampExpires < ?1 " +
+                "AND (o.timestampExpires > ?2 OR (o.timestampExpires = ?2 AND o.operationId > ?3)) ORDER BY o.timestampExpires, o.operationId")
 })
 public class OperationEntity implements Serializable {
 
@@ -47,6 +90,12 @@ public class OperationEntity implements Serializable {
     @Column(name = "operation_form_data")
     private String operationFormData;
 
+    @Column(name = "operation_user_input")
+    private String operationUserInput;
+
+    @Column(name = "operation_title")
+    private String operationTitle;
+
     @Column(name = "operation_data")
     private String operationData;
 
@@ -63,7 +112,28 @@ public class OperationEntity implements Serializable {
     @Column(name = "timestamp_expires")
     private Date timestampExpires;
 
-    @OneToMany(fetch = FetchType.EAGER, mappedBy = "operation")
+    @Column(name = "last_result_id")
+    private Long lastResultId;
+
+    @Column(name = "auth_failure_counts")
+    private String authFailureCounts;
+
+    @Column(name = "failed_auth_methods")
+    private String failedAuthMethods;
+
+    @Column(name = "last_auth_step_result")
+    @Enumerated(EnumType.STRING)
+    private AuthStepResult lastAuthStepResult;
+
+    @Column(name = "terminal_result")
+    @Enumerated(EnumType.STRING)
+    private AuthResult terminalResult;
+
+    @Version
+    @Column(name = "version")
+    private Long version;
+
+    @OneToMany(fetch = FetchType.LAZY, mappedBy = "operation")
     @OrderBy("result_id")
     private List<OperationHistoryEntity> operationHistory;
 
@@ -91,6 +161,22 @@ public class OperationEntity implements Serializable {
         this.operationFormData = operationFormData;
     }
 
+    public String getOperationUserInput() {
+        return operationUserInput;
+    }
+
+    public void setOperationUserInput(String operationUserInput) {
+        this.operationUserInput = operationUserInput;
+    }
+
+    public String getOperationTitle() {
+        return operationTitle;
+    }
+
+    public void setOperationTitle(String operationTitle) {
+        this.operationTitle = operationTitle;
+    }
+
     public String getOperationData() {
         return operationData;
     }
@@ -131,6 +217,54 @@ public class OperationEntity implements Serializable {
         this.timestampExpires = timestampExpires;
     }
 
+    public Long getLastResultId() {
+        return lastResultId;
+    }
+
+    public void setLastResultId(Long lastResultId) {
+        this.lastResultId = lastResultId;
+    }
+
+    public String getAuthFailureCounts() {
+        return authFailureCounts;
+    }
+
+    public void setAuthFailureCounts(String authFailureCounts) {
+        this.authFailureCounts = authFailureCounts;
+    }
+
+    public String getFailedAuthMethods() {
+        return failedAuthMethods;
+    }
+
+    public void setFailedAuthMethods(String failedAuthMethods) {
+        this.failedAuthMethods = failedAuthMethods;
+    }
+
+    public AuthStepResult getLastAuthStepResult() {
+        return lastAuthStepResult;
+    }
+
+    public void setLastAuthStepResult(AuthStepResult lastAuthStepResult) {
+        this.lastAuthStepResult = lastAuthStepResult;
+    }
+
+    public AuthResult getTerminalResult() {
+        return terminalResult;
+    }
+
+    public void setTerminalResult(AuthResult terminalResult) {
+        this.terminalResult = terminalResult;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     /**
      * Is the operation expired?
      *
@@ -149,15 +283,100 @@ public class OperationEntity implements Serializable {
     }
 
     /**
-     * Returns current OperationHistoryEntity. Null value is return in case there is no history for this operation.
+     * Appends a new history record to the operation and updates the summary of operation history, so that
+     * the summary can be used instead of iterating the whole history.
+     *
+     * @param history New OperationHistoryEntity.
+     */
+    public void addOperationHistory(OperationHistoryEntity history) {
+        if (operationHistory == null) {
+            operationHistory = new ArrayList<>();
+        }
+        if (Persistence.getPersistenceUtil().isLoaded(this, "operationHistory")) {
+            // keep loaded history consistent, history which is not loaded is not fetched only to append the record
+            operationHistory.add(history);
+        }
+        AuthMethod authMethod = history.getRequestAuthMethod();
+        AuthStepResult authStepResult = history.getRequestAuthStepResult();
+        if (authMethod != null && authStepResult == AuthStepResult.AUTH_FAILED) {
+            Map<AuthMethod, Integer> failureCounts = parseAuthFailureCounts(authFailureCounts);
+            Integer failureCount = failureCounts.get(authMethod);
+            failureCounts.put(authMethod, failureCount == null ? 1 : failureCount + 1);
+            authFailureCounts = serializeAuthFailureCounts(failureCounts);
+        }
+        if (authMethod != null && authStepResult == AuthStepResult.AUTH_METHOD_FAILED && !isAuthMethodFailed(authMethod)) {
+            failedAuthMethods = failedAuthMethods == null ? authMethod.name() : failedAuthMethods + ";" + authMethod.name();
+        }
+        lastAuthStepResult = authStepResult;
+        AuthResult responseResult = history.getResponseResult();
+        if (terminalResult == null && (responseResult == AuthResult.DONE || responseResult == AuthResult.FAILED)) {
+            // the first final result is kept, operation cannot be updated once it is finished
+            terminalResult = responseResult;
+        }
+    }
+
+    /**
+     * Returns number of authorization failures of given authentication method recorded in operation history.
+     *
+     * @param authMethod Authentication method.
+     * @return Number of authorization failures.
+     */
+    public int getAuthFailureCount(AuthMethod authMethod) {
+        Integer failureCount = parseAuthFailureCounts(authFailureCounts).get(authMethod);
+        return failureCount == null ? 0 : failureCount;
+    }
+
+    /**
+     * Returns whether given authentication method has failed completely in operation history.
+     *
+     * @param authMethod Authentication method.
+     * @return Whether authentication method failed.
+     */
+    public boolean isAuthMethodFailed(AuthMethod authMethod) {
+        if (failedAuthMethods == null || authMethod == null) {
+            return false;
+        }
+        for (String failedAuthMethod : failedAuthMethods.split(";")) {
+            if (failedAuthMethod.equals(authMethod.name())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Converts authorization failure counts in format METHOD:count;METHOD:count into a map.
+     *
+     * @param authFailureCounts Serialized authorization failure counts.
+     * @return Map with authorization failure counts.
+     */
+    private static Map<AuthMethod, Integer> parseAuthFailureCounts(String authFailureCounts) {
+        Map<AuthMethod, Integer> failureCounts = new EnumMap<>(AuthMethod.class);
+        if (authFailureCounts == null || authFailureCounts.isEmpty()) {
+            return failureCounts;
+        }
+        for (String item : authFailureCounts.split(";")) {
+            int separator = item.indexOf(':');
+            failureCounts.put(AuthMethod.valueOf(item.substring(0, separator)), Integer.valueOf(item.substring(separator + 1)));
+        }
+        return failureCounts;
+    }
+
+    /**
+     * Converts authorization failure counts into format METHOD:count;METHOD:count.
      *
-     * @return Current OperationHistoryEntity
+     * @param failureCounts Map with authorization failure counts.
+     * @return Serialized authorization failure counts.
      */
-    public OperationHistoryEntity getCurrentOperationHistoryEntity() {
-        if (operationHistory == null || operationHistory.isEmpty()) {
-            return null;
+    private static String serializeAuthFailureCounts(Map<AuthMethod, Integer> failureCounts) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<AuthMethod, Integer> entry : failureCounts.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(';');
+            }
+            sb.append(entry.getKey().name()).append(':').append(entry.getValue());
         }
-        return operationHistory.get(operationHistory.size() - 1);
+        return sb.toString();
     }
 
     @Override
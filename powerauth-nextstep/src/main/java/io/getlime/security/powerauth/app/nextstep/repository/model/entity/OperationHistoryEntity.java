@@ -15,13 +15,19 @@
  */
 package io.getlime.security.powerauth.app.nextstep.repository.model.entity;
 
+import io.getlime.security.powerauth.lib.nextstep.model.entity.AuthStep;
 import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthMethod;
 import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthResult;
 import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthStepResult;
+import org.springframework.data.domain.Persistable;
 
 import javax.persistence.*;
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Entity which stores history for an operation including request and response data.
@@ -30,8 +36,12 @@ import java.util.Date;
  */
 @Entity
 @Table(name = "ns_operation_history")
-@NamedQuery(name = "OperationHistoryEntity.findMaxResultId", query = "SELECT max(h.primaryKey.resultId) FROM OperationHistoryEntity h WHERE h.primaryKey.operationId=?1")
-public class OperationHistoryEntity implements Serializable {
+@NamedQueries({
+        @NamedQuery(name = "OperationHistoryEntity.findOperationHistory", query = "SELECT h FROM OperationHistoryEntity h WHERE h.primaryKey.operationId=?1 ORDER BY h.primaryKey.resultId"),
+        @NamedQuery(name = "OperationHistoryEntity.findOperationHistoryForOperations", query = "SELECT h FROM OperationHistoryEntity h WHERE h.primaryKey.operationId IN (?1) " +
+                "ORDER BY h.primaryKey.operationId, h.primaryKey.resultId")
+})
+public class OperationHistoryEntity implements Persistable<OperationHistoryEntity.OperationHistoryKey>, Serializable {
 
     private static final long serialVersionUID = 4536813173706547247L;
 
@@ -59,6 +69,9 @@ public class OperationHistoryEntity implements Serializable {
     @Column(name = "response_steps")
     private String responseSteps;
 
+    @Column(name = "response_auth_methods")
+    private String responseAuthMethods;
+
     @Column(name = "response_timestamp_created")
     private Date responseTimestampCreated;
 
@@ -69,10 +82,29 @@ public class OperationHistoryEntity implements Serializable {
     @Enumerated(EnumType.STRING)
     private AuthMethod chosenAuthMethod;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "operation_id", insertable = false, updatable = false)
     private OperationEntity operation;
 
+    /**
+     * History records are never updated, primary key is assigned by the application. The flag lets the repository
+     * insert a new record directly instead of querying it first by its primary key.
+     */
+    @Transient
+    private boolean newEntity = true;
+
+    /**
+     * Authentication methods of next steps, materialized from column response_auth_methods once per loaded entity.
+     */
+    @Transient
+    private Set<AuthMethod> responseAuthMethodSet;
+
+    /**
+     * Next steps deserialized from column response_steps, the steps are deserialized at most once per loaded entity.
+     */
+    @Transient
+    private List<AuthStep> responseAuthSteps;
+
     public OperationHistoryEntity() {
     }
 
@@ -88,6 +120,22 @@ public class OperationHistoryEntity implements Serializable {
         this.primaryKey = primaryKey;
     }
 
+    @Override
+    public OperationHistoryKey getId() {
+        return primaryKey;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newEntity;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.newEntity = false;
+    }
+
     public AuthStepResult getRequestAuthStepResult() {
         return requestAuthStepResult;
     }
@@ -134,6 +182,83 @@ public class OperationHistoryEntity implements Serializable {
 
     public void setResponseSteps(String responseSteps) {
         this.responseSteps = responseSteps;
+        this.responseAuthSteps = null;
+    }
+
+    public String getResponseAuthMethods() {
+        return responseAuthMethods;
+    }
+
+    public void setResponseAuthMethods(String responseAuthMethods) {
+        this.responseAuthMethods = responseAuthMethods;
+        this.responseAuthMethodSet = null;
+    }
+
+    /**
+     * Get next steps deserialized from response steps, null is returned in case the steps were not deserialized yet.
+     *
+     * @return Next steps or null.
+     */
+    public List<AuthStep> getResponseAuthSteps() {
+        return responseAuthSteps;
+    }
+
+    /**
+     * Set next steps deserialized from response steps, the steps are not persisted.
+     *
+     * @param responseAuthSteps Next steps.
+     */
+    public void setResponseAuthSteps(List<AuthStep> responseAuthSteps) {
+        this.responseAuthSteps = responseAuthSteps == null ? null : Collections.unmodifiableList(responseAuthSteps);
+    }
+
+    /**
+     * Update authentication methods of next steps, which are stored in column response_auth_methods in format
+     * METHOD;METHOD, so that next steps can be validated without JSON parsing.
+     *
+     * @param responseAuthSteps Next steps.
+     */
+    public void updateResponseAuthMethods(List<AuthStep> responseAuthSteps) {
+        StringBuilder sb = new StringBuilder();
+        for (AuthStep step : responseAuthSteps) {
+            if (step.getAuthMethod() == null) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append(';');
+            }
+            sb.append(step.getAuthMethod().name());
+        }
+        setResponseAuthMethods(sb.toString());
+    }
+
+    /**
+     * Returns whether authentication methods of next steps are available in column response_auth_methods.
+     * History created before the column was introduced has only JSON response steps.
+     *
+     * @return Whether authentication methods of next steps are available.
+     */
+    public boolean hasResponseAuthMethods() {
+        return responseAuthMethods != null;
+    }
+
+    /**
+     * Returns whether given authentication method is one of the next steps.
+     *
+     * @param authMethod Authentication method.
+     * @return Whether authentication method is one of the next steps.
+     */
+    public boolean isResponseAuthMethod(AuthMethod authMethod) {
+        if (responseAuthMethodSet == null) {
+            Set<AuthMethod> authMethods = EnumSet.noneOf(AuthMethod.class);
+            if (responseAuthMethods != null && !responseAuthMethods.isEmpty()) {
+                for (String item : responseAuthMethods.split(";")) {
+                    authMethods.add(AuthMethod.valueOf(item));
+                }
+            }
+            responseAuthMethodSet = authMethods;
+        }
+        return authMethod != null && responseAuthMethodSet.contains(authMethod);
     }
 
     public Date getResponseTimestampCreated() {
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.app.nextstep.repository.model.entity;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Entity which stores a lease of a background job. The lease ensures that the job runs only on a single Next Step
+ * node at a time.
+ *
+ * @author Roman Strobl
+ */
+@Entity
+@Table(name = "ns_scheduler_lease")
+@NamedQueries({
+        @NamedQuery(name = "SchedulerLeaseEntity.acquireLease", query = "UPDATE SchedulerLeaseEntity l SET l.owner=?2, l.timestampExpires=?3 " +
+                "WHERE l.leaseName=?1 AND (l.owner=?2 OR l.timestampExpires IS NULL OR l.timestampExpires < ?4)"),
+        @NamedQuery(name = "SchedulerLeaseEntity.releaseLease", query = "UPDATE SchedulerLeaseEntity l SET l.timestampExpires=?3 " +
+                "WHERE l.leaseName=?1 AND l.owner=?2")
+})
+public class SchedulerLeaseEntity implements Serializable {
+
+    private static final long serialVersionUID = 2814301768512346593L;
+
+    @Id
+    @Column(name = "lease_name")
+    private String leaseName;
+
+    @Column(name = "owner")
+    private String owner;
+
+    @Column(name = "timestamp_expires")
+    private Date timestampExpires;
+
+    public String getLeaseName() {
+        return leaseName;
+    }
+
+    public void setLeaseName(String leaseName) {
+        this.leaseName = leaseName;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public Date getTimestampExpires() {
+        return timestampExpires;
+    }
+
+    public void setTimestampExpires(Date timestampExpires) {
+        this.timestampExpires = timestampExpires;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        SchedulerLeaseEntity that = (SchedulerLeaseEntity) o;
+
+        return leaseName != null ? leaseName.equals(that.leaseName) : that.leaseName == null;
+    }
+
+    @Override
+    public int hashCode() {
+        return leaseName != null ? leaseName.hashCode() : 0;
+    }
+
+}
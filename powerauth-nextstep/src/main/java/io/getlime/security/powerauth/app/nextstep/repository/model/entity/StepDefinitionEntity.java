@@ -32,7 +32,8 @@ import java.io.Serializable;
 @Table(name = "ns_step_definition")
 @NamedQueries({
         @NamedQuery(name = "StepDefinitionEntity.findStepDefinitionsForOperation", query = "SELECT sd FROM StepDefinitionEntity sd WHERE sd.operationName=?1 ORDER BY sd.stepDefinitionId"),
-        @NamedQuery(name = "StepDefinitionEntity.findDistinctOperationNames", query = "SELECT DISTINCT(sd.operationName) FROM StepDefinitionEntity sd")
+        @NamedQuery(name = "StepDefinitionEntity.findDistinctOperationNames", query = "SELECT DISTINCT(sd.operationName) FROM StepDefinitionEntity sd"),
+        @NamedQuery(name = "StepDefinitionEntity.findAllStepDefinitions", query = "SELECT sd FROM StepDefinitionEntity sd ORDER BY sd.stepDefinitionId")
 })
 public class StepDefinitionEntity implements Serializable {
 
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.app.nextstep.repository.model.projection;
+
+import java.util.Date;
+
+/**
+ * Operation ID with operation expiration time. The pair is used as a key for keyset pagination of operations
+ * ordered by their expiration time.
+ *
+ * @author Roman Strobl
+ */
+public class OperationExpiration {
+
+    private final String operationId;
+    private final Date timestampExpires;
+
+    public OperationExpiration(String operationId, Date timestampExpires) {
+        this.operationId = operationId;
+        this.timestampExpires = timestampExpires;
+    }
+
+    public String getOperationId() {
+        return operationId;
+    }
+
+    public Date getTimestampExpires() {
+        return timestampExpires;
+    }
+}
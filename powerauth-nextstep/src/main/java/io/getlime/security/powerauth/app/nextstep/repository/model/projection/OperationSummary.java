@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.app.nextstep.repository.model.projection;
+
+import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthResult;
+
+import java.util.Date;
+
+/**
+ * Read-only summary of an operation used in lists of operations. The summary is created directly by a query,
+ * so that operation history is not loaded and operations are not attached to the persistence context.
+ *
+ * @author Roman Strobl
+ */
+public class OperationSummary {
+
+    private final String operationId;
+    private final String operationName;
+    private final String userId;
+    private final String operationData;
+    private final AuthResult result;
+    private final String operationFormData;
+    private final String operationUserInput;
+    private final Date timestampCreated;
+    private final Date timestampExpires;
+
+    public OperationSummary(String operationId, String operationName, String userId, String operationData, AuthResult result,
+                            String operationFormData, String operationUserInput, Date timestampCreated, Date timestampExpires) {
+        this.operationId = operationId;
+        this.operationName = operationName;
+        this.userId = userId;
+        this.operationData = operationData;
+        this.result = result;
+        this.operationFormData = operationFormData;
+        this.operationUserInput = operationUserInput;
+        this.timestampCreated = timestampCreated;
+        this.timestampExpires = timestampExpires;
+    }
+
+    public String getOperationId() {
+        return operationId;
+    }
+
+    public String getOperationName() {
+        return operationName;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getOperationData() {
+        return operationData;
+    }
+
+    public AuthResult getResult() {
+        return result;
+    }
+
+    public String getOperationFormData() {
+        return operationFormData;
+    }
+
+    public String getOperationUserInput() {
+        return operationUserInput;
+    }
+
+    public Date getTimestampCreated() {
+        return timestampCreated;
+    }
+
+    public Date getTimestampExpires() {
+        return timestampExpires;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.app.nextstep.repository.model.projection;
+
+import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthResult;
+
+import java.util.Date;
+
+/**
+ * Read-only summary of an operation which contains only the operation title instead of operation data and form data.
+ * The summary is used in lists of operations which are displayed without operation details.
+ *
+ * @author Roman Strobl
+ */
+public class OperationTitleSummary {
+
+    private final String operationId;
+    private final String operationName;
+    private final String userId;
+    private final AuthResult result;
+    private final String operationTitle;
+    private final Date timestampCreated;
+    private final Date timestampExpires;
+
+    public OperationTitleSummary(String operationId, String operationName, String userId, AuthResult result,
+                                 String operationTitle, Date timestampCreated, Date timestampExpires) {
+        this.operationId = operationId;
+        this.operationName = operationName;
+        this.userId = userId;
+        this.result = result;
+        this.operationTitle = operationTitle;
+        this.timestampCreated = timestampCreated;
+        this.timestampExpires = timestampExpires;
+    }
+
+    public String getOperationId() {
+        return operationId;
+    }
+
+    public String getOperationName() {
+        return operationName;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public AuthResult getResult() {
+        return result;
+    }
+
+    public String getOperationTitle() {
+        return operationTitle;
+    }
+
+    public Date getTimestampCreated() {
+        return timestampCreated;
+    }
+
+    public Date getTimestampExpires() {
+        return timestampExpires;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.app.nextstep.repository.model.projection;
+
+/**
+ * Serialized user input of an operation with operation version. User input is stored separately from the form
+ * definition, so that it can be updated without reading and writing the whole form data.
+ *
+ * @author Roman Strobl
+ */
+public class OperationUserInput {
+
+    private final String operationId;
+    private final String operationUserInput;
+    private final Long version;
+
+    public OperationUserInput(String operationId, String operationUserInput, Long version) {
+        this.operationId = operationId;
+        this.operationUserInput = operationUserInput;
+        this.version = version;
+    }
+
+    public String getOperationId() {
+        return operationId;
+    }
+
+    public String getOperationUserInput() {
+        return operationUserInput;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+}
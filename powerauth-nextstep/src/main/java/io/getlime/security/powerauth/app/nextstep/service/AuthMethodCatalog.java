@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.app.nextstep.service;
+
+import io.getlime.security.powerauth.app.nextstep.configuration.NextStepServerConfiguration;
+import io.getlime.security.powerauth.app.nextstep.repository.AuthMethodRepository;
+import io.getlime.security.powerauth.app.nextstep.repository.model.entity.AuthMethodEntity;
+import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthMethod;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * In-memory catalog of authentication methods supported by Next Step server. Authentication methods are loaded
+ * during class initialization and reloaded periodically or on demand, so that reading authentication methods does not
+ * require a database query. Loaded entities are shared and must not be modified.
+ *
+ * @author Roman Strobl
+ */
+@Service
+public class AuthMethodCatalog {
+
+    private final AuthMethodRepository authMethodRepository;
+    private final ScheduledExecutorService refresher;
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public AuthMethodCatalog(AuthMethodRepository authMethodRepository, NextStepServerConfiguration nextStepServerConfiguration) {
+        this.authMethodRepository = authMethodRepository;
+        reload();
+        int refreshInterval = nextStepServerConfiguration.getAuthMethodRefreshInterval();
+        if (refreshInterval > 0) {
+            refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "nextstep-auth-method-refresher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refresher.scheduleWithFixedDelay(this::refresh, refreshInterval, refreshInterval, TimeUnit.SECONDS);
+        } else {
+            refresher = null;
+        }
+    }
+
+    /**
+     * Reload authentication methods from database.
+     */
+    public void reload() {
+        snapshot = new Snapshot(authMethodRepository.findAllAuthMethods());
+    }
+
+    /**
+     * Get all authentication methods ordered by their order number.
+     *
+     * @return Unmodifiable list of authentication methods.
+     */
+    public List<AuthMethodEntity> getAuthMethods() {
+        return snapshot.authMethodList;
+    }
+
+    /**
+     * Get an authentication method.
+     *
+     * @param authMethod Authentication method.
+     * @return Authentication method entity or null in case authentication method is not supported.
+     */
+    public AuthMethodEntity getAuthMethod(AuthMethod authMethod) {
+        if (authMethod == null) {
+            return null;
+        }
+        return snapshot.authMethods.get(authMethod);
+    }
+
+    /**
+     * Stop the background refresh of authentication methods.
+     */
+    @PreDestroy
+    public void stopRefresh() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    /**
+     * Reload authentication methods in background, errors are logged and loaded authentication methods are kept.
+     */
+    private void refresh() {
+        try {
+            reload();
+        } catch (RuntimeException ex) {
+            Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error while reloading authentication methods", ex);
+        }
+    }
+
+    /**
+     * Immutable snapshot of authentication methods.
+     */
+    private static final class Snapshot {
+
+        private final List<AuthMethodEntity> authMethodList;
+        private final Map<AuthMethod, AuthMethodEntity> authMethods;
+
+        private Snapshot(List<AuthMethodEntity> authMethodList) {
+            Map<AuthMethod, AuthMethodEntity> authMethods = new EnumMap<>(AuthMethod.class);
+            for (AuthMethodEntity authMethodEntity : authMethodList) {
+                authMethods.put(authMethodEntity.getAuthMethod(), authMethodEntity);
+            }
+            this.authMethodList = Collections.unmodifiableList(new ArrayList<>(authMethodList));
+            this.authMethods = Collections.unmodifiableMap(authMethods);
+        }
+    }
+
+}
@@ -16,11 +16,9 @@
 package io.getlime.security.powerauth.app.nextstep.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.type.MapType;
-import io.getlime.security.powerauth.app.nextstep.repository.AuthMethodRepository;
-import io.getlime.security.powerauth.app.nextstep.repository.UserPrefsRepository;
 import io.getlime.security.powerauth.app.nextstep.repository.model.entity.AuthMethodEntity;
 import io.getlime.security.powerauth.app.nextstep.repository.model.entity.UserPrefsEntity;
+import io.getlime.security.powerauth.app.nextstep.service.UserPrefsCache.CachedUserPrefs;
 import io.getlime.security.powerauth.lib.nextstep.model.entity.AuthMethodDetail;
 import io.getlime.security.powerauth.lib.nextstep.model.entity.UserAuthMethodDetail;
 import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthMethod;
@@ -28,10 +26,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -43,14 +38,14 @@ import java.util.logging.Logger;
 @Service
 public class AuthMethodService {
 
-    private final AuthMethodRepository authMethodRepository;
-    private final UserPrefsRepository userPrefsRepository;
+    private final AuthMethodCatalog authMethodCatalog;
+    private final UserPrefsCache userPrefsCache;
     private final ObjectMapper objectMapper;
 
     @Autowired
-    public AuthMethodService(AuthMethodRepository authMethodRepository, UserPrefsRepository userPrefsRepository, ObjectMapper objectMapper) {
-        this.authMethodRepository = authMethodRepository;
-        this.userPrefsRepository = userPrefsRepository;
+    public AuthMethodService(AuthMethodCatalog authMethodCatalog, UserPrefsCache userPrefsCache, ObjectMapper objectMapper) {
+        this.authMethodCatalog = authMethodCatalog;
+        this.userPrefsCache = userPrefsCache;
         this.objectMapper = objectMapper;
     }
 
@@ -61,7 +56,7 @@ public class AuthMethodService {
      */
     public List<AuthMethodDetail> listAuthMethods() {
         List<AuthMethodDetail> allMethods = new ArrayList<>();
-        List<AuthMethodEntity> authMethodList = authMethodRepository.findAllAuthMethods();
+        List<AuthMethodEntity> authMethodList = authMethodCatalog.getAuthMethods();
         for (AuthMethodEntity authMethodEntity : authMethodList) {
             allMethods.add(getAuthMethodDetail(authMethodEntity));
         }
@@ -77,41 +72,29 @@ public class AuthMethodService {
      */
     public List<UserAuthMethodDetail> listAuthMethodsEnabledForUser(String userId) {
         List<UserAuthMethodDetail> enabledMethods = new ArrayList<>();
-        List<AuthMethodEntity> authMethodList = authMethodRepository.findAllAuthMethods();
-        UserPrefsEntity userPrefs = null;
-        if (userId!=null) {
-            // read user prefs only when user ID is not null, for some authentication methods user ID is not known
-            userPrefs = userPrefsRepository.findUserPrefs(userId);
+        CachedUserPrefs userPrefs = getUserPrefs(userId);
+        for (AuthMethodEntity authMethodEntity : authMethodCatalog.getAuthMethods()) {
+            if (isAuthMethodEnabled(authMethodEntity, userPrefs)) {
+                // configuration is available only for methods enabled in user prefs
+                Map<String, String> config = userPrefs == null ? null : userPrefs.getConfig(authMethodEntity.getAuthMethod());
+                enabledMethods.add(getUserAuthMethodDetail(userId, authMethodEntity, config));
+            }
         }
-        for (AuthMethodEntity authMethodEntity : authMethodList) {
-            if (authMethodEntity.getCheckUserPrefs()) {
-                // methods with user prefs require special handling
-                if (userPrefs != null) {
-                    // get status of methods with user prefs
-                    if (userPrefs.getAuthMethodEnabled(authMethodEntity.getUserPrefsColumn())) {
-                        // read configuration of method from user prefs
-                        String config = userPrefs.getAuthMethodConfig(authMethodEntity.getUserPrefsColumn());
-                        Map<String, String> configMap;
-                        try {
-                            MapType mapType = objectMapper.getTypeFactory().constructMapType(Map.class, String.class, String.class);
-                            configMap = objectMapper.readValue(config, mapType);
-                        } catch (IOException e) {
-                            Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error while deserializing config", e);
-                            configMap = new HashMap<>();
-                        }
-                        // add method in case it is enabled in user prefs
-                        enabledMethods.add(getUserAuthMethodDetail(userId, authMethodEntity, configMap));
-                    }
-                } else {
-                    // user prefs are not set - resolve methods with user prefs by their default value
-                    if (authMethodEntity.getUserPrefsDefault()) {
-                        // add method in case it is enabled by default
-                        enabledMethods.add(getUserAuthMethodDetail(userId, authMethodEntity, null));
-                    }
-                }
-            } else {
-                // add all methods without user prefs
-                enabledMethods.add(getUserAuthMethodDetail(userId, authMethodEntity, null));
+        return enabledMethods;
+    }
+
+    /**
+     * Get authentication methods enabled for given user without their details.
+     *
+     * @param userId User ID
+     * @return Set of authentication methods enabled for given user.
+     */
+    public Set<AuthMethod> getAuthMethodsEnabledForUser(String userId) {
+        Set<AuthMethod> enabledMethods = EnumSet.noneOf(AuthMethod.class);
+        CachedUserPrefs userPrefs = getUserPrefs(userId);
+        for (AuthMethodEntity authMethodEntity : authMethodCatalog.getAuthMethods()) {
+            if (isAuthMethodEnabled(authMethodEntity, userPrefs)) {
+                enabledMethods.add(authMethodEntity.getAuthMethod());
             }
         }
         return enabledMethods;
@@ -125,20 +108,15 @@ public class AuthMethodService {
      * @param enabled    true if enabled, false if disabled, null if unspecified
      */
     public void updateAuthMethodForUser(String userId, AuthMethod authMethod, Boolean enabled, Map<String, String> config) {
-        List<AuthMethodEntity> authMethodList = authMethodRepository.findAllAuthMethods();
-        boolean authMethodFound = false;
+        List<AuthMethodEntity> authMethodList = authMethodCatalog.getAuthMethods();
         // check whether this method supports modifications at all
-        for (AuthMethodEntity authMethodEntity : authMethodList) {
-            if (authMethodEntity.getAuthMethod() == authMethod) {
-                authMethodFound = true;
-                if (!authMethodEntity.getCheckUserPrefs()) {
-                    throw new IllegalArgumentException("Authentication method " + authMethod + " does not support user preferences.");
-                }
-            }
-        }
-        if (!authMethodFound) {
+        AuthMethodEntity updatedAuthMethod = authMethodCatalog.getAuthMethod(authMethod);
+        if (updatedAuthMethod == null) {
             throw new IllegalArgumentException("Authentication method " + authMethod + " is not supported.");
         }
+        if (!updatedAuthMethod.getCheckUserPrefs()) {
+            throw new IllegalArgumentException("Authentication method " + authMethod + " does not support user preferences.");
+        }
         String configAsStr;
         try {
             configAsStr = objectMapper.writeValueAsString(config);
@@ -146,41 +124,43 @@ public class AuthMethodService {
             Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error while serializing config", e);
             configAsStr = "{}";
         }
-        UserPrefsEntity userPrefs = userPrefsRepository.findUserPrefs(userId);
-        if (userPrefs == null) {
-            // create new user prefs
-            userPrefs = new UserPrefsEntity();
-            userPrefs.setUserId(userId);
-            // set defaults
-            for (AuthMethodEntity authMethodEntity : authMethodList) {
-                if (authMethodEntity.getCheckUserPrefs()) {
-                    if (authMethodEntity.getAuthMethod() == authMethod) {
-                        // set requested value for method which is being updated
-                        userPrefs.setAuthMethodEnabled(authMethodEntity.getUserPrefsColumn(), enabled);
-                    } else {
-                        // set default value for other methods than the method which is being updated
-                        userPrefs.setAuthMethodEnabled(authMethodEntity.getUserPrefsColumn(), authMethodEntity.getUserPrefsDefault());
+        final String configAsStrFinal = configAsStr;
+        // user prefs are loaded, updated and saved atomically, the cache is updated with saved user prefs
+        userPrefsCache.updateUserPrefs(userId, userPrefs -> {
+            if (userPrefs == null) {
+                // create new user prefs
+                userPrefs = new UserPrefsEntity();
+                userPrefs.setUserId(userId);
+                // set defaults
+                for (AuthMethodEntity authMethodEntity : authMethodList) {
+                    if (authMethodEntity.getCheckUserPrefs()) {
+                        if (authMethodEntity.getAuthMethod() == authMethod) {
+                            // set requested value for method which is being updated
+                            userPrefs.setAuthMethodEnabled(authMethodEntity.getUserPrefsColumn(), enabled);
+                        } else {
+                            // set default value for other methods than the method which is being updated
+                            userPrefs.setAuthMethodEnabled(authMethodEntity.getUserPrefsColumn(), authMethodEntity.getUserPrefsDefault());
+                        }
+                        // set authMethod configuration
+                        userPrefs.setAuthMethodConfig(authMethodEntity.getUserPrefsColumn(), configAsStrFinal);
                     }
-                    // set authMethod configuration
-                    userPrefs.setAuthMethodConfig(authMethodEntity.getUserPrefsColumn(), configAsStr);
                 }
-            }
-        } else {
-            // update existing user prefs
-            for (AuthMethodEntity authMethodEntity : authMethodList) {
-                if (authMethodEntity.getCheckUserPrefs()) {
-                    if (authMethodEntity.getAuthMethod() == authMethod) {
-                        // set requested value for method which is being updated
-                        userPrefs.setAuthMethodEnabled(authMethodEntity.getUserPrefsColumn(), enabled);
-                        // set authMethod configuration
-                        userPrefs.setAuthMethodConfig(authMethodEntity.getUserPrefsColumn(), configAsStr);
+            } else {
+                // update existing user prefs
+                for (AuthMethodEntity authMethodEntity : authMethodList) {
+                    if (authMethodEntity.getCheckUserPrefs()) {
+                        if (authMethodEntity.getAuthMethod() == authMethod) {
+                            // set requested value for method which is being updated
+                            userPrefs.setAuthMethodEnabled(authMethodEntity.getUserPrefsColumn(), enabled);
+                            // set authMethod configuration
+                            userPrefs.setAuthMethodConfig(authMethodEntity.getUserPrefsColumn(), configAsStrFinal);
+                        }
                     }
                 }
-            }
 
-        }
-        // finally save created or updated userPrefs
-        userPrefsRepository.save(userPrefs);
+            }
+            return userPrefs;
+        });
     }
 
     /**
@@ -200,6 +180,38 @@ public class AuthMethodService {
         return authMethodDetail;
     }
 
+    /**
+     * Get user preferences for given user.
+     *
+     * @param userId User ID.
+     * @return User preferences or null in case user ID is not known.
+     */
+    private CachedUserPrefs getUserPrefs(String userId) {
+        if (userId == null) {
+            // read user prefs only when user ID is not null, for some authentication methods user ID is not known
+            return null;
+        }
+        return userPrefsCache.getUserPrefs(userId);
+    }
+
+    /**
+     * Resolve whether an authentication method is enabled. Methods which can be enabled/disabled are resolved using
+     * user prefs or by their default value when user prefs are not set. All other methods are enabled.
+     *
+     * @param authMethodEntity Authentication method.
+     * @param userPrefs User preferences, null in case user ID is not known.
+     * @return Whether the authentication method is enabled.
+     */
+    private boolean isAuthMethodEnabled(AuthMethodEntity authMethodEntity, CachedUserPrefs userPrefs) {
+        if (!authMethodEntity.getCheckUserPrefs()) {
+            return true;
+        }
+        if (userPrefs != null && userPrefs.isSet()) {
+            return userPrefs.getEnabledAuthMethods().contains(authMethodEntity.getAuthMethod());
+        }
+        return authMethodEntity.getUserPrefsDefault();
+    }
+
     private UserAuthMethodDetail getUserAuthMethodDetail(String userId, AuthMethodEntity authMethodEntity, Map<String, String> config) {
         if (authMethodEntity == null) {
             return null;
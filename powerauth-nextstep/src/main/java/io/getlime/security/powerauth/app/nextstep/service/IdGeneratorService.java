@@ -16,7 +16,7 @@
 
 package io.getlime.security.powerauth.app.nextstep.service;
 
-import io.getlime.security.powerauth.app.nextstep.repository.OperationHistoryRepository;
+import io.getlime.security.powerauth.app.nextstep.repository.model.entity.OperationEntity;
 import org.springframework.stereotype.Service;
 
 import java.util.UUID;
@@ -29,12 +29,6 @@ import java.util.UUID;
 @Service
 public class IdGeneratorService {
 
-    private OperationHistoryRepository operationHistoryRepository;
-
-    public IdGeneratorService(OperationHistoryRepository operationHistoryRepository) {
-        this.operationHistoryRepository = operationHistoryRepository;
-    }
-
     /**
      * Generates random operationId using UUID.randomUUID().
      *
@@ -45,17 +39,17 @@ public class IdGeneratorService {
     }
 
     /**
-     * Generates a new id for for OperationHistory for given operation.
+     * Generates a new id for OperationHistory for given operation. The id is allocated by incrementing the last
+     * history id stored in the operation. The operation is versioned, so that concurrent allocation of the same
+     * id on any Next Step node fails with an optimistic locking error when the operation is saved.
      *
-     * @param operationId id specifying an operation
+     * @param operation operation entity
      * @return generated id for OperationHistory
      */
-    public synchronized Long generateOperationHistoryId(String operationId) {
-        Long maxId = operationHistoryRepository.findMaxResultId(operationId);
-        if (maxId == null) {
-            return 1L;
-        } else {
-            return maxId + 1;
-        }
+    public Long generateOperationHistoryId(OperationEntity operation) {
+        Long lastResultId = operation.getLastResultId();
+        Long resultId = lastResultId == null ? 1L : lastResultId + 1;
+        operation.setLastResultId(resultId);
+        return resultId;
     }
 }
@@ -22,21 +22,36 @@ import io.getlime.security.powerauth.app.nextstep.repository.OperationHistoryRep
 import io.getlime.security.powerauth.app.nextstep.repository.OperationRepository;
 import io.getlime.security.powerauth.app.nextstep.repository.model.entity.OperationEntity;
 import io.getlime.security.powerauth.app.nextstep.repository.model.entity.OperationHistoryEntity;
+import io.getlime.security.powerauth.app.nextstep.repository.model.projection.OperationSummary;
+import io.getlime.security.powerauth.app.nextstep.repository.model.projection.OperationTitleSummary;
+import io.getlime.security.powerauth.app.nextstep.repository.model.projection.OperationUserInput;
 import io.getlime.security.powerauth.lib.nextstep.model.entity.AuthStep;
 import io.getlime.security.powerauth.lib.nextstep.model.entity.OperationFormData;
 import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthMethod;
+import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthResult;
 import io.getlime.security.powerauth.lib.nextstep.model.request.CreateOperationRequest;
 import io.getlime.security.powerauth.lib.nextstep.model.request.UpdateChosenAuthMethodRequest;
 import io.getlime.security.powerauth.lib.nextstep.model.request.UpdateFormDataRequest;
 import io.getlime.security.powerauth.lib.nextstep.model.request.UpdateOperationRequest;
+import io.getlime.security.powerauth.lib.nextstep.model.request.UpdateUserInputRequest;
 import io.getlime.security.powerauth.lib.nextstep.model.response.CreateOperationResponse;
 import io.getlime.security.powerauth.lib.nextstep.model.response.UpdateOperationResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -70,6 +85,7 @@ public class OperationPersistenceService {
      * @param request  create request received from the client
      * @param response create response generated for the client
      */
+    @Transactional
     public void createOperation(CreateOperationRequest request, CreateOperationResponse response) {
         OperationEntity operation = new OperationEntity();
         operation.setOperationName(request.getOperationName());
@@ -79,15 +95,22 @@ public class OperationPersistenceService {
         try {
             // Store form data as serialized JSON string.
             operation.setOperationFormData(objectMapper.writeValueAsString(request.getFormData()));
+            if (request.getFormData() != null) {
+                // user input is stored separately, so that it can be updated without the form definition
+                operation.setOperationUserInput(objectMapper.writeValueAsString(request.getFormData().getUserInput()));
+                if (request.getFormData().getTitle() != null) {
+                    // title is stored separately, so that operation summaries are loaded without the form definition
+                    operation.setOperationTitle(objectMapper.writeValueAsString(request.getFormData().getTitle()));
+                }
+            }
         } catch (JsonProcessingException ex) {
             Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error while serializing operation form data", ex);
         }
         operation.setTimestampCreated(response.getTimestampCreated());
         operation.setTimestampExpires(response.getTimestampExpires());
-        operationRepository.save(operation);
+        Long resultId = idGeneratorService.generateOperationHistoryId(operation);
 
-        OperationHistoryEntity operationHistory = new OperationHistoryEntity(operation.getOperationId(),
-                idGeneratorService.generateOperationHistoryId(operation.getOperationId()));
+        OperationHistoryEntity operationHistory = new OperationHistoryEntity(operation.getOperationId(), resultId);
         operationHistory.setResponseResult(response.getResult());
         operationHistory.setResponseResultDescription(response.getResultDescription());
         try {
@@ -98,8 +121,13 @@ public class OperationPersistenceService {
         } catch (JsonProcessingException ex) {
             Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error while serializing operation history", ex);
         }
+        operationHistory.setResponseAuthSteps(response.getSteps());
+        operationHistory.updateResponseAuthMethods(response.getSteps());
         operationHistory.setResponseTimestampCreated(response.getTimestampCreated());
         operationHistory.setResponseTimestampExpires(response.getTimestampExpires());
+        // summary of operation history is updated together with the operation
+        operation.addOperationHistory(operationHistory);
+        operationRepository.save(operation);
         operationHistoryRepository.save(operationHistory);
     }
 
@@ -110,16 +138,17 @@ public class OperationPersistenceService {
      * @param request  create request received from the client
      * @param response create response generated for the client
      */
+    @Transactional
     public void updateOperation(UpdateOperationRequest request, UpdateOperationResponse response) {
         OperationEntity operation = operationRepository.findOne(response.getOperationId());
         operation.setUserId(request.getUserId());
         operation.setResult(response.getResult());
         // operation expiration time matches current response expiration time
         operation.setTimestampExpires(response.getTimestampExpires());
-        operationRepository.save(operation);
+        // history id is allocated in the operation, the version check of the operation guards against concurrent updates
+        Long resultId = idGeneratorService.generateOperationHistoryId(operation);
 
-        OperationHistoryEntity operationHistory = new OperationHistoryEntity(operation.getOperationId(),
-                idGeneratorService.generateOperationHistoryId(operation.getOperationId()));
+        OperationHistoryEntity operationHistory = new OperationHistoryEntity(operation.getOperationId(), resultId);
         operationHistory.setRequestAuthMethod(request.getAuthMethod());
         operationHistory.setRequestAuthStepResult(request.getAuthStepResult());
         operationHistory.setResponseResult(response.getResult());
@@ -136,33 +165,140 @@ public class OperationPersistenceService {
                     e
             );
         }
+        operationHistory.setResponseAuthSteps(response.getSteps());
+        operationHistory.updateResponseAuthMethods(response.getSteps());
         operationHistory.setResponseTimestampCreated(response.getTimestampCreated());
         operationHistory.setResponseTimestampExpires(response.getTimestampExpires());
+        // summary of operation history is updated together with the operation
+        operation.addOperationHistory(operationHistory);
+        operationRepository.save(operation);
+        // version check of the operation is executed before the history is inserted, concurrent update which allocated
+        // the same history id fails with an optimistic locking error instead of a duplicate key error
+        operationRepository.flush();
         operationHistoryRepository.save(operationHistory);
     }
 
     /**
-     * Updates form data for given operation.
+     * Fails a pending operation which has expired. The operation result is set to FAILED and a history record with
+     * result description operation.timeout is added. The method needs to be called within a transaction.
+     *
+     * @param operationId id of an operation
+     * @return whether the operation was failed, false in case the operation is not pending or it has not expired
+     */
+    public boolean failExpiredOperation(String operationId) {
+        OperationEntity operation = operationRepository.findOperationForUpdate(operationId);
+        if (operation == null || operation.getResult() != AuthResult.CONTINUE || !operation.isExpired()) {
+            return false;
+        }
+        operation.setResult(AuthResult.FAILED);
+        Long resultId = idGeneratorService.generateOperationHistoryId(operation);
+
+        OperationHistoryEntity operationHistory = new OperationHistoryEntity(operation.getOperationId(), resultId);
+        operationHistory.setResponseResult(AuthResult.FAILED);
+        operationHistory.setResponseResultDescription("operation.timeout");
+        operationHistory.setResponseSteps("[]");
+        operationHistory.setResponseAuthSteps(new ArrayList<>());
+        operationHistory.updateResponseAuthMethods(new ArrayList<>());
+        operationHistory.setResponseTimestampCreated(new Date());
+        // response expiration time matches operation expiration to avoid extending expiration time of the operation
+        operationHistory.setResponseTimestampExpires(operation.getTimestampExpires());
+        operation.addOperationHistory(operationHistory);
+        operationRepository.save(operation);
+        operationRepository.flush();
+        operationHistoryRepository.save(operationHistory);
+        return true;
+    }
+
+    /**
+     * Updates form data for given operation. Only user input is updated, the form definition is not read nor written.
      * @param request Request to update form data.
      */
+    @Transactional
     public void updateFormData(UpdateFormDataRequest request) {
-        OperationEntity operation = operationRepository.findOne(request.getOperationId());
-        if (operation == null) {
+        if (request.getFormData() == null) {
+            throw new IllegalArgumentException("Invalid form data");
+        }
+        // update only formData.userInput which should contain all input from the user
+        updateUserInput(request.getOperationId(), request.getFormData().getUserInput(), true);
+    }
+
+    /**
+     * Updates changed keys of user input for given operation, user input with null value is removed.
+     * @param request Request to update user input.
+     */
+    @Transactional
+    public void updateUserInput(UpdateUserInputRequest request) {
+        updateUserInput(request.getOperationId(), request.getUserInput(), false);
+    }
+
+    /**
+     * Merges user input into current user input of an operation and stores it using a version checked update.
+     * Operation entity is not loaded, so the method must not be used for an operation which is modified within
+     * the same transaction.
+     *
+     * @param operationId id of an operation
+     * @param userInput user input
+     * @param replace whether user input replaces current user input
+     */
+    private void updateUserInput(String operationId, Map<String, String> userInput, boolean replace) {
+        OperationUserInput currentUserInput = operationRepository.findOperationUserInput(operationId);
+        if (currentUserInput == null) {
             throw new IllegalArgumentException("Invalid operation");
         }
+        Map<String, String> mergedUserInput = replace ? new LinkedHashMap<>() : getUserInput(operationId, currentUserInput.getOperationUserInput());
+        if (userInput != null) {
+            for (Map.Entry<String, String> entry : userInput.entrySet()) {
+                if (entry.getValue() == null) {
+                    mergedUserInput.remove(entry.getKey());
+                } else {
+                    mergedUserInput.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        String serializedUserInput;
+        try {
+            serializedUserInput = objectMapper.writeValueAsString(mergedUserInput);
+        } catch (JsonProcessingException e) {
+            Logger.getLogger(this.getClass().getName()).log(
+                    Level.SEVERE,
+                    "Error occurred while serializing operation user input",
+                    e
+            );
+            return;
+        }
+        if (operationRepository.updateOperationUserInput(operationId, serializedUserInput, currentUserInput.getVersion()) == 0) {
+            throw new ObjectOptimisticLockingFailureException(OperationEntity.class, operationId);
+        }
+    }
+
+    /**
+     * Deserializes user input of an operation. Operations created before user input was stored separately
+     * have user input only in form data, in this case user input is read from form data.
+     *
+     * @param operationId id of an operation
+     * @param operationUserInput serialized user input
+     * @return user input
+     */
+    private Map<String, String> getUserInput(String operationId, String operationUserInput) {
+        Map<String, String> userInput = new LinkedHashMap<>();
         try {
-            OperationFormData formData = objectMapper.readValue(operation.getOperationFormData(), OperationFormData.class);
-            // update only formData.userInput which should contain all input from the user
-            formData.setUserInput(request.getFormData().getUserInput());
-            operation.setOperationFormData(objectMapper.writeValueAsString(formData));
+            if (operationUserInput != null) {
+                userInput.putAll(objectMapper.readValue(operationUserInput, new TypeReference<Map<String, String>>() {
+                }));
+            } else {
+                OperationEntity operation = operationRepository.findOne(operationId);
+                if (operation.getOperationFormData() != null) {
+                    userInput.putAll(objectMapper.readValue(operation.getOperationFormData(), OperationFormData.class).getUserInput());
+                }
+            }
         } catch (IOException e) {
             Logger.getLogger(this.getClass().getName()).log(
                     Level.SEVERE,
-                    "Error occurred while serializing operation form data",
+                    "Error occurred while deserializing operation user input",
                     e
             );
         }
-        operationRepository.save(operation);
+        return userInput;
     }
 
     /**
@@ -174,18 +310,11 @@ public class OperationPersistenceService {
         if (operation == null) {
             throw new IllegalArgumentException("Invalid operation");
         }
-        OperationHistoryEntity currentHistory = operation.getCurrentOperationHistoryEntity();
+        OperationHistoryEntity currentHistory = getCurrentOperationHistory(operation);
         if (currentHistory == null) {
             throw new IllegalStateException("Operation is missing history");
         }
-        boolean chosenAuthMethodValid = false;
-        for (AuthStep step: getResponseAuthSteps(operation)) {
-            if (step.getAuthMethod() == request.getChosenAuthMethod()) {
-                chosenAuthMethodValid = true;
-                break;
-            }
-        }
-        if (!chosenAuthMethodValid) {
+        if (!isResponseAuthMethod(currentHistory, request.getChosenAuthMethod())) {
             throw new IllegalStateException("Invalid chosen authentication method");
         }
         currentHistory.setChosenAuthMethod(request.getChosenAuthMethod());
@@ -202,30 +331,191 @@ public class OperationPersistenceService {
         return operationRepository.findOne(operationId);
     }
 
+    /**
+     * Find operation IDs which are already used out of given operation IDs without loading the operations.
+     *
+     * @param operationIds ids of operations
+     * @return set of operation IDs which are already used
+     */
+    public Set<String> getExistingOperationIds(Collection<String> operationIds) {
+        if (operationIds.isEmpty()) {
+            return new HashSet<>();
+        }
+        return new HashSet<>(operationRepository.findExistingOperationIds(operationIds));
+    }
+
+    /**
+     * Check whether an operation with given operationId exists without loading the operation.
+     *
+     * @param operationId id of an operation
+     * @return whether the operation exists
+     */
+    public boolean operationExists(String operationId) {
+        return operationRepository.exists(operationId);
+    }
+
+    /**
+     * Retrieve the current OperationHistoryEntity for an operation. The history record is looked up by its primary key,
+     * the whole operation history is not loaded.
+     *
+     * @param operation operation entity
+     * @return current OperationHistoryEntity or null in case operation has no history
+     */
+    public OperationHistoryEntity getCurrentOperationHistory(OperationEntity operation) {
+        if (operation == null || operation.getLastResultId() == null) {
+            return null;
+        }
+        return getOperationHistory(operation.getOperationId(), operation.getLastResultId());
+    }
+
+    /**
+     * Retrieve an OperationHistoryEntity for given operationId and resultId from database.
+     *
+     * @param operationId id of an operation
+     * @param resultId    id of the history record
+     * @return OperationHistoryEntity or null in case history record does not exist
+     */
+    public OperationHistoryEntity getOperationHistory(String operationId, Long resultId) {
+        return operationHistoryRepository.findOne(new OperationHistoryEntity.OperationHistoryKey(operationId, resultId));
+    }
+
+    /**
+     * Retrieve the whole history of an operation from database.
+     *
+     * @param operationId id of an operation
+     * @return list of OperationHistoryEntity ordered by resultId
+     */
+    public List<OperationHistoryEntity> getOperationHistory(String operationId) {
+        return operationHistoryRepository.findOperationHistory(operationId);
+    }
+
+    /**
+     * Retrieve OperationEntities for given operationIds from database using a single query. Operation history
+     * is not loaded.
+     *
+     * @param operationIds ids of operations
+     * @return list of OperationEntity, operations which do not exist are not included
+     */
+    public List<OperationEntity> getOperations(Collection<String> operationIds) {
+        List<OperationEntity> operations = new ArrayList<>();
+        if (operationIds.isEmpty()) {
+            return operations;
+        }
+        for (OperationEntity operation : operationRepository.findAll(operationIds)) {
+            operations.add(operation);
+        }
+        return operations;
+    }
+
+    /**
+     * Retrieve the whole history of given operations from database using a single query.
+     *
+     * @param operationIds ids of operations
+     * @return map of operationId to list of OperationHistoryEntity ordered by resultId
+     */
+    public Map<String, List<OperationHistoryEntity>> getOperationHistory(Collection<String> operationIds) {
+        Map<String, List<OperationHistoryEntity>> operationHistory = new HashMap<>();
+        if (operationIds.isEmpty()) {
+            return operationHistory;
+        }
+        for (OperationHistoryEntity history : operationHistoryRepository.findOperationHistoryForOperations(operationIds)) {
+            operationHistory.computeIfAbsent(history.getPrimaryKey().getOperationId(), operationId -> new ArrayList<>()).add(history);
+        }
+        return operationHistory;
+    }
+
+    /**
+     * Retrieve an OperationEntity for given operationId from database for an update. Version of the operation
+     * is checked and incremented when the updated operation is flushed.
+     *
+     * @param operationId id of an operation
+     * @return OperationEntity loaded from database
+     */
+    public OperationEntity getOperationForUpdate(String operationId) {
+        return operationRepository.findOperationForUpdate(operationId);
+    }
+
     /**
      * Retrieve list of pending operations for given user id and authentication method from database.
-     * Parameter authMethod can be null to return all pending operations for given user.
+     * Parameter authMethod can be null to return all pending operations for given user. Pending operations
+     * are loaded as summaries in a single query without operation history.
      *
      * @param userId     user id
      * @param authMethod authentication method
      * @return list of operations which match the query
      */
-    public List<OperationEntity> getPendingOperations(String userId, AuthMethod authMethod) {
-        List<OperationEntity> entities = operationRepository.findPendingOperationsForUser(userId);
+    public List<OperationSummary> getPendingOperations(String userId, AuthMethod authMethod) {
         if (authMethod == null) {
-            return entities;
-        }
-        List<OperationEntity> filteredList = new ArrayList<>();
-        for (OperationEntity operation: entities) {
-            // pending operations should be filtered by authMethods which have been chosen by the user
-            for (OperationHistoryEntity history: operation.getOperationHistory()) {
-                AuthMethod chosenAuthMethod = history.getChosenAuthMethod();
-                if (chosenAuthMethod != null && chosenAuthMethod == authMethod) {
-                    filteredList.add(operation);
-                }
-            }
+            return operationRepository.findPendingOperationsForUser(userId);
         }
-        return filteredList;
+        // pending operations are filtered by authMethods which have been chosen by the user
+        return operationRepository.findPendingOperationsForUserAndAuthMethod(userId, authMethod);
+    }
+
+    /**
+     * Retrieve a page of pending operations for given user id and authentication method from database. Operations
+     * are ordered by creation time and operation ID, the next page starts after the last operation from previous
+     * page (keyset pagination). Creation time and operation ID of an operation never change, so an operation
+     * can neither be skipped nor repeated between pages. Parameter authMethod can be null to return pending
+     * operations for all authentication methods.
+     *
+     * @param userId               user id
+     * @param authMethod           authentication method
+     * @param lastTimestampCreated creation time of the last operation from previous page, null for the first page
+     * @param lastOperationId      operation ID of the last operation from previous page, null for the first page
+     * @param limit                maximum number of operations
+     * @return list of operations which match the query
+     */
+    public List<OperationSummary> getPendingOperations(String userId, AuthMethod authMethod, Date lastTimestampCreated, String lastOperationId, int limit) {
+        PageRequest pageRequest = new PageRequest(0, limit);
+        boolean firstPage = lastTimestampCreated == null || lastOperationId == null;
+        Date timestampCreated = firstPage ? new Date(0) : lastTimestampCreated;
+        String operationId = firstPage ? "" : lastOperationId;
+        if (authMethod == null) {
+            return operationRepository.findPendingOperationsForUserAfter(userId, timestampCreated, operationId, pageRequest);
+        }
+        // pending operations are filtered by authMethods which have been chosen by the user
+        return operationRepository.findPendingOperationsForUserAndAuthMethodAfter(userId, authMethod, timestampCreated, operationId, pageRequest);
+    }
+
+    /**
+     * Retrieve list of title summaries of pending operations for given user id and authentication method from
+     * database. Operation data and form data are not loaded, only the title stored separately during creation
+     * of the operation. Parameter authMethod can be null to return all pending operations for given user.
+     *
+     * @param userId     user id
+     * @param authMethod authentication method
+     * @return list of operations which match the query
+     */
+    public List<OperationTitleSummary> getPendingOperationTitles(String userId, AuthMethod authMethod) {
+        if (authMethod == null) {
+            return operationRepository.findPendingOperationTitlesForUser(userId);
+        }
+        // pending operations are filtered by authMethods which have been chosen by the user
+        return operationRepository.findPendingOperationTitlesForUserAndAuthMethod(userId, authMethod);
+    }
+
+    /**
+     * Retrieve a page of title summaries of pending operations for given user id and authentication method from
+     * database. Pages are ordered in the same way as in {@link #getPendingOperations(String, AuthMethod, Date, String, int)}.
+     *
+     * @param userId               user id
+     * @param authMethod           authentication method
+     * @param lastTimestampCreated creation time of the last operation from previous page, null for the first page
+     * @param lastOperationId      operation ID of the last operation from previous page, null for the first page
+     * @param limit                maximum number of operations
+     * @return list of operations which match the query
+     */
+    public List<OperationTitleSummary> getPendingOperationTitles(String userId, AuthMethod authMethod, Date lastTimestampCreated, String lastOperationId, int limit) {
+        PageRequest pageRequest = new PageRequest(0, limit);
+        boolean firstPage = lastTimestampCreated == null || lastOperationId == null;
+        Date timestampCreated = firstPage ? new Date(0) : lastTimestampCreated;
+        String operationId = firstPage ? "" : lastOperationId;
+        if (authMethod == null) {
+            return operationRepository.findPendingOperationTitlesForUserAfter(userId, timestampCreated, operationId, pageRequest);
+        }
+        // pending operations are filtered by authMethods which have been chosen by the user
+        return operationRepository.findPendingOperationTitlesForUserAndAuthMethodAfter(userId, authMethod, timestampCreated, operationId, pageRequest);
     }
 
     /**
@@ -236,22 +526,39 @@ public class OperationPersistenceService {
      * @return list of {@link AuthStep}
      */
     public List<AuthStep> getResponseAuthSteps(OperationEntity operation) {
-        List<AuthStep> steps = new ArrayList<>();
         if (operation == null) {
+            return new ArrayList<>();
+        }
+        return getResponseAuthSteps(getCurrentOperationHistory(operation));
+    }
+
+    /**
+     * Gets the list of @{link AuthStep} from a history record of an operation. In case history record is not
+     * available, empty list is returned.
+     *
+     * @param history operation history entity
+     * @return list of {@link AuthStep}
+     */
+    public List<AuthStep> getResponseAuthSteps(OperationHistoryEntity history) {
+        List<AuthStep> steps = new ArrayList<>();
+        if (history == null) {
             return steps;
         }
-        OperationHistoryEntity currentHistory = operation.getCurrentOperationHistoryEntity();
-        if (currentHistory == null) {
+        // steps are deserialized only once for a loaded history record
+        if (history.getResponseAuthSteps() != null) {
+            steps.addAll(history.getResponseAuthSteps());
             return steps;
         }
-        // get steps from the current response
-        String responseSteps = operation.getCurrentOperationHistoryEntity().getResponseSteps();
+        // get steps from the response
+        String responseSteps = history.getResponseSteps();
         if (responseSteps == null) {
             return steps;
         }
         try {
-            steps.addAll(objectMapper.readValue(responseSteps, new TypeReference<List<AuthStep>>() {
-            }));
+            List<AuthStep> responseAuthSteps = objectMapper.readValue(responseSteps, new TypeReference<List<AuthStep>>() {
+            });
+            history.setResponseAuthSteps(responseAuthSteps);
+            steps.addAll(responseAuthSteps);
             return steps;
         } catch (IOException e) {
             // in case of an error empty list is returned
@@ -264,6 +571,30 @@ public class OperationPersistenceService {
         return steps;
     }
 
+    /**
+     * Check whether given authentication method is one of the next steps in a history record of an operation.
+     * Authentication methods stored in the history record are used, response steps are deserialized only for
+     * history records which were created before authentication methods of next steps were stored.
+     *
+     * @param history operation history entity
+     * @param authMethod authentication method
+     * @return whether the authentication method is one of the next steps
+     */
+    public boolean isResponseAuthMethod(OperationHistoryEntity history, AuthMethod authMethod) {
+        if (history == null || authMethod == null) {
+            return false;
+        }
+        if (history.hasResponseAuthMethods()) {
+            return history.isResponseAuthMethod(authMethod);
+        }
+        for (AuthStep step : getResponseAuthSteps(history)) {
+            if (step.getAuthMethod() == authMethod) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Gets the list of @{link AuthMethod} for an operation. Authentication methods from the current response
      * are returned. In case no history is available, empty list is returned.
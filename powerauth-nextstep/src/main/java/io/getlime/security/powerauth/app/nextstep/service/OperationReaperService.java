@@ -0,0 +1,314 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.app.nextstep.service;
+
+import io.getlime.security.powerauth.app.nextstep.configuration.NextStepServerConfiguration;
+import io.getlime.security.powerauth.app.nextstep.repository.OperationHistoryRepository;
+import io.getlime.security.powerauth.app.nextstep.repository.OperationRepository;
+import io.getlime.security.powerauth.app.nextstep.repository.SchedulerLeaseRepository;
+import io.getlime.security.powerauth.app.nextstep.repository.model.entity.SchedulerLeaseEntity;
+import io.getlime.security.powerauth.app.nextstep.repository.model.projection.OperationExpiration;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Background job which fails expired pending operations and moves finished operations older than the retention
+ * period into archive tables. Operations are processed in small batches found using keyset pagination, each batch
+ * runs in a short transaction. The job runs only on the Next Step node which holds the lease of the job.
+ *
+ * @author Roman Strobl
+ */
+@Service
+public class OperationReaperService {
+
+    private static final String LEASE_NAME = "operation-reaper";
+
+    private final OperationRepository operationRepository;
+    private final OperationHistoryRepository operationHistoryRepository;
+    private final SchedulerLeaseRepository schedulerLeaseRepository;
+    private final OperationPersistenceService operationPersistenceService;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int leaseTime;
+    private final int retentionPeriod;
+    private final String owner;
+    private final ScheduledExecutorService reaper;
+
+    private volatile long lastRunTimestamp;
+    private volatile int lastExpiredOperationCount;
+    private volatile int lastArchivedOperationCount;
+    private volatile int lastArchivedHistoryCount;
+
+    @Autowired
+    public OperationReaperService(OperationRepository operationRepository, OperationHistoryRepository operationHistoryRepository,
+                                  SchedulerLeaseRepository schedulerLeaseRepository, OperationPersistenceService operationPersistenceService,
+                                  PlatformTransactionManager transactionManager, NextStepServerConfiguration nextStepServerConfiguration) {
+        this.operationRepository = operationRepository;
+        this.operationHistoryRepository = operationHistoryRepository;
+        this.schedulerLeaseRepository = schedulerLeaseRepository;
+        this.operationPersistenceService = operationPersistenceService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, nextStepServerConfiguration.getOperationReaperBatchSize());
+        this.leaseTime = nextStepServerConfiguration.getOperationReaperLeaseTime();
+        this.retentionPeriod = nextStepServerConfiguration.getOperationRetentionPeriod();
+        this.owner = getHostName() + "/" + UUID.randomUUID().toString();
+        int interval = nextStepServerConfiguration.getOperationReaperInterval();
+        if (interval > 0) {
+            reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "nextstep-operation-reaper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reaper.scheduleWithFixedDelay(this::runInBackground, interval, interval, TimeUnit.SECONDS);
+        } else {
+            reaper = null;
+        }
+    }
+
+    /**
+     * Fail expired operations and archive finished operations in case this Next Step node acquires the lease.
+     *
+     * @return whether the job was executed, false in case the lease is held by another Next Step node
+     */
+    public boolean run() {
+        if (!acquireLease()) {
+            return false;
+        }
+        try {
+            long startTime = System.currentTimeMillis();
+            int expiredOperationCount = failExpiredOperations();
+            int[] archivedCounts = archiveFinishedOperations();
+            lastExpiredOperationCount = expiredOperationCount;
+            lastArchivedOperationCount = archivedCounts[0];
+            lastArchivedHistoryCount = archivedCounts[1];
+            lastRunTimestamp = System.currentTimeMillis();
+            Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Operation reaper finished in " + (lastRunTimestamp - startTime)
+                    + " ms, expired operations: " + expiredOperationCount + ", archived operations: " + archivedCounts[0]
+                    + ", archived history records: " + archivedCounts[1]);
+            return true;
+        } finally {
+            releaseLease();
+        }
+    }
+
+    /**
+     * Get time of the last finished run of the job.
+     *
+     * @return time in milliseconds since epoch, 0 in case the job did not run on this node yet
+     */
+    public long getLastRunTimestamp() {
+        return lastRunTimestamp;
+    }
+
+    /**
+     * Get number of operations failed due to expiration in the last run of the job.
+     *
+     * @return number of expired operations
+     */
+    public int getLastExpiredOperationCount() {
+        return lastExpiredOperationCount;
+    }
+
+    /**
+     * Get number of operations moved to the archive table in the last run of the job.
+     *
+     * @return number of archived operations
+     */
+    public int getLastArchivedOperationCount() {
+        return lastArchivedOperationCount;
+    }
+
+    /**
+     * Get number of history records moved to the archive table in the last run of the job.
+     *
+     * @return number of archived history records
+     */
+    public int getLastArchivedHistoryCount() {
+        return lastArchivedHistoryCount;
+    }
+
+    /**
+     * Stop the background job.
+     */
+    @PreDestroy
+    public void stop() {
+        if (reaper != null) {
+            reaper.shutdownNow();
+        }
+    }
+
+    /**
+     * Run the job in background, errors are logged and the job continues with the next run.
+     */
+    private void runInBackground() {
+        try {
+            run();
+        } catch (RuntimeException ex) {
+            Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error while running operation reaper", ex);
+        }
+    }
+
+    /**
+     * Fail pending operations which have expired. Each operation is failed in its own transaction, so that
+     * a concurrent update of an operation fails only the update of this operation.
+     *
+     * @return number of failed operations
+     */
+    private int failExpiredOperations() {
+        Date now = new Date();
+        Date lastTimestampExpires = new Date(0);
+        String lastOperationId = "";
+        int count = 0;
+        while (renewLease()) {
+            List<OperationExpiration> operations = operationRepository.findExpiredOperations(now, lastTimestampExpires, lastOperationId, new PageRequest(0, batchSize));
+            for (OperationExpiration operation : operations) {
+                try {
+                    Boolean failed = transactionTemplate.execute(status -> operationPersistenceService.failExpiredOperation(operation.getOperationId()));
+                    if (Boolean.TRUE.equals(failed)) {
+                        count++;
+                    }
+                } catch (RuntimeException ex) {
+                    // the operation was updated concurrently, it is skipped and resolved by the next run in case it is still pending
+                    Logger.getLogger(this.getClass().getName()).log(Level.WARNING, "Expired operation could not be failed, operation ID: " + operation.getOperationId(), ex);
+                }
+            }
+            if (operations.size() < batchSize) {
+                break;
+            }
+            OperationExpiration lastOperation = operations.get(operations.size() - 1);
+            lastTimestampExpires = lastOperation.getTimestampExpires();
+            lastOperationId = lastOperation.getOperationId();
+        }
+        return count;
+    }
+
+    /**
+     * Move finished operations older than the retention period and their history into archive tables. Each batch
+     * of operations is moved in its own transaction.
+     *
+     * @return array with number of archived operations and number of archived history records
+     */
+    private int[] archiveFinishedOperations() {
+        int[] counts = new int[2];
+        if (retentionPeriod <= 0) {
+            return counts;
+        }
+        Date timestampExpires = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionPeriod));
+        Date lastTimestampExpires = new Date(0);
+        String lastOperationId = "";
+        while (renewLease()) {
+            List<OperationExpiration> operations = operationRepository.findFinishedOperations(timestampExpires, lastTimestampExpires, lastOperationId, new PageRequest(0, batchSize));
+            if (operations.isEmpty()) {
+                break;
+            }
+            List<String> operationIds = new ArrayList<>(operations.size());
+            for (OperationExpiration operation : operations) {
+                operationIds.add(operation.getOperationId());
+            }
+            int[] batchCounts = transactionTemplate.execute(status -> {
+                // lock operations first, so that no history record is added to archived operations concurrently
+                operationRepository.lockFinishedOperations(operationIds);
+                int operationCount = operationRepository.archiveFinishedOperations(operationIds);
+                int historyCount = operationHistoryRepository.archiveFinishedOperationHistory(operationIds);
+                operationHistoryRepository.deleteFinishedOperationHistory(operationIds);
+                operationRepository.deleteFinishedOperations(operationIds);
+                return new int[]{operationCount, historyCount};
+            });
+            counts[0] += batchCounts[0];
+            counts[1] += batchCounts[1];
+            if (operations.size() < batchSize) {
+                break;
+            }
+            OperationExpiration lastOperation = operations.get(operations.size() - 1);
+            lastTimestampExpires = lastOperation.getTimestampExpires();
+            lastOperationId = lastOperation.getOperationId();
+        }
+        return counts;
+    }
+
+    /**
+     * Acquire the lease of the job, the lease record is created in case it does not exist yet.
+     *
+     * @return whether the lease was acquired
+     */
+    private boolean acquireLease() {
+        if (!schedulerLeaseRepository.exists(LEASE_NAME)) {
+            try {
+                SchedulerLeaseEntity lease = new SchedulerLeaseEntity();
+                lease.setLeaseName(LEASE_NAME);
+                schedulerLeaseRepository.save(lease);
+            } catch (DataIntegrityViolationException ex) {
+                // lease record was created concurrently by another Next Step node
+            }
+        }
+        return renewLease();
+    }
+
+    /**
+     * Acquire the lease or extend the lease which is held by this Next Step node.
+     *
+     * @return whether the lease is held by this Next Step node
+     */
+    private boolean renewLease() {
+        Date now = new Date();
+        Date timestampExpires = new Date(now.getTime() + TimeUnit.SECONDS.toMillis(leaseTime));
+        Integer updated = transactionTemplate.execute(status -> schedulerLeaseRepository.acquireLease(LEASE_NAME, owner, timestampExpires, now));
+        return updated != null && updated == 1;
+    }
+
+    /**
+     * Release the lease, so that another Next Step node can run the job without waiting for lease expiration.
+     */
+    private void releaseLease() {
+        try {
+            transactionTemplate.execute(status -> schedulerLeaseRepository.releaseLease(LEASE_NAME, owner, new Date()));
+        } catch (DataAccessException ex) {
+            Logger.getLogger(this.getClass().getName()).log(Level.WARNING, "Lease of operation reaper could not be released", ex);
+        }
+    }
+
+    /**
+     * Get host name of this Next Step node used to identify owner of the lease.
+     *
+     * @return host name
+     */
+    private static String getHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException ex) {
+            return "unknown";
+        }
+    }
+
+}
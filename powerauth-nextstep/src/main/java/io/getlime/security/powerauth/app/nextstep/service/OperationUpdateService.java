@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.app.nextstep.service;
+
+import io.getlime.security.powerauth.app.nextstep.configuration.NextStepServerConfiguration;
+import io.getlime.security.powerauth.app.nextstep.repository.model.entity.OperationEntity;
+import io.getlime.security.powerauth.lib.nextstep.model.entity.CreateOperationResult;
+import io.getlime.security.powerauth.lib.nextstep.model.exception.NextStepServiceException;
+import io.getlime.security.powerauth.lib.nextstep.model.exception.OperationVersionConflictException;
+import io.getlime.security.powerauth.lib.nextstep.model.request.CreateOperationBatchRequest;
+import io.getlime.security.powerauth.lib.nextstep.model.request.CreateOperationRequest;
+import io.getlime.security.powerauth.lib.nextstep.model.request.UpdateOperationRequest;
+import io.getlime.security.powerauth.lib.nextstep.model.response.CreateOperationBatchResponse;
+import io.getlime.security.powerauth.lib.nextstep.model.response.CreateOperationResponse;
+import io.getlime.security.powerauth.lib.nextstep.model.response.UpdateOperationResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * This service performs step resolution and persistence of an operation create or update as a single unit of work.
+ * The operation row and its history record are committed together. During an update the operation is loaded only
+ * once and its version is checked against the version expected by the client, so that concurrent updates of the same
+ * operation (e.g. from web and mobile channels) are detected.
+ *
+ * @author Roman Strobl
+ */
+@Service
+public class OperationUpdateService {
+
+    private OperationPersistenceService operationPersistenceService;
+    private StepResolutionService stepResolutionService;
+    private NextStepServerConfiguration nextStepServerConfiguration;
+
+    @Autowired
+    public OperationUpdateService(OperationPersistenceService operationPersistenceService, StepResolutionService stepResolutionService,
+                                  NextStepServerConfiguration nextStepServerConfiguration) {
+        this.operationPersistenceService = operationPersistenceService;
+        this.stepResolutionService = stepResolutionService;
+        this.nextStepServerConfiguration = nextStepServerConfiguration;
+    }
+
+    /**
+     * Resolve next steps and create an operation in a single transaction.
+     *
+     * @param request Create operation request.
+     * @return Create operation response.
+     */
+    @Transactional
+    public CreateOperationResponse createOperation(CreateOperationRequest request) {
+        // resolve response based on dynamic step definitions
+        CreateOperationResponse response = stepResolutionService.resolveNextStepResponse(request);
+
+        // persist new operation
+        operationPersistenceService.createOperation(request, response);
+        return response;
+    }
+
+    /**
+     * Resolve next steps and create a batch of operations in a single transaction. Operations and their history records
+     * are inserted using JDBC batching when the transaction commits. Operations which cannot be resolved are reported
+     * in results and the remaining operations are created.
+     *
+     * @param request Create operation batch request.
+     * @return Create operation batch response with results in the same order as operations in the request.
+     */
+    @Transactional
+    public CreateOperationBatchResponse createOperations(CreateOperationBatchRequest request) {
+        if (request == null || request.getOperations() == null) {
+            throw new IllegalArgumentException("Operation batch could not be created, because request is invalid.");
+        }
+        if (request.getOperations().size() > nextStepServerConfiguration.getOperationBatchMaxSize()) {
+            throw new IllegalArgumentException("Operation batch could not be created, because it contains more than "
+                    + nextStepServerConfiguration.getOperationBatchMaxSize() + " operations.");
+        }
+        // resolve responses based on dynamic step definitions
+        List<CreateOperationResult> results = stepResolutionService.resolveNextStepResponses(request.getOperations());
+
+        // persist new operations
+        for (int i = 0; i < results.size(); i++) {
+            CreateOperationResponse response = results.get(i).getOperation();
+            if (response != null) {
+                operationPersistenceService.createOperation(request.getOperations().get(i), response);
+            }
+        }
+        CreateOperationBatchResponse response = new CreateOperationBatchResponse();
+        response.getResults().addAll(results);
+        return response;
+    }
+
+    /**
+     * Validate and update an operation in a single transaction. Repeated reads of the operation during step
+     * resolution and persistence are served by the persistence context.
+     *
+     * @param request Update operation request.
+     * @return Update operation response.
+     * @throws NextStepServiceException Thrown when operation state is invalid or when operation version does not match.
+     */
+    @Transactional(rollbackFor = NextStepServiceException.class)
+    public UpdateOperationResponse updateOperation(UpdateOperationRequest request) throws NextStepServiceException {
+        return update(request);
+    }
+
+    /**
+     * Validate and update an operation in a single transaction and return the updated operation.
+     *
+     * @param request Update operation request.
+     * @return Updated operation entity.
+     * @throws NextStepServiceException Thrown when operation state is invalid or when operation version does not match.
+     */
+    @Transactional(rollbackFor = NextStepServiceException.class)
+    public OperationEntity updateOperationWithDetail(UpdateOperationRequest request) throws NextStepServiceException {
+        update(request);
+        // the operation is served by the persistence context
+        return operationPersistenceService.getOperation(request.getOperationId());
+    }
+
+    /**
+     * Validate, resolve and persist an operation update, the method needs to be called within a transaction.
+     *
+     * @param request Update operation request.
+     * @return Update operation response.
+     * @throws NextStepServiceException Thrown when operation state is invalid or when operation version does not match.
+     */
+    private UpdateOperationResponse update(UpdateOperationRequest request) throws NextStepServiceException {
+        if (request == null || request.getOperationId() == null) {
+            throw new IllegalArgumentException("Operation update failed, because request is invalid.");
+        }
+        OperationEntity operation = operationPersistenceService.getOperationForUpdate(request.getOperationId());
+        if (operation == null) {
+            throw new IllegalArgumentException("Operation update failed, because operation does not exist (operationId: " + request.getOperationId() + ").");
+        }
+        if (request.getExpectedVersion() != null && !request.getExpectedVersion().equals(operation.getVersion())) {
+            throw new OperationVersionConflictException("Operation update failed, because operation was modified concurrently (operationId: "
+                    + request.getOperationId() + ", expected version: " + request.getExpectedVersion() + ", current version: " + operation.getVersion() + ").");
+        }
+        // resolve response based on dynamic step definitions
+        UpdateOperationResponse response = stepResolutionService.resolveNextStepResponse(request);
+
+        // persist operation update
+        operationPersistenceService.updateOperation(request, response);
+        return response;
+    }
+
+}
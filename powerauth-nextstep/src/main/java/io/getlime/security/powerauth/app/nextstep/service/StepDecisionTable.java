@@ -0,0 +1,261 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.app.nextstep.service;
+
+import io.getlime.security.powerauth.app.nextstep.repository.model.entity.StepDefinitionEntity;
+import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthMethod;
+import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthResult;
+import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthStepResult;
+import io.getlime.security.powerauth.lib.nextstep.model.enumeration.OperationRequestType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Immutable lookup table of step definitions compiled from the step definitions stored in database. Step definitions
+ * are indexed by operation name, operation request type, request authentication method and request authentication step
+ * result. Each entry contains step definitions sorted by priority and grouped by response result in order of preference,
+ * so that only the filtering by authentication methods available for the user is performed while resolving the next step.
+ * Step definitions are validated when the table is compiled, invalid step definitions cause an IllegalStateException.
+ * The table carries a version derived from the content of step definitions, so that changes of step definitions
+ * can be detected and Next Step nodes can be verified to use the same step definitions.
+ *
+ * @author Roman Strobl
+ */
+public final class StepDecisionTable {
+
+    /**
+     * Preference of response results in case step definitions with different results match the request. In case there is
+     * any DONE or CONTINUE next step, it is preferred over FAILED. FAILED state can be caused by a failing authentication
+     * method or by method canceled by the user, in this case the user can switch to other authentication method if it
+     * is available.
+     */
+    private static final List<AuthResult> RESULT_PREFERENCE = Collections.unmodifiableList(Arrays.asList(AuthResult.DONE, AuthResult.CONTINUE, AuthResult.FAILED));
+
+    private final Map<String, OperationDecisions> decisionsPerOperation;
+    private final String version;
+    private final Date timestampCreated;
+
+    /**
+     * Compile step definitions into a lookup table.
+     *
+     * @param stepDefinitionsPerOperation Step definitions for each operation name.
+     * @throws IllegalStateException Thrown when step definitions are invalid.
+     */
+    public StepDecisionTable(Map<String, List<StepDefinitionEntity>> stepDefinitionsPerOperation) {
+        Map<String, OperationDecisions> decisions = new HashMap<>();
+        for (Map.Entry<String, List<StepDefinitionEntity>> entry : stepDefinitionsPerOperation.entrySet()) {
+            decisions.put(entry.getKey(), new OperationDecisions(entry.getKey(), entry.getValue()));
+        }
+        this.decisionsPerOperation = Collections.unmodifiableMap(decisions);
+        this.version = computeVersion(stepDefinitionsPerOperation);
+        this.timestampCreated = new Date();
+    }
+
+    /**
+     * Get version of step definitions, the version is a checksum of all step definitions.
+     *
+     * @return Version of step definitions.
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Get timestamp when the table was compiled.
+     *
+     * @return Timestamp of compilation.
+     */
+    public Date getTimestampCreated() {
+        return new Date(timestampCreated.getTime());
+    }
+
+    /**
+     * Compute checksum of step definitions. Operations are processed in order of their names and step definitions
+     * in the order in which they are provided, so that the same content leads to the same version.
+     *
+     * @param stepDefinitionsPerOperation Step definitions for each operation name.
+     * @return Checksum of step definitions as hexadecimal string.
+     */
+    private static String computeVersion(Map<String, List<StepDefinitionEntity>> stepDefinitionsPerOperation) {
+        CRC32 checksum = new CRC32();
+        for (String operationName : new TreeSet<>(stepDefinitionsPerOperation.keySet())) {
+            for (StepDefinitionEntity stepDef : stepDefinitionsPerOperation.get(operationName)) {
+                String row = stepDef.getStepDefinitionId() + "|" + stepDef.getOperationName() + "|" + stepDef.getOperationType()
+                        + "|" + stepDef.getRequestAuthMethod() + "|" + stepDef.getRequestAuthStepResult() + "|" + stepDef.getResponsePriority()
+                        + "|" + stepDef.getResponseAuthMethod() + "|" + stepDef.getResponseResult() + "\n";
+                checksum.update(row.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return String.format("%08x", checksum.getValue());
+    }
+
+    /**
+     * Get decision for creating an operation.
+     *
+     * @param operationName Operation name.
+     * @return Decision for creating the operation.
+     */
+    public StepDecision getCreateDecision(String operationName) {
+        return getOperationDecisions(operationName).createDecision;
+    }
+
+    /**
+     * Get decision for updating an operation.
+     *
+     * @param operationName Operation name.
+     * @param authMethod Authentication method of previous authentication step.
+     * @param authStepResult Result of previous authentication step.
+     * @return Decision for updating the operation, decision without any steps is returned when no step definition matches.
+     */
+    public StepDecision getUpdateDecision(String operationName, AuthMethod authMethod, AuthStepResult authStepResult) {
+        Map<AuthStepResult, StepDecision> decisionsPerResult = getOperationDecisions(operationName).updateDecisions.get(authMethod);
+        if (decisionsPerResult == null) {
+            return StepDecision.EMPTY;
+        }
+        StepDecision decision = decisionsPerResult.get(authStepResult);
+        return decision == null ? StepDecision.EMPTY : decision;
+    }
+
+    private OperationDecisions getOperationDecisions(String operationName) {
+        OperationDecisions decisions = decisionsPerOperation.get(operationName);
+        if (decisions == null) {
+            throw new IllegalStateException("Step definitions are missing in Next Step server.");
+        }
+        return decisions;
+    }
+
+    /**
+     * Compiled decisions for a single operation.
+     */
+    private static final class OperationDecisions {
+
+        private final StepDecision createDecision;
+        private final Map<AuthMethod, Map<AuthStepResult, StepDecision>> updateDecisions;
+
+        private OperationDecisions(String operationName, List<StepDefinitionEntity> stepDefinitions) {
+            List<StepDefinitionEntity> createSteps = new ArrayList<>();
+            Map<AuthMethod, Map<AuthStepResult, List<StepDefinitionEntity>>> updateSteps = new EnumMap<>(AuthMethod.class);
+            for (StepDefinitionEntity stepDef : stepDefinitions) {
+                if (stepDef.getOperationType() == OperationRequestType.CREATE) {
+                    createSteps.add(stepDef);
+                } else if (stepDef.getOperationType() == OperationRequestType.UPDATE
+                        && stepDef.getRequestAuthMethod() != null && stepDef.getRequestAuthStepResult() != null) {
+                    updateSteps.computeIfAbsent(stepDef.getRequestAuthMethod(), authMethod -> new EnumMap<>(AuthStepResult.class))
+                            .computeIfAbsent(stepDef.getRequestAuthStepResult(), authStepResult -> new ArrayList<>())
+                            .add(stepDef);
+                }
+                // other step definitions can never match a request
+            }
+            StepDecision decision = new StepDecision(operationName, createSteps);
+            if (decision.getResultsByPreference().size() > 1) {
+                throw new IllegalStateException("Step definitions for creating operation " + operationName + " lead to multiple results.");
+            }
+            this.createDecision = decision;
+            Map<AuthMethod, Map<AuthStepResult, StepDecision>> decisions = new EnumMap<>(AuthMethod.class);
+            for (Map.Entry<AuthMethod, Map<AuthStepResult, List<StepDefinitionEntity>>> methodEntry : updateSteps.entrySet()) {
+                Map<AuthStepResult, StepDecision> decisionsPerResult = new EnumMap<>(AuthStepResult.class);
+                for (Map.Entry<AuthStepResult, List<StepDefinitionEntity>> resultEntry : methodEntry.getValue().entrySet()) {
+                    decisionsPerResult.put(resultEntry.getKey(), new StepDecision(operationName, resultEntry.getValue()));
+                }
+                decisions.put(methodEntry.getKey(), Collections.unmodifiableMap(decisionsPerResult));
+            }
+            this.updateDecisions = Collections.unmodifiableMap(decisions);
+        }
+    }
+
+    /**
+     * Step definitions matching a request, grouped by response result and sorted by priority.
+     */
+    public static final class StepDecision {
+
+        private static final StepDecision EMPTY = new StepDecision(null, Collections.emptyList());
+
+        private final Map<AuthResult, List<StepDefinitionEntity>> stepsPerResult;
+        private final List<AuthResult> resultsByPreference;
+
+        private StepDecision(String operationName, List<StepDefinitionEntity> stepDefinitions) {
+            List<StepDefinitionEntity> sortedSteps = new ArrayList<>(stepDefinitions);
+            Set<Long> priorities = new HashSet<>();
+            for (StepDefinitionEntity stepDef : sortedSteps) {
+                if (stepDef.getResponsePriority() == null || stepDef.getResponseResult() == null) {
+                    throw new IllegalStateException("Step definition " + stepDef.getStepDefinitionId() + " for operation " + operationName + " is missing response priority or result.");
+                }
+                if (!priorities.add(stepDef.getResponsePriority())) {
+                    throw new IllegalStateException("Multiple steps with the same priority detected for operation " + operationName + ", step definition " + stepDef.getStepDefinitionId() + ".");
+                }
+            }
+            sortedSteps.sort(Comparator.comparing(StepDefinitionEntity::getResponsePriority));
+            Map<AuthResult, List<StepDefinitionEntity>> stepsPerResult = new EnumMap<>(AuthResult.class);
+            for (StepDefinitionEntity stepDef : sortedSteps) {
+                stepsPerResult.computeIfAbsent(stepDef.getResponseResult(), authResult -> new ArrayList<>()).add(stepDef);
+            }
+            List<AuthResult> resultsByPreference = new ArrayList<>();
+            for (AuthResult authResult : RESULT_PREFERENCE) {
+                List<StepDefinitionEntity> steps = stepsPerResult.get(authResult);
+                if (steps != null) {
+                    stepsPerResult.put(authResult, Collections.unmodifiableList(steps));
+                    resultsByPreference.add(authResult);
+                }
+            }
+            if (resultsByPreference.size() != stepsPerResult.size()) {
+                throw new IllegalStateException("Step definitions for operation " + operationName + " contain an unsupported response result.");
+            }
+            this.stepsPerResult = Collections.unmodifiableMap(stepsPerResult);
+            this.resultsByPreference = Collections.unmodifiableList(resultsByPreference);
+        }
+
+        /**
+         * Get response results of matching step definitions in order of preference.
+         *
+         * @return Response results, the first result is used unless all its steps are filtered out.
+         */
+        public List<AuthResult> getResultsByPreference() {
+            return resultsByPreference;
+        }
+
+        /**
+         * Get the preferred response result when no step is filtered out.
+         *
+         * @return Preferred response result or null in case no step definition matches.
+         */
+        public AuthResult getResult() {
+            return resultsByPreference.isEmpty() ? null : resultsByPreference.get(0);
+        }
+
+        /**
+         * Get step definitions with given response result sorted by priority.
+         *
+         * @param authResult Response result.
+         * @return Step definitions sorted by priority.
+         */
+        public List<StepDefinitionEntity> getSteps(AuthResult authResult) {
+            List<StepDefinitionEntity> steps = stepsPerResult.get(authResult);
+            return steps == null ? Collections.emptyList() : steps;
+        }
+
+        /**
+         * Whether no step definition matches the request.
+         *
+         * @return True when the decision contains no steps.
+         */
+        public boolean isEmpty() {
+            return resultsByPreference.isEmpty();
+        }
+    }
+
+}
@@ -16,18 +16,16 @@
 package io.getlime.security.powerauth.app.nextstep.service;
 
 import io.getlime.security.powerauth.app.nextstep.configuration.NextStepServerConfiguration;
-import io.getlime.security.powerauth.app.nextstep.repository.AuthMethodRepository;
 import io.getlime.security.powerauth.app.nextstep.repository.StepDefinitionRepository;
 import io.getlime.security.powerauth.app.nextstep.repository.model.entity.AuthMethodEntity;
 import io.getlime.security.powerauth.app.nextstep.repository.model.entity.OperationEntity;
 import io.getlime.security.powerauth.app.nextstep.repository.model.entity.OperationHistoryEntity;
 import io.getlime.security.powerauth.app.nextstep.repository.model.entity.StepDefinitionEntity;
 import io.getlime.security.powerauth.lib.nextstep.model.entity.AuthStep;
-import io.getlime.security.powerauth.lib.nextstep.model.entity.UserAuthMethodDetail;
+import io.getlime.security.powerauth.lib.nextstep.model.entity.CreateOperationResult;
 import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthMethod;
 import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthResult;
 import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthStepResult;
-import io.getlime.security.powerauth.lib.nextstep.model.enumeration.OperationRequestType;
 import io.getlime.security.powerauth.lib.nextstep.model.exception.NextStepServiceException;
 import io.getlime.security.powerauth.lib.nextstep.model.exception.OperationAlreadyFailedException;
 import io.getlime.security.powerauth.lib.nextstep.model.exception.OperationAlreadyFinishedException;
@@ -39,12 +37,19 @@ import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
- * This service performs dynamic resolution of the next steps. Step definitions are loaded during class initialization
- * and are used to generate responses for incoming requests. Step definitions are filtered by request parameters
+ * This service performs dynamic resolution of the next steps. Step definitions are loaded during class initialization,
+ * compiled into a {@link StepDecisionTable} and are used to generate responses for incoming requests. Step definitions
+ * are periodically reloaded from database, changed step definitions replace the active ones atomically. Step definitions are filtered by request parameters
  * and matching step definitions are returned as the list of next steps (including priorities in case more step
  * definitions match the request). Step definitions are also filtered by authentication methods available for the user,
  * authentication methods can be enabled or disabled dynamically in user preferences.
@@ -58,22 +63,84 @@ public class StepResolutionService {
     private OperationPersistenceService operationPersistenceService;
     private NextStepServerConfiguration nextStepServerConfiguration;
     private AuthMethodService authMethodService;
-    private AuthMethodRepository authMethodRepository;
-    private Map<String, List<StepDefinitionEntity>> stepDefinitionsPerOperation;
+    private AuthMethodCatalog authMethodCatalog;
+    private StepDefinitionRepository stepDefinitionRepository;
+    private final AtomicReference<StepDecisionTable> stepDecisionTable = new AtomicReference<>();
+    private final ScheduledExecutorService stepDefinitionRefresher;
 
     @Autowired
     public StepResolutionService(StepDefinitionRepository stepDefinitionRepository, OperationPersistenceService operationPersistenceService,
                                  IdGeneratorService idGeneratorService, NextStepServerConfiguration nextStepServerConfiguration,
-                                 AuthMethodService authMethodService, AuthMethodRepository authMethodRepository) {
+                                 AuthMethodService authMethodService, AuthMethodCatalog authMethodCatalog) {
         this.operationPersistenceService = operationPersistenceService;
         this.idGeneratorService = idGeneratorService;
         this.nextStepServerConfiguration = nextStepServerConfiguration;
         this.authMethodService = authMethodService;
-        this.authMethodRepository = authMethodRepository;
-        stepDefinitionsPerOperation = new HashMap<>();
-        List<String> operationNames = stepDefinitionRepository.findDistinctOperationNames();
-        for (String operationName : operationNames) {
-            stepDefinitionsPerOperation.put(operationName, stepDefinitionRepository.findStepDefinitionsForOperation(operationName));
+        this.authMethodCatalog = authMethodCatalog;
+        this.stepDefinitionRepository = stepDefinitionRepository;
+        reloadStepDefinitions();
+        int refreshInterval = nextStepServerConfiguration.getStepDefinitionRefreshInterval();
+        if (refreshInterval > 0) {
+            stepDefinitionRefresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "nextstep-step-definition-refresher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            stepDefinitionRefresher.scheduleWithFixedDelay(this::refreshStepDefinitions, refreshInterval, refreshInterval, TimeUnit.SECONDS);
+        } else {
+            stepDefinitionRefresher = null;
+        }
+    }
+
+    /**
+     * Load step definitions from database and replace the active step definitions in case they have changed.
+     * Requests which are being resolved keep using the step definitions which were active when they started.
+     *
+     * @return Active step definitions.
+     * @throws IllegalStateException Thrown when step definitions in database are invalid, active step definitions are kept.
+     */
+    public synchronized StepDecisionTable reloadStepDefinitions() {
+        Map<String, List<StepDefinitionEntity>> stepDefinitionsPerOperation = new HashMap<>();
+        for (StepDefinitionEntity stepDef : stepDefinitionRepository.findAllStepDefinitions()) {
+            stepDefinitionsPerOperation.computeIfAbsent(stepDef.getOperationName(), operationName -> new ArrayList<>()).add(stepDef);
+        }
+        StepDecisionTable loadedTable = new StepDecisionTable(stepDefinitionsPerOperation);
+        StepDecisionTable activeTable = stepDecisionTable.get();
+        if (activeTable != null && activeTable.getVersion().equals(loadedTable.getVersion())) {
+            return activeTable;
+        }
+        stepDecisionTable.set(loadedTable);
+        Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Step definitions loaded, version: " + loadedTable.getVersion());
+        return loadedTable;
+    }
+
+    /**
+     * Get active step definitions.
+     *
+     * @return Active step definitions.
+     */
+    public StepDecisionTable getStepDecisionTable() {
+        return stepDecisionTable.get();
+    }
+
+    /**
+     * Stop the background refresh of step definitions.
+     */
+    @PreDestroy
+    public void stopStepDefinitionRefresh() {
+        if (stepDefinitionRefresher != null) {
+            stepDefinitionRefresher.shutdownNow();
+        }
+    }
+
+    /**
+     * Reload step definitions in background, errors are logged and active step definitions are kept.
+     */
+    private void refreshStepDefinitions() {
+        try {
+            reloadStepDefinitions();
+        } catch (RuntimeException ex) {
+            Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error while reloading step definitions", ex);
         }
     }
 
@@ -84,33 +151,100 @@ public class StepResolutionService {
      * @return response with ordered list of next steps
      */
     public CreateOperationResponse resolveNextStepResponse(CreateOperationRequest request) {
-        CreateOperationResponse response = new CreateOperationResponse();
+        String operationId;
         if (request.getOperationId() != null && !request.getOperationId().isEmpty()) {
             // operation ID received from the client, verify that it is available
-            if (operationPersistenceService.getOperation(request.getOperationId()) != null) {
+            if (operationPersistenceService.operationExists(request.getOperationId())) {
                 throw new IllegalArgumentException("Operation could not be created, operation ID is already used: " + request.getOperationId());
             }
-            response.setOperationId(request.getOperationId());
+            operationId = request.getOperationId();
         } else {
             // set auto-generated operation ID
-            response.setOperationId(idGeneratorService.generateOperationId());
+            operationId = idGeneratorService.generateOperationId();
+        }
+        // AuthStepResult and AuthMethod are not available when creating the operation, steps are not filtered by user
+        StepDecisionTable.StepDecision decision = stepDecisionTable.get().getCreateDecision(request.getOperationName());
+        if (decision.isEmpty()) {
+            throw new IllegalStateException("Next step could not be resolved for new operation.");
         }
+        return createOperationResponse(request, operationId, decision.getResult(), prepareAuthSteps(decision.getSteps(decision.getResult())));
+    }
+
+    /**
+     * Resolves the next steps for a batch of CreateOperationRequests. Operation IDs received from the client are
+     * verified using a single query and the next steps are resolved once for each operation name. Requests which
+     * cannot be resolved are reported in results and do not prevent resolution of other requests.
+     *
+     * @param requests requests to create new operations
+     * @return results in the same order as requests, successful results contain response with ordered list of next steps
+     */
+    public List<CreateOperationResult> resolveNextStepResponses(List<CreateOperationRequest> requests) {
+        Set<String> requestedOperationIds = new HashSet<>();
+        for (CreateOperationRequest request : requests) {
+            if (request != null && request.getOperationId() != null && !request.getOperationId().isEmpty()) {
+                requestedOperationIds.add(request.getOperationId());
+            }
+        }
+        Set<String> usedOperationIds = operationPersistenceService.getExistingOperationIds(requestedOperationIds);
+        // the same version of step definitions is used for the whole batch
+        StepDecisionTable decisionTable = stepDecisionTable.get();
+        Map<String, StepDecisionTable.StepDecision> decisions = new HashMap<>();
+        Map<String, List<AuthStep>> authSteps = new HashMap<>();
+        List<CreateOperationResult> results = new ArrayList<>();
+        for (CreateOperationRequest request : requests) {
+            if (request == null) {
+                results.add(new CreateOperationResult(null, "Operation could not be created, request is invalid."));
+                continue;
+            }
+            String operationName = request.getOperationName();
+            StepDecisionTable.StepDecision decision = decisions.get(operationName);
+            if (decision == null) {
+                decision = decisionTable.getCreateDecision(operationName);
+                decisions.put(operationName, decision);
+                if (!decision.isEmpty()) {
+                    authSteps.put(operationName, prepareAuthSteps(decision.getSteps(decision.getResult())));
+                }
+            }
+            if (decision.isEmpty()) {
+                results.add(new CreateOperationResult(null, "Next step could not be resolved for new operation."));
+                continue;
+            }
+            String operationId;
+            if (request.getOperationId() != null && !request.getOperationId().isEmpty()) {
+                // operation ID must not be used in database or earlier in the batch
+                if (!usedOperationIds.add(request.getOperationId())) {
+                    results.add(new CreateOperationResult(null, "Operation could not be created, operation ID is already used: " + request.getOperationId()));
+                    continue;
+                }
+                operationId = request.getOperationId();
+            } else {
+                operationId = idGeneratorService.generateOperationId();
+            }
+            CreateOperationResponse response = createOperationResponse(request, operationId, decision.getResult(), authSteps.get(operationName));
+            results.add(new CreateOperationResult(response, null));
+        }
+        return results;
+    }
+
+    /**
+     * Creates response for a new operation with resolved next steps.
+     *
+     * @param request request to create a new operation
+     * @param operationId operation ID
+     * @param result result of the operation
+     * @param authSteps next steps
+     * @return response with ordered list of next steps
+     */
+    private CreateOperationResponse createOperationResponse(CreateOperationRequest request, String operationId, AuthResult result, List<AuthStep> authSteps) {
+        CreateOperationResponse response = new CreateOperationResponse();
+        response.setOperationId(operationId);
         response.setOperationName(request.getOperationName());
-        // AuthStepResult and AuthMethod are not available when creating the operation, null values are used to ignore them
-        List<StepDefinitionEntity> stepDefinitions = filterSteps(request.getOperationName(), OperationRequestType.CREATE, null, null, null);
-        response.getSteps().addAll(prepareAuthSteps(stepDefinitions));
+        response.getSteps().addAll(authSteps);
         response.setTimestampCreated(new Date());
         response.setTimestampExpires(new DateTime().plusSeconds(nextStepServerConfiguration.getOperationExpirationTime()).toDate());
         response.setFormData(request.getFormData());
-        Set<AuthResult> allResults = new HashSet<>();
-        for (StepDefinitionEntity stepDef : stepDefinitions) {
-            allResults.add(stepDef.getResponseResult());
-        }
-        if (allResults.size() == 1) {
-            response.setResult(allResults.iterator().next());
-            return response;
-        }
-        throw new IllegalStateException("Next step could not be resolved for new operation.");
+        response.setResult(result);
+        return response;
     }
 
     /**
@@ -149,124 +283,59 @@ public class StepResolutionService {
             request.setAuthStepResult(AuthStepResult.AUTH_METHOD_FAILED);
         }
 
-        List<StepDefinitionEntity> stepDefinitions = filterSteps(operation.getOperationName(), OperationRequestType.UPDATE, request.getAuthStepResult(), request.getAuthMethod(), request.getUserId());
-        sortSteps(stepDefinitions);
-        verifyDuplicatePrioritiesAbsent(stepDefinitions);
-        Set<AuthResult> allResults = new HashSet<>();
-        for (StepDefinitionEntity stepDef : stepDefinitions) {
-            allResults.add(stepDef.getResponseResult());
-        }
-        if (allResults.size() == 1) {
-            // Straightforward response - only one AuthResult found. Return all matching steps.
-            response.getSteps().addAll(prepareAuthSteps(stepDefinitions));
-            response.setResult(allResults.iterator().next());
-            return response;
-        } else if (allResults.size() > 1) {
-            // We need to make sure a specific AuthResult is returned in case multiple authentication methods lead
-            // to different AuthResults.
-            // In case there is any DONE or CONTINUE next step, prefer it over FAILED. FAILED state can be caused by a failing
-            // authentication method or by method canceled by the user, in this case try to switch to other
-            // authentication method if it is available.
-            Map<AuthResult, List<StepDefinitionEntity>> stepsByAuthResult = stepDefinitions
-                    .stream()
-                    .collect(Collectors.groupingBy(StepDefinitionEntity::getResponseResult));
-            if (stepsByAuthResult.containsKey(AuthResult.DONE)) {
-                List<StepDefinitionEntity> doneSteps = stepsByAuthResult.get(AuthResult.DONE);
-                response.getSteps().addAll(prepareAuthSteps(doneSteps));
-                response.setResult(AuthResult.DONE);
-                return response;
-            } else if (stepsByAuthResult.containsKey(AuthResult.CONTINUE)) {
-                List<StepDefinitionEntity> continueSteps = stepsByAuthResult.get(AuthResult.CONTINUE);
-                response.getSteps().addAll(prepareAuthSteps(continueSteps));
-                response.setResult(AuthResult.CONTINUE);
-                return response;
-            } else if (stepsByAuthResult.containsKey(AuthResult.FAILED)) {
-                List<StepDefinitionEntity> failedSteps = stepsByAuthResult.get(AuthResult.FAILED);
-                response.getSteps().addAll(prepareAuthSteps(failedSteps));
-                response.setResult(AuthResult.FAILED);
-                return response;
+        StepDecisionTable.StepDecision decision = stepDecisionTable.get().getUpdateDecision(operation.getOperationName(), request.getAuthMethod(), request.getAuthStepResult());
+        if (!decision.isEmpty()) {
+            Set<AuthMethod> authMethodsAvailableForUser = getAuthMethodsAvailableForUser(request.getUserId());
+            // Results are ordered by preference, use the first result which has any step available for the user.
+            for (AuthResult authResult : decision.getResultsByPreference()) {
+                List<StepDefinitionEntity> stepDefinitions = filterSteps(decision.getSteps(authResult), authMethodsAvailableForUser);
+                if (!stepDefinitions.isEmpty()) {
+                    response.getSteps().addAll(prepareAuthSteps(stepDefinitions));
+                    response.setResult(authResult);
+                    return response;
+                }
             }
-            // This code should not be reached - all cases should have been handled previously.
-            response.getSteps().clear();
-            response.setResult(AuthResult.FAILED);
-            response.setResultDescription("error.unknown");
-            return response;
-        } else {
-            // No step definition matches the current criteria. Suitable step definitions might have been filtered out
-            // via user preferences. Fail the operation.
-            response.getSteps().clear();
-            response.setResult(AuthResult.FAILED);
-            response.setResultDescription("error.noAuthMethod");
-            return response;
         }
+        // No step definition matches the current criteria. Suitable step definitions might have been filtered out
+        // via user preferences. Fail the operation.
+        response.getSteps().clear();
+        response.setResult(AuthResult.FAILED);
+        response.setResultDescription("error.noAuthMethod");
+        return response;
     }
 
     /**
-     * Filters step definitions by given parameters and returns a list of step definitions which match the query.
+     * Get authentication methods available for the user.
      *
-     * @param operationName name of the operation
-     * @param operationType type of the operation - CREATE/UPDATE
-     * @param authStepResult result of previous authentication step
-     * @param authMethod authentication method of previous authentication step
      * @param userId user ID
-     * @return filtered list of steps
+     * @return authentication methods available for the user, null in case user is not known
      */
-    private List<StepDefinitionEntity> filterSteps(String operationName, OperationRequestType operationType, AuthStepResult authStepResult, AuthMethod authMethod, String userId) {
-        List<StepDefinitionEntity> stepDefinitions = stepDefinitionsPerOperation.get(operationName);
-        List<AuthMethod> authMethodsAvailableForUser = new ArrayList<>();
-        if (userId != null) {
-            for (UserAuthMethodDetail userAuthMethodDetail : authMethodService.listAuthMethodsEnabledForUser(userId)) {
-                authMethodsAvailableForUser.add(userAuthMethodDetail.getAuthMethod());
-            }
-        }
-        List<StepDefinitionEntity> filteredStepDefinitions = new ArrayList<>();
-        if (stepDefinitions == null) {
-            throw new IllegalStateException("Step definitions are missing in Next Step server.");
+    private Set<AuthMethod> getAuthMethodsAvailableForUser(String userId) {
+        if (userId == null) {
+            return null;
         }
-        for (StepDefinitionEntity stepDef : stepDefinitions) {
-            if (operationType != null && !operationType.equals(stepDef.getOperationType())) {
-                // filter by operation type
-                continue;
-            }
-            if (authStepResult != null && !authStepResult.equals(stepDef.getRequestAuthStepResult())) {
-                // filter by AuthStepResult
-                continue;
-            }
-            if (authMethod != null && !authMethod.equals(stepDef.getRequestAuthMethod())) {
-                // filter by request AuthMethod
-                continue;
-            }
-            if (userId != null && stepDef.getResponseAuthMethod() != null && !authMethodsAvailableForUser.contains(stepDef.getResponseAuthMethod())) {
-                // filter by response AuthMethod based on methods available for the user - the list can change
-                // dynamically via user preferences
-                continue;
-            }
-            filteredStepDefinitions.add(stepDef);
-        }
-        return filteredStepDefinitions;
-    }
-
-    /**
-     * Sorts the step definitions based on their priorities.
-     *
-     * @param stepDefinitions step definitions
-     */
-    private void sortSteps(List<StepDefinitionEntity> stepDefinitions) {
-        Collections.sort(stepDefinitions, Comparator.comparing(StepDefinitionEntity::getResponsePriority));
+        return authMethodService.getAuthMethodsEnabledForUser(userId);
     }
 
     /**
-     * Verifies that each priority is present only once in the list of step definitions.
+     * Filters step definitions by response AuthMethod based on methods available for the user - the list can change
+     * dynamically via user preferences.
      *
-     * @param stepDefinitions step definitions
+     * @param stepDefinitions step definitions sorted by priority
+     * @param authMethodsAvailableForUser authentication methods available for the user, null in case user is not known
+     * @return filtered list of steps
      */
-    private void verifyDuplicatePrioritiesAbsent(List<StepDefinitionEntity> stepDefinitions) {
-        Map<Long, List<StepDefinitionEntity>> stepsByPriority = stepDefinitions
-                .stream()
-                .collect(Collectors.groupingBy(StepDefinitionEntity::getResponsePriority));
-        if (stepsByPriority.size() != stepDefinitions.size()) {
-            throw new IllegalStateException("Multiple steps with the same priority detected while resolving next step.");
+    private List<StepDefinitionEntity> filterSteps(List<StepDefinitionEntity> stepDefinitions, Set<AuthMethod> authMethodsAvailableForUser) {
+        if (authMethodsAvailableForUser == null) {
+            return stepDefinitions;
+        }
+        List<StepDefinitionEntity> filteredStepDefinitions = new ArrayList<>(stepDefinitions.size());
+        for (StepDefinitionEntity stepDef : stepDefinitions) {
+            if (stepDef.getResponseAuthMethod() == null || authMethodsAvailableForUser.contains(stepDef.getResponseAuthMethod())) {
+                filteredStepDefinitions.add(stepDef);
+            }
         }
+        return filteredStepDefinitions;
     }
 
     /**
@@ -299,29 +368,20 @@ public class StepResolutionService {
             return true;
         }
         // in case authentication method previously failed, it is already failed
-        for (OperationHistoryEntity history : operation.getOperationHistory()) {
-            if (history.getRequestAuthMethod() == authMethod && history.getRequestAuthStepResult() == AuthStepResult.AUTH_METHOD_FAILED) {
-                return true;
-            }
+        if (operation.isAuthMethodFailed(authMethod)) {
+            return true;
         }
         // check whether authMethod supports check of authorization failure count
-        AuthMethodEntity authMethodEntity = authMethodRepository.findByAuthMethod(authMethod);
+        AuthMethodEntity authMethodEntity = authMethodCatalog.getAuthMethod(authMethod);
         if (authMethodEntity == null) {
             throw new IllegalStateException("AuthMethod is missing in database: " + authMethod);
         }
         if (authMethodEntity.getCheckAuthorizationFailures()) {
-            // count failures
-            int failureCount = 0;
+            // count failures recorded in operation and the current failure
+            int failureCount = operation.getAuthFailureCount(authMethod);
             if (currentAuthStepResult == AuthStepResult.AUTH_FAILED) {
-                // add current failure
                 failureCount++;
             }
-            for (OperationHistoryEntity history : operation.getOperationHistory()) {
-                // add all failures from history for this method
-                if (history.getRequestAuthMethod() == authMethod && history.getRequestAuthStepResult() == AuthStepResult.AUTH_FAILED) {
-                    failureCount++;
-                }
-            }
             if (failureCount >= authMethodEntity.getMaxAuthorizationFailures()) {
                 return true;
             }
@@ -351,46 +411,37 @@ public class StepResolutionService {
         if (request.getAuthStepResult() == null) {
             throw new IllegalArgumentException("Operation update failed, because result of authentication step is missing (operationId: " + request.getOperationId() + ").");
         }
-        List<OperationHistoryEntity> operationHistory = operationEntity.getOperationHistory();
-        if (operationHistory.isEmpty()) {
+        OperationHistoryEntity currentOperationItem = operationPersistenceService.getCurrentOperationHistory(operationEntity);
+        if (currentOperationItem == null) {
             throw new IllegalStateException("Operation update failed, because operation is missing its history (operationId: " + request.getOperationId() + ").");
         }
-        OperationHistoryEntity initOperationItem = operationHistory.get(0);
-        if (initOperationItem.getRequestAuthMethod() != null || initOperationItem.getRequestAuthStepResult() != null) {
+        // the INIT step is the first history record, only this record and the current record are loaded
+        OperationHistoryEntity initOperationItem = currentOperationItem.getPrimaryKey().getResultId() == 1L
+                ? currentOperationItem : operationPersistenceService.getOperationHistory(request.getOperationId(), 1L);
+        if (initOperationItem == null || initOperationItem.getRequestAuthMethod() != null || initOperationItem.getRequestAuthStepResult() != null) {
             throw new IllegalStateException("Operation update failed, because INIT step for this operation is invalid (operationId: " + request.getOperationId() + ").");
         }
         // check whether request AuthMethod is available in response AuthSteps - this verifies operation continuity
         boolean stepAuthMethodValid = false;
         if (request.getAuthMethod() == AuthMethod.SHOW_OPERATION_DETAIL) {
             // special handling for SHOW_OPERATION_DETAIL - either SMS_KEY or POWERAUTH_TOKEN are present in next steps
-            for (AuthStep step: operationPersistenceService.getResponseAuthSteps(operationEntity)) {
-                if (step.getAuthMethod() == AuthMethod.SMS_KEY || step.getAuthMethod() == AuthMethod.POWERAUTH_TOKEN) {
-                    stepAuthMethodValid = true;
-                    break;
-                }
-            }
+            stepAuthMethodValid = operationPersistenceService.isResponseAuthMethod(currentOperationItem, AuthMethod.SMS_KEY)
+                    || operationPersistenceService.isResponseAuthMethod(currentOperationItem, AuthMethod.POWERAUTH_TOKEN);
         } else {
             // verification of operation continuity for all other authentication methods
-            for (AuthStep step: operationPersistenceService.getResponseAuthSteps(operationEntity)) {
-                if (step.getAuthMethod() == request.getAuthMethod()) {
-                    stepAuthMethodValid = true;
-                    break;
-                }
-            }
+            stepAuthMethodValid = operationPersistenceService.isResponseAuthMethod(currentOperationItem, request.getAuthMethod());
         }
         if (!stepAuthMethodValid) {
             throw new IllegalStateException("Operation update failed, because AuthMethod is invalid (operationId: " + request.getOperationId() + ").");
         }
-        for (OperationHistoryEntity historyItem : operationHistory) {
-            if (historyItem.getResponseResult() == AuthResult.DONE) {
-                throw new OperationAlreadyFinishedException("Operation update failed, because operation is already in DONE state (operationId: " + request.getOperationId() + ").");
-            }
-            if (historyItem.getResponseResult() == AuthResult.FAILED) {
-                // #102 - allow double cancellation requests, cancel requests may come from multiple channels, so this is a supported scenario
-                if (operationEntity.getCurrentOperationHistoryEntity().getRequestAuthStepResult() != AuthStepResult.CANCELED
-                        || request.getAuthStepResult() != AuthStepResult.CANCELED) {
-                    throw new OperationAlreadyFailedException("Operation update failed, because operation is already in FAILED state (operationId: " + request.getOperationId() + ").");
-                }
+        if (operationEntity.getTerminalResult() == AuthResult.DONE) {
+            throw new OperationAlreadyFinishedException("Operation update failed, because operation is already in DONE state (operationId: " + request.getOperationId() + ").");
+        }
+        if (operationEntity.getTerminalResult() == AuthResult.FAILED) {
+            // #102 - allow double cancellation requests, cancel requests may come from multiple channels, so this is a supported scenario
+            if (operationEntity.getLastAuthStepResult() != AuthStepResult.CANCELED
+                    || request.getAuthStepResult() != AuthStepResult.CANCELED) {
+                throw new OperationAlreadyFailedException("Operation update failed, because operation is already in FAILED state (operationId: " + request.getOperationId() + ").");
             }
         }
     }
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.app.nextstep.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.MapType;
+import io.getlime.security.powerauth.app.nextstep.configuration.NextStepServerConfiguration;
+import io.getlime.security.powerauth.app.nextstep.repository.UserPrefsRepository;
+import io.getlime.security.powerauth.app.nextstep.repository.model.entity.AuthMethodEntity;
+import io.getlime.security.powerauth.app.nextstep.repository.model.entity.UserPrefsEntity;
+import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthMethod;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-through cache of user preferences. Cached entries contain authentication methods enabled in user preferences
+ * and already deserialized configuration of these methods, so that resolving authentication methods for a user does
+ * not require a database query nor JSON parsing. The cache is bounded, least recently used entries are evicted when
+ * the maximum size is reached and entries expire after the configured time to live. Expiration limits the time for
+ * which changes of user preferences made on other Next Step nodes are not visible.
+ *
+ * @author Roman Strobl
+ */
+@Service
+public class UserPrefsCache {
+
+    private final UserPrefsRepository userPrefsRepository;
+    private final AuthMethodCatalog authMethodCatalog;
+    private final ObjectMapper objectMapper;
+    private final MapType configMapType;
+    private final int maxSize;
+    private final long timeToLive;
+    private final Map<String, CacheEntry> cache;
+    private final Object updateLock = new Object();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    @Autowired
+    public UserPrefsCache(UserPrefsRepository userPrefsRepository, AuthMethodCatalog authMethodCatalog, ObjectMapper objectMapper,
+                          NextStepServerConfiguration nextStepServerConfiguration) {
+        this.userPrefsRepository = userPrefsRepository;
+        this.authMethodCatalog = authMethodCatalog;
+        this.objectMapper = objectMapper;
+        this.configMapType = objectMapper.getTypeFactory().constructMapType(Map.class, String.class, String.class);
+        this.maxSize = nextStepServerConfiguration.getUserPrefsCacheMaxSize();
+        this.timeToLive = TimeUnit.SECONDS.toMillis(nextStepServerConfiguration.getUserPrefsCacheTimeToLive());
+        this.cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                if (size() > UserPrefsCache.this.maxSize) {
+                    evictionCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get user preferences, preferences are loaded from database in case they are not cached or cached preferences
+     * have expired.
+     *
+     * @param userId User ID.
+     * @return Cached user preferences.
+     */
+    public CachedUserPrefs getUserPrefs(String userId) {
+        if (userId == null) {
+            throw new IllegalArgumentException("User ID is null");
+        }
+        if (maxSize <= 0 || timeToLive <= 0) {
+            missCount.incrementAndGet();
+            return createUserPrefs(userPrefsRepository.findUserPrefs(userId));
+        }
+        long now = System.currentTimeMillis();
+        synchronized (cache) {
+            CacheEntry entry = cache.get(userId);
+            if (entry != null && entry.expires > now) {
+                hitCount.incrementAndGet();
+                return entry.userPrefs;
+            }
+        }
+        missCount.incrementAndGet();
+        CachedUserPrefs userPrefs = createUserPrefs(userPrefsRepository.findUserPrefs(userId));
+        synchronized (cache) {
+            CacheEntry entry = cache.get(userId);
+            if (entry != null && entry.created > now) {
+                // user preferences were updated while they were being loaded, the update wins
+                return entry.userPrefs;
+            }
+            cache.put(userId, new CacheEntry(userPrefs, now));
+        }
+        return userPrefs;
+    }
+
+    /**
+     * Update user preferences in database and in the cache. The update is done atomically with respect to other
+     * updates, so that concurrent updates of user preferences are not lost and the cache always contains the last
+     * saved user preferences.
+     *
+     * @param userId User ID.
+     * @param update Function which receives user preferences loaded from database (null in case user preferences
+     *               are not set yet) and returns user preferences to save.
+     */
+    public void updateUserPrefs(String userId, UnaryOperator<UserPrefsEntity> update) {
+        if (userId == null) {
+            throw new IllegalArgumentException("User ID is null");
+        }
+        synchronized (updateLock) {
+            UserPrefsEntity userPrefs = update.apply(userPrefsRepository.findUserPrefs(userId));
+            userPrefsRepository.save(userPrefs);
+            if (maxSize > 0 && timeToLive > 0) {
+                CachedUserPrefs cachedUserPrefs = createUserPrefs(userPrefs);
+                synchronized (cache) {
+                    // the entry is newer than any entry being loaded concurrently, so that such entry does not overwrite it
+                    cache.put(userId, new CacheEntry(cachedUserPrefs, System.currentTimeMillis() + 1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove user preferences from the cache.
+     *
+     * @param userId User ID.
+     */
+    public void invalidate(String userId) {
+        synchronized (cache) {
+            cache.remove(userId);
+        }
+    }
+
+    /**
+     * Remove all user preferences from the cache.
+     */
+    public void invalidateAll() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Get number of cache hits.
+     *
+     * @return Number of cache hits.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Get number of cache misses.
+     *
+     * @return Number of cache misses.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Get number of entries evicted due to the maximum cache size.
+     *
+     * @return Number of evicted entries.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Get ratio of cache hits to all requests.
+     *
+     * @return Cache hit rate between 0 and 1.
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    /**
+     * Get current number of cached entries.
+     *
+     * @return Number of cached entries.
+     */
+    public int getSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Convert user preferences entity into cached user preferences.
+     *
+     * @param userPrefs User preferences entity, null in case user preferences are not set.
+     * @return Cached user preferences.
+     */
+    private CachedUserPrefs createUserPrefs(UserPrefsEntity userPrefs) {
+        if (userPrefs == null) {
+            return CachedUserPrefs.NOT_SET;
+        }
+        Set<AuthMethod> enabledAuthMethods = EnumSet.noneOf(AuthMethod.class);
+        Map<AuthMethod, Map<String, String>> configs = new EnumMap<>(AuthMethod.class);
+        for (AuthMethodEntity authMethodEntity : authMethodCatalog.getAuthMethods()) {
+            if (!authMethodEntity.getCheckUserPrefs()) {
+                continue;
+            }
+            Integer column = authMethodEntity.getUserPrefsColumn();
+            if (!Boolean.TRUE.equals(userPrefs.getAuthMethodEnabled(column))) {
+                continue;
+            }
+            enabledAuthMethods.add(authMethodEntity.getAuthMethod());
+            String config = userPrefs.getAuthMethodConfig(column);
+            Map<String, String> configMap = null;
+            try {
+                if (config != null) {
+                    configMap = objectMapper.readValue(config, configMapType);
+                }
+            } catch (IOException e) {
+                Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error while deserializing config", e);
+            }
+            configs.put(authMethodEntity.getAuthMethod(), configMap == null ? Collections.emptyMap() : Collections.unmodifiableMap(configMap));
+        }
+        return new CachedUserPrefs(true, enabledAuthMethods, configs);
+    }
+
+    /**
+     * Cache entry with its creation and expiration time.
+     */
+    private final class CacheEntry {
+
+        private final CachedUserPrefs userPrefs;
+        private final long created;
+        private final long expires;
+
+        private CacheEntry(CachedUserPrefs userPrefs, long created) {
+            this.userPrefs = userPrefs;
+            this.created = created;
+            this.expires = created + timeToLive;
+        }
+    }
+
+    /**
+     * Immutable user preferences with deserialized configuration of authentication methods.
+     */
+    public static final class CachedUserPrefs {
+
+        private static final CachedUserPrefs NOT_SET = new CachedUserPrefs(false, EnumSet.noneOf(AuthMethod.class), Collections.emptyMap());
+
+        private final boolean set;
+        private final Set<AuthMethod> enabledAuthMethods;
+        private final Map<AuthMethod, Map<String, String>> configs;
+
+        private CachedUserPrefs(boolean set, Set<AuthMethod> enabledAuthMethods, Map<AuthMethod, Map<String, String>> configs) {
+            this.set = set;
+            this.enabledAuthMethods = Collections.unmodifiableSet(enabledAuthMethods);
+            this.configs = Collections.unmodifiableMap(configs);
+        }
+
+        /**
+         * Whether user preferences are stored for the user.
+         *
+         * @return True in case user preferences are set, false when default values apply.
+         */
+        public boolean isSet() {
+            return set;
+        }
+
+        /**
+         * Get authentication methods enabled in user preferences.
+         *
+         * @return Unmodifiable set of enabled authentication methods.
+         */
+        public Set<AuthMethod> getEnabledAuthMethods() {
+            return enabledAuthMethods;
+        }
+
+        /**
+         * Get configuration of an authentication method enabled in user preferences.
+         *
+         * @param authMethod Authentication method.
+         * @return Unmodifiable configuration or null in case authentication method is not enabled.
+         */
+        public Map<String, String> getConfig(AuthMethod authMethod) {
+            return configs.get(authMethod);
+        }
+    }
+
+}
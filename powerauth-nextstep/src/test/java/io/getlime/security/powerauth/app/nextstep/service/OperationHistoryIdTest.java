@@ -0,0 +1,168 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.app.nextstep.service;
+
+import io.getlime.security.powerauth.app.nextstep.repository.OperationHistoryRepository;
+import io.getlime.security.powerauth.app.nextstep.repository.OperationRepository;
+import io.getlime.security.powerauth.app.nextstep.repository.model.entity.OperationHistoryEntity;
+import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthMethod;
+import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthResult;
+import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthStepResult;
+import io.getlime.security.powerauth.lib.nextstep.model.request.CreateOperationRequest;
+import io.getlime.security.powerauth.lib.nextstep.model.request.UpdateOperationRequest;
+import io.getlime.security.powerauth.lib.nextstep.model.response.CreateOperationResponse;
+import io.getlime.security.powerauth.lib.nextstep.model.response.UpdateOperationResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests allocation of operation history IDs when an operation is updated concurrently.
+ *
+ * @author Roman Strobl
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Import({OperationPersistenceService.class, IdGeneratorService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class OperationHistoryIdTest {
+
+    private static final String OPERATION_ID = "history-id-test";
+    private static final int THREAD_COUNT = 8;
+    private static final int UPDATES_PER_THREAD = 10;
+    private static final int MAX_ATTEMPTS = 1000;
+
+    @Autowired
+    private OperationPersistenceService operationPersistenceService;
+
+    @Autowired
+    private OperationRepository operationRepository;
+
+    @Autowired
+    private OperationHistoryRepository operationHistoryRepository;
+
+    @Before
+    public void createOperation() {
+        CreateOperationRequest request = new CreateOperationRequest();
+        request.setOperationName("login");
+        request.setOperationData("A1*T20");
+        CreateOperationResponse response = new CreateOperationResponse();
+        response.setOperationId(OPERATION_ID);
+        response.setOperationName("login");
+        response.setResult(AuthResult.CONTINUE);
+        response.setTimestampCreated(new Date());
+        response.setTimestampExpires(new Date(System.currentTimeMillis() + 300000));
+        operationPersistenceService.createOperation(request, response);
+    }
+
+    @After
+    public void deleteOperation() {
+        operationHistoryRepository.delete(operationHistoryRepository.findOperationHistory(OPERATION_ID));
+        operationRepository.delete(OPERATION_ID);
+    }
+
+    /**
+     * Concurrent updates of the same operation must never store two history records with the same ID. An update
+     * which loses the race fails with a concurrency failure and succeeds when it is retried.
+     */
+    @Test
+    public void testConcurrentUpdatesAllocateUniqueHistoryIds() throws Exception {
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        final List<Future<Void>> results = new ArrayList<>();
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            results.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    startLatch.await();
+                    for (int j = 0; j < UPDATES_PER_THREAD; j++) {
+                        updateOperation();
+                    }
+                    return null;
+                }
+            }));
+        }
+        startLatch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+        for (Future<Void> result : results) {
+            // failures other than concurrency failures, e.g. a duplicate history key, are rethrown here
+            result.get();
+        }
+
+        final int expectedCount = THREAD_COUNT * UPDATES_PER_THREAD + 1;
+        final List<Long> resultIds = new ArrayList<>();
+        for (OperationHistoryEntity history : operationHistoryRepository.findOperationHistory(OPERATION_ID)) {
+            resultIds.add(history.getPrimaryKey().getResultId());
+        }
+        Collections.sort(resultIds);
+        assertEquals(expectedCount, resultIds.size());
+        for (int i = 0; i < expectedCount; i++) {
+            assertEquals(Long.valueOf(i + 1), resultIds.get(i));
+        }
+        assertEquals(Long.valueOf(expectedCount), operationRepository.findOne(OPERATION_ID).getLastResultId());
+    }
+
+    /**
+     * Updates the operation, the update is retried in case it fails due to a concurrent update.
+     */
+    private void updateOperation() {
+        UpdateOperationRequest request = new UpdateOperationRequest();
+        request.setOperationId(OPERATION_ID);
+        request.setUserId("test");
+        request.setAuthMethod(AuthMethod.USER_ID_ASSIGN);
+        request.setAuthStepResult(AuthStepResult.CONFIRMED);
+        UpdateOperationResponse response = new UpdateOperationResponse();
+        response.setOperationId(OPERATION_ID);
+        response.setOperationName("login");
+        response.setUserId("test");
+        response.setResult(AuthResult.CONTINUE);
+        response.setTimestampCreated(new Date());
+        response.setTimestampExpires(new Date(System.currentTimeMillis() + 300000));
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            try {
+                operationPersistenceService.updateOperation(request, response);
+                return;
+            } catch (ConcurrencyFailureException ex) {
+                // concurrent update allocated the same history ID, the update is retried with the next ID
+            }
+        }
+        throw new IllegalStateException("Operation update failed after " + MAX_ATTEMPTS + " attempts");
+    }
+
+}
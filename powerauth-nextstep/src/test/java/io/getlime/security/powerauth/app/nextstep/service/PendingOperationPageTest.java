@@ -0,0 +1,169 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.app.nextstep.service;
+
+import io.getlime.security.powerauth.app.nextstep.repository.OperationHistoryRepository;
+import io.getlime.security.powerauth.app.nextstep.repository.OperationRepository;
+import io.getlime.security.powerauth.app.nextstep.repository.model.projection.OperationSummary;
+import io.getlime.security.powerauth.app.nextstep.repository.model.projection.OperationTitleSummary;
+import io.getlime.security.powerauth.lib.nextstep.model.entity.OperationFormData;
+import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthMethod;
+import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthResult;
+import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthStepResult;
+import io.getlime.security.powerauth.lib.nextstep.model.request.CreateOperationRequest;
+import io.getlime.security.powerauth.lib.nextstep.model.request.UpdateOperationRequest;
+import io.getlime.security.powerauth.lib.nextstep.model.response.CreateOperationResponse;
+import io.getlime.security.powerauth.lib.nextstep.model.response.UpdateOperationResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests keyset pagination of pending operations and summaries of pending operations with the operation title.
+ *
+ * @author Roman Strobl
+ */
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Import({OperationPersistenceService.class, IdGeneratorService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class PendingOperationPageTest {
+
+    private static final String USER_ID = "pending-page-test";
+    private static final String OPERATION_ID_PREFIX = "pending-page-test-";
+    private static final int OPERATION_COUNT = 5;
+    private static final int PAGE_SIZE = 2;
+
+    @Autowired
+    private OperationPersistenceService operationPersistenceService;
+
+    @Autowired
+    private OperationRepository operationRepository;
+
+    @Autowired
+    private OperationHistoryRepository operationHistoryRepository;
+
+    private final Date timestampCreated = new Date(System.currentTimeMillis() / 1000 * 1000);
+
+    @Before
+    public void createOperations() {
+        for (int i = 1; i <= OPERATION_COUNT; i++) {
+            String operationId = OPERATION_ID_PREFIX + i;
+            CreateOperationRequest request = new CreateOperationRequest();
+            request.setOperationName("authorize_payment");
+            request.setOperationData("A1*A100CZK*Q238400856/0300**D20170629*NUtility Bill Payment - 05/2017*C1");
+            OperationFormData formData = new OperationFormData();
+            formData.addTitle("operation.title");
+            request.setFormData(formData);
+            CreateOperationResponse response = new CreateOperationResponse();
+            response.setOperationId(operationId);
+            response.setOperationName("authorize_payment");
+            response.setResult(AuthResult.CONTINUE);
+            // all operations are created at the same time, so the operation ID decides the order
+            response.setTimestampCreated(timestampCreated);
+            response.setTimestampExpires(new Date(System.currentTimeMillis() + 300000));
+            operationPersistenceService.createOperation(request, response);
+            // later operations expire sooner
+            updateOperation(operationId, new Date(System.currentTimeMillis() + 300000 - i * 1000));
+        }
+    }
+
+    @After
+    public void deleteOperations() {
+        for (int i = 1; i <= OPERATION_COUNT; i++) {
+            String operationId = OPERATION_ID_PREFIX + i;
+            operationHistoryRepository.delete(operationHistoryRepository.findOperationHistory(operationId));
+            operationRepository.delete(operationId);
+        }
+    }
+
+    /**
+     * Pages are ordered by creation time and operation ID which never change, so a change of expiration time
+     * between pages neither skips nor repeats an operation.
+     */
+    @Test
+    public void testPagesAreStableWhenExpirationChanges() {
+        List<String> operationIds = new ArrayList<>();
+        List<OperationSummary> page = operationPersistenceService.getPendingOperations(USER_ID, null, null, null, PAGE_SIZE);
+        boolean expirationChanged = false;
+        while (!page.isEmpty()) {
+            for (OperationSummary operation : page) {
+                operationIds.add(operation.getOperationId());
+            }
+            if (!expirationChanged) {
+                // the last operation moves before all other operations by expiration time
+                updateOperation(OPERATION_ID_PREFIX + OPERATION_COUNT, new Date(System.currentTimeMillis() + 60000));
+                expirationChanged = true;
+            }
+            OperationSummary lastOperation = page.get(page.size() - 1);
+            page = operationPersistenceService.getPendingOperations(USER_ID, null, lastOperation.getTimestampCreated(),
+                    lastOperation.getOperationId(), PAGE_SIZE);
+        }
+        assertEquals(OPERATION_COUNT, operationIds.size());
+        for (int i = 0; i < OPERATION_COUNT; i++) {
+            assertEquals(OPERATION_ID_PREFIX + (i + 1), operationIds.get(i));
+        }
+    }
+
+    /**
+     * Summaries of pending operations contain the title stored during creation of the operation.
+     */
+    @Test
+    public void testPendingOperationTitles() {
+        List<OperationTitleSummary> operations = operationPersistenceService.getPendingOperationTitles(USER_ID, null);
+        assertEquals(OPERATION_COUNT, operations.size());
+        for (OperationTitleSummary operation : operations) {
+            assertTrue(operation.getOperationTitle().contains("operation.title"));
+        }
+        List<OperationTitleSummary> page = operationPersistenceService.getPendingOperationTitles(USER_ID, null, null, null, PAGE_SIZE);
+        assertEquals(PAGE_SIZE, page.size());
+        assertEquals(OPERATION_ID_PREFIX + 1, page.get(0).getOperationId());
+    }
+
+    /**
+     * Assigns the operation to the user and updates its expiration time.
+     */
+    private void updateOperation(String operationId, Date timestampExpires) {
+        UpdateOperationRequest request = new UpdateOperationRequest();
+        request.setOperationId(operationId);
+        request.setUserId(USER_ID);
+        request.setAuthMethod(AuthMethod.USER_ID_ASSIGN);
+        request.setAuthStepResult(AuthStepResult.CONFIRMED);
+        UpdateOperationResponse response = new UpdateOperationResponse();
+        response.setOperationId(operationId);
+        response.setOperationName("authorize_payment");
+        response.setUserId(USER_ID);
+        response.setResult(AuthResult.CONTINUE);
+        response.setTimestampCreated(timestampCreated);
+        response.setTimestampExpires(timestampExpires);
+        operationPersistenceService.updateOperation(request, response);
+    }
+
+}
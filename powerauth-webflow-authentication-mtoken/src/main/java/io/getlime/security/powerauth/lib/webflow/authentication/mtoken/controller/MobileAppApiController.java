@@ -17,6 +17,7 @@ import io.getlime.security.powerauth.lib.webflow.authentication.exception.AuthSt
 import io.getlime.security.powerauth.lib.webflow.authentication.mtoken.exception.*;
 import io.getlime.security.powerauth.lib.webflow.authentication.mtoken.model.request.MobileTokenAuthenticationRequest;
 import io.getlime.security.powerauth.lib.webflow.authentication.mtoken.model.request.MobileTokenCancelOperationRequest;
+import io.getlime.security.powerauth.lib.webflow.authentication.mtoken.model.request.MobileTokenOperationListRequest;
 import io.getlime.security.powerauth.lib.webflow.authentication.mtoken.model.request.MobileTokenPushRegisterRequest;
 import io.getlime.security.powerauth.lib.webflow.authentication.mtoken.model.request.MobileTokenSignRequest;
 import io.getlime.security.powerauth.lib.webflow.authentication.mtoken.model.response.MobileTokenAuthenticationResponse;
@@ -134,6 +135,48 @@ public class MobileAppApiController extends AuthMethodController<MobileTokenAuth
             }
 
             final List<GetOperationDetailResponse> operationList = getOperationListForUser(userId);
+            if (operationList == null) {
+                throw new PendingOperationListFailedException();
+            }
+            return new ObjectResponse<>(operationList);
+        } else {
+            throw new PendingOperationListFailedException();
+        }
+
+    }
+
+    /**
+     * List a page of pending operations for Mobile Token authorization. Operations are ordered by creation time
+     * and operation ID, the next page is requested using creation time and operation ID of the last operation from
+     * previous page. In case summary is requested, only the translated title is returned in form data.
+     * @param request Operation list request.
+     * @param apiAuthentication API authentication.
+     * @return Response with a page of pending operations.
+     * @throws PowerAuthAuthenticationException Thrown when loading of pending operations fails.
+     */
+    @RequestMapping(value = "/operation/list/page", method = RequestMethod.POST)
+    @PowerAuth(resourceId = "/operation/list/page", signatureType = {PowerAuthSignatureTypes.POSSESSION})
+    public @ResponseBody ObjectResponse<List<GetOperationDetailResponse>> getOperationList(@RequestBody ObjectRequest<MobileTokenOperationListRequest> request, PowerAuthApiAuthentication apiAuthentication) throws PowerAuthAuthenticationException {
+
+        if (request.getRequestObject() == null || request.getRequestObject().getLimit() < 1) {
+            throw new InvalidRequestObjectException();
+        }
+
+        if (apiAuthentication != null && apiAuthentication.getUserId() != null) {
+            String activationId = apiAuthentication.getActivationId();
+            String userId = apiAuthentication.getUserId();
+            MobileTokenOperationListRequest requestObject = request.getRequestObject();
+
+            // Verify that the activation ID from context matches configured activation ID for given user.
+            if (!verifyActivationId(activationId, userId)) {
+                throw new InvalidActivationException();
+            }
+
+            final List<GetOperationDetailResponse> operationList = getOperationListForUser(userId, requestObject.getLastTimestampCreated(),
+                    requestObject.getLastOperationId(), requestObject.getLimit(), requestObject.isSummary());
+            if (operationList == null) {
+                throw new PendingOperationListFailedException();
+            }
             return new ObjectResponse<>(operationList);
         } else {
             throw new PendingOperationListFailedException();
@@ -37,7 +37,7 @@ import io.getlime.security.powerauth.lib.webflow.authentication.mtoken.model.req
 import io.getlime.security.powerauth.lib.webflow.authentication.mtoken.model.response.QRCodeAuthenticationResponse;
 import io.getlime.security.powerauth.lib.webflow.authentication.mtoken.model.response.QRCodeInitResponse;
 import io.getlime.security.powerauth.lib.webflow.authentication.service.AuthMethodQueryService;
-import io.getlime.security.powerauth.soap.spring.client.PowerAuthServiceClient;
+import io.getlime.security.powerauth.lib.webflow.authentication.service.CachingPowerAuthServiceClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -60,11 +60,11 @@ import java.util.List;
 @RequestMapping(value = "/api/auth/token/offline")
 public class MobileTokenOfflineController extends AuthMethodController<QRCodeAuthenticationRequest, QRCodeAuthenticationResponse, AuthStepException> {
 
-    private final PowerAuthServiceClient powerAuthServiceClient;
+    private final CachingPowerAuthServiceClient powerAuthServiceClient;
     private final AuthMethodQueryService authMethodQueryService;
 
     @Autowired
-    public MobileTokenOfflineController(PowerAuthServiceClient powerAuthServiceClient, AuthMethodQueryService authMethodQueryService) {
+    public MobileTokenOfflineController(CachingPowerAuthServiceClient powerAuthServiceClient, AuthMethodQueryService authMethodQueryService) {
         this.powerAuthServiceClient = powerAuthServiceClient;
         this.authMethodQueryService = authMethodQueryService;
     }
@@ -137,8 +137,8 @@ public class MobileTokenOfflineController extends AuthMethodController<QRCodeAut
 
         }
 
-        // get activation status
-        GetActivationStatusResponse activationStatusResponse = powerAuthServiceClient.getActivationStatus(configuredActivationId);
+        // get current activation status, a blocked activation must not be used for a new QR code
+        GetActivationStatusResponse activationStatusResponse = powerAuthServiceClient.getActivationStatus(configuredActivationId, true);
 
         // if activation is not active, fail request
         if (activationStatusResponse.getActivationStatus() != ActivationStatus.ACTIVE) {
@@ -16,15 +16,10 @@
 
 package io.getlime.security.powerauth.lib.webflow.authentication.mtoken.controller;
 
-import io.getlime.core.rest.model.base.response.ObjectResponse;
-import io.getlime.core.rest.model.base.response.Response;
 import io.getlime.powerauth.soap.ActivationStatus;
 import io.getlime.powerauth.soap.GetActivationStatusResponse;
-import io.getlime.push.client.PushServerClient;
-import io.getlime.push.client.PushServerClientException;
 import io.getlime.push.model.entity.PushMessage;
 import io.getlime.push.model.entity.PushMessageBody;
-import io.getlime.push.model.entity.PushMessageSendResult;
 import io.getlime.security.powerauth.app.webflow.i18n.I18NService;
 import io.getlime.security.powerauth.lib.nextstep.model.entity.OperationFormData;
 import io.getlime.security.powerauth.lib.nextstep.model.entity.OperationHistory;
@@ -41,9 +36,10 @@ import io.getlime.security.powerauth.lib.webflow.authentication.mtoken.exception
 import io.getlime.security.powerauth.lib.webflow.authentication.mtoken.model.request.MobileTokenAuthenticationRequest;
 import io.getlime.security.powerauth.lib.webflow.authentication.mtoken.model.response.MobileTokenAuthenticationResponse;
 import io.getlime.security.powerauth.lib.webflow.authentication.mtoken.model.response.MobileTokenInitResponse;
+import io.getlime.security.powerauth.lib.webflow.authentication.mtoken.service.PushMessageOutbox;
 import io.getlime.security.powerauth.lib.webflow.authentication.mtoken.service.WebSocketMessageService;
 import io.getlime.security.powerauth.lib.webflow.authentication.service.AuthMethodQueryService;
-import io.getlime.security.powerauth.soap.spring.client.PowerAuthServiceClient;
+import io.getlime.security.powerauth.lib.webflow.authentication.service.CachingPowerAuthServiceClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.context.support.AbstractMessageSource;
@@ -71,15 +67,15 @@ public class MobileTokenOnlineController extends AuthMethodController<MobileToke
     private static final String PUSH_MESSAGE_AUTH_STEP_FINISHED_TITLE = "AUTH_STEP_FINISHED";
     private static final String PUSH_MESSAGE_SOUND = "default";
 
-    private final PushServerClient pushServerClient;
+    private final PushMessageOutbox pushMessageOutbox;
     private final WebSocketMessageService webSocketMessageService;
     private final AuthMethodQueryService authMethodQueryService;
-    private final PowerAuthServiceClient powerAuthServiceClient;
+    private final CachingPowerAuthServiceClient powerAuthServiceClient;
     private final I18NService i18nService;
 
     @Autowired
-    public MobileTokenOnlineController(PushServerClient pushServerClient, WebSocketMessageService webSocketMessageService, AuthMethodQueryService authMethodQueryService, PowerAuthServiceClient powerAuthServiceClient, I18NService i18nService) {
-        this.pushServerClient = pushServerClient;
+    public MobileTokenOnlineController(PushMessageOutbox pushMessageOutbox, WebSocketMessageService webSocketMessageService, AuthMethodQueryService authMethodQueryService, CachingPowerAuthServiceClient powerAuthServiceClient, I18NService i18nService) {
+        this.pushMessageOutbox = pushMessageOutbox;
         this.webSocketMessageService = webSocketMessageService;
         this.authMethodQueryService = authMethodQueryService;
         this.powerAuthServiceClient = powerAuthServiceClient;
@@ -129,16 +125,11 @@ public class MobileTokenOnlineController extends AuthMethodController<MobileToke
             return initResponse;
         }
 
-        try {
-            final PushMessage message = createAuthStepInitPushMessage(operation, activationId);
-            final ObjectResponse<PushMessageSendResult> response = pushServerClient.sendPushMessage(applicationId, message);
-            if (response.getStatus().equals(Response.Status.OK)) {
-                initResponse.setResult(AuthStepResult.CONFIRMED);
-            } else {
-                initResponse.setResult(AuthStepResult.AUTH_FAILED);
-                initResponse.setMessage("pushMessage.fail");
-            }
-        } catch (PushServerClientException ex) {
+        // push message is sent asynchronously, the request fails only when the message can not be queued
+        final PushMessage message = createAuthStepInitPushMessage(operation, activationId);
+        if (pushMessageOutbox.enqueue(applicationId, message)) {
+            initResponse.setResult(AuthStepResult.CONFIRMED);
+        } else {
             initResponse.setResult(AuthStepResult.AUTH_FAILED);
             initResponse.setMessage("pushMessage.fail");
         }
@@ -255,14 +246,24 @@ public class MobileTokenOnlineController extends AuthMethodController<MobileToke
      * @param statusMessage Status message.
      */
     private void sendAuthStepFinishedPushMessage(GetOperationDetailResponse operation, String statusMessage) {
+        // the browser keeps polling operation status, send the message only once per operation
+        if (!pushMessageOutbox.registerAuthStepFinished(operation.getOperationId())) {
+            return;
+        }
+        boolean queued = false;
         try {
             String activationId = getActivationId(operation);
             PushMessage message = createAuthStepFinishedPushMessage(operation, activationId, statusMessage);
             Long applicationId = getApplicationId(activationId);
-            pushServerClient.sendPushMessage(applicationId, message);
+            queued = pushMessageOutbox.enqueue(applicationId, message);
         } catch (Exception ex) {
             // Exception which occurs when push message is sent is not critical, return regular response.
             Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error occurred in Mobile Token API component", ex);
+        } finally {
+            if (!queued) {
+                // the message was not queued, next poll of operation status can send it again
+                pushMessageOutbox.unregisterAuthStepFinished(operation.getOperationId());
+            }
         }
     }
 
@@ -288,7 +289,8 @@ public class MobileTokenOnlineController extends AuthMethodController<MobileToke
      * @throws ActivationNotActiveException Thrown when activation is not active.
      */
     private Long getApplicationId(String activationId) throws ActivationNotActiveException {
-        GetActivationStatusResponse activationStatusResponse = powerAuthServiceClient.getActivationStatus(activationId);
+        // current activation status is required, push messages must not be sent to a blocked activation
+        GetActivationStatusResponse activationStatusResponse = powerAuthServiceClient.getActivationStatus(activationId, true);
         if (activationStatusResponse.getActivationStatus() != ActivationStatus.ACTIVE) {
             throw new ActivationNotActiveException();
         }
@@ -0,0 +1,49 @@
+package io.getlime.security.powerauth.lib.webflow.authentication.mtoken.model.request;
+
+import java.util.Date;
+
+/**
+ * Request for a page of pending operations for Mobile Token. The next page is requested using creation time
+ * and operation ID of the last operation from previous page.
+ *
+ * @author Roman Strobl, roman.strobl@lime-company.eu
+ */
+public class MobileTokenOperationListRequest {
+
+    private Date lastTimestampCreated;
+    private String lastOperationId;
+    private int limit;
+    private boolean summary;
+
+    public Date getLastTimestampCreated() {
+        return lastTimestampCreated;
+    }
+
+    public void setLastTimestampCreated(Date lastTimestampCreated) {
+        this.lastTimestampCreated = lastTimestampCreated;
+    }
+
+    public String getLastOperationId() {
+        return lastOperationId;
+    }
+
+    public void setLastOperationId(String lastOperationId) {
+        this.lastOperationId = lastOperationId;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public boolean isSummary() {
+        return summary;
+    }
+
+    public void setSummary(boolean summary) {
+        this.summary = summary;
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.lib.webflow.authentication.mtoken.service;
+
+import io.getlime.core.rest.model.base.response.ObjectResponse;
+import io.getlime.core.rest.model.base.response.Response;
+import io.getlime.push.client.PushServerClient;
+import io.getlime.push.client.PushServerClientException;
+import io.getlime.push.model.entity.PushMessage;
+import io.getlime.push.model.entity.PushMessageSendResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * In-process outbox for push messages. Messages are queued in a bounded queue and sent to push server by worker threads,
+ * so that a slow push server does not delay responses to the browser. Each message is sent in a separate request, so that
+ * only failed messages are retried with exponential backoff. Repeated "auth step finished" messages for the same operation
+ * can be suppressed using {@link #registerAuthStepFinished(String)}.
+ *
+ * @author Roman Strobl, roman.strobl@lime-company.eu
+ */
+public class PushMessageOutbox {
+
+    private final PushServerClient pushServerClient;
+    private final PushMessageOutboxConfiguration configuration;
+    private final BlockingQueue<OutboxEntry> queue;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<String, Long> finishedOperations = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong duplicateCount = new AtomicLong();
+    private final AtomicLong sendRequestCount = new AtomicLong();
+    private final AtomicLong totalSendLatency = new AtomicLong();
+    private final AtomicLong lastSendLatency = new AtomicLong();
+
+    /**
+     * Create push message outbox and start worker threads.
+     *
+     * @param pushServerClient Push server client.
+     * @param configuration Outbox configuration.
+     */
+    public PushMessageOutbox(PushServerClient pushServerClient, PushMessageOutboxConfiguration configuration) {
+        this.pushServerClient = pushServerClient;
+        this.configuration = configuration;
+        this.queue = new ArrayBlockingQueue<>(configuration.getQueueCapacity());
+        final AtomicInteger workerCounter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(configuration.getWorkerThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "push-outbox-worker-" + workerCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "push-outbox-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < configuration.getWorkerThreads(); i++) {
+            workers.execute(this::processQueue);
+        }
+        final long purgeInterval = Math.max(1000, Math.min(configuration.getDeduplicationWindow(), 60000));
+        scheduler.scheduleWithFixedDelay(this::purgeFinishedOperations, purgeInterval, purgeInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queue a push message for sending.
+     *
+     * @param applicationId Application ID.
+     * @param message Push message.
+     * @return Whether the message was queued, false value is returned when the queue is full.
+     */
+    public boolean enqueue(Long applicationId, PushMessage message) {
+        if (!queue.offer(new OutboxEntry(applicationId, message))) {
+            rejectedCount.incrementAndGet();
+            Logger.getLogger(this.getClass().getName()).log(Level.WARNING, "Push message outbox is full, message was rejected");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Register that "auth step finished" message is being sent for an operation.
+     *
+     * @param operationId Operation ID.
+     * @return True when the message should be sent, false when it was already sent recently for the operation.
+     */
+    public boolean registerAuthStepFinished(String operationId) {
+        if (finishedOperations.putIfAbsent(operationId, System.currentTimeMillis()) != null) {
+            duplicateCount.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Remove registration of "auth step finished" message for an operation, the method is called when the message
+     * could not be queued, so that the message can be sent again later.
+     *
+     * @param operationId Operation ID.
+     */
+    public void unregisterAuthStepFinished(String operationId) {
+        finishedOperations.remove(operationId);
+    }
+
+    /**
+     * Stop worker threads. Messages remaining in the queue are discarded.
+     */
+    public void close() {
+        running = false;
+        workers.shutdown();
+        scheduler.shutdownNow();
+        try {
+            if (!workers.awaitTermination(5, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException ex) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Take messages from the queue and send them until the outbox is closed.
+     */
+    private void processQueue() {
+        final List<OutboxEntry> batch = new ArrayList<>(configuration.getBatchSize());
+        while (running) {
+            try {
+                final OutboxEntry entry = queue.poll(1, TimeUnit.SECONDS);
+                if (entry == null) {
+                    continue;
+                }
+                batch.add(entry);
+                queue.drainTo(batch, configuration.getBatchSize() - 1);
+                send(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex) {
+                Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error occurred in push message outbox", ex);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Send messages to push server. Each message is sent in a separate request, the response of a batch request does not
+     * tell which messages failed, so a failed batch could be only retried as a whole, including delivered messages.
+     *
+     * @param batch Messages to send.
+     */
+    private void send(List<OutboxEntry> batch) {
+        for (OutboxEntry entry: batch) {
+            final long start = System.nanoTime();
+            boolean succeeded;
+            try {
+                final ObjectResponse<PushMessageSendResult> response = pushServerClient.sendPushMessage(entry.applicationId, entry.message);
+                succeeded = Response.Status.OK.equals(response.getStatus());
+            } catch (PushServerClientException | RuntimeException ex) {
+                Logger.getLogger(this.getClass().getName()).log(Level.WARNING, "Sending of push message failed", ex);
+                succeeded = false;
+            }
+            final long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            sendRequestCount.incrementAndGet();
+            totalSendLatency.addAndGet(latency);
+            lastSendLatency.set(latency);
+            if (succeeded) {
+                sentCount.incrementAndGet();
+            } else {
+                scheduleRetry(entry);
+            }
+        }
+    }
+
+    /**
+     * Schedule another attempt to send a message, the message is dropped when maximum number of attempts is reached.
+     *
+     * @param entry Message which could not be sent.
+     */
+    private void scheduleRetry(final OutboxEntry entry) {
+        entry.attempts++;
+        if (entry.attempts >= configuration.getMaxAttempts() || !running) {
+            failedCount.incrementAndGet();
+            Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Push message for application " + entry.applicationId + " was dropped after " + entry.attempts + " attempts");
+            return;
+        }
+        retryCount.incrementAndGet();
+        final long delay = configuration.getRetryBackoff() << (entry.attempts - 1);
+        try {
+            scheduler.schedule(() -> {
+                if (!queue.offer(entry)) {
+                    rejectedCount.incrementAndGet();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            // outbox is being closed
+            failedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Remove operations whose deduplication window has passed.
+     */
+    private void purgeFinishedOperations() {
+        final long threshold = System.currentTimeMillis() - configuration.getDeduplicationWindow();
+        finishedOperations.values().removeIf(timestamp -> timestamp < threshold);
+    }
+
+    /**
+     * Get number of messages waiting in the queue.
+     * @return Queue depth.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Get number of messages successfully sent to push server.
+     * @return Sent message count.
+     */
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    /**
+     * Get number of messages dropped after all attempts failed.
+     * @return Failed message count.
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Get number of messages rejected because the queue was full.
+     * @return Rejected message count.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Get number of scheduled retries.
+     * @return Retry count.
+     */
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    /**
+     * Get number of suppressed duplicate "auth step finished" messages.
+     * @return Duplicate message count.
+     */
+    public long getDuplicateCount() {
+        return duplicateCount.get();
+    }
+
+    /**
+     * Get average latency of requests to push server in milliseconds.
+     * @return Average send latency.
+     */
+    public double getAverageSendLatency() {
+        final long requests = sendRequestCount.get();
+        return requests == 0 ? 0 : (double) totalSendLatency.get() / requests;
+    }
+
+    /**
+     * Get latency of the last request to push server in milliseconds.
+     * @return Last send latency.
+     */
+    public long getLastSendLatency() {
+        return lastSendLatency.get();
+    }
+
+    /**
+     * Push message waiting in the outbox.
+     */
+    private static class OutboxEntry {
+
+        private final Long applicationId;
+        private final PushMessage message;
+        private int attempts;
+
+        OutboxEntry(Long applicationId, PushMessage message) {
+            this.applicationId = applicationId;
+            this.message = message;
+        }
+    }
+
+}
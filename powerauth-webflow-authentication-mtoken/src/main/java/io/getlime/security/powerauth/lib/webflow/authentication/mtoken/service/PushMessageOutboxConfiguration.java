@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.lib.webflow.authentication.mtoken.service;
+
+/**
+ * Configuration of {@link PushMessageOutbox}. All times are in milliseconds.
+ *
+ * @author Roman Strobl, roman.strobl@lime-company.eu
+ */
+public class PushMessageOutboxConfiguration {
+
+    /**
+     * Maximum number of push messages waiting in the queue, new messages are rejected when the queue is full.
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * Number of worker threads sending push messages.
+     */
+    private int workerThreads = 2;
+
+    /**
+     * Maximum number of push messages taken from the queue by a worker thread at once.
+     */
+    private int batchSize = 50;
+
+    /**
+     * Maximum number of attempts to send a push message.
+     */
+    private int maxAttempts = 3;
+
+    /**
+     * Delay before the first retry, the delay is doubled for each next retry.
+     */
+    private long retryBackoff = 1000;
+
+    /**
+     * Time during which repeated "auth step finished" messages for the same operation are ignored.
+     */
+    private long deduplicationWindow = 600000;
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = workerThreads;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public long getRetryBackoff() {
+        return retryBackoff;
+    }
+
+    public void setRetryBackoff(long retryBackoff) {
+        this.retryBackoff = retryBackoff;
+    }
+
+    public long getDeduplicationWindow() {
+        return deduplicationWindow;
+    }
+
+    public void setDeduplicationWindow(long deduplicationWindow) {
+        this.deduplicationWindow = deduplicationWindow;
+    }
+}
@@ -38,6 +38,7 @@ import io.getlime.security.powerauth.lib.webflow.authentication.method.operation
 import io.getlime.security.powerauth.lib.webflow.authentication.method.operation.model.request.UpdateOperationFormDataRequest;
 import io.getlime.security.powerauth.lib.webflow.authentication.method.operation.model.response.OperationReviewDetailResponse;
 import io.getlime.security.powerauth.lib.webflow.authentication.method.operation.model.response.OperationReviewResponse;
+import io.getlime.security.powerauth.lib.webflow.authentication.service.DataAdapterNotificationService;
 import io.getlime.security.powerauth.lib.webflow.authentication.service.MessageTranslationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -64,12 +65,14 @@ public class OperationReviewController extends AuthMethodController<OperationRev
     private final String FIELD_BANK_ACCOUNT_CHOICE = "operation.bankAccountChoice";
 
     private final DataAdapterClient dataAdapterClient;
+    private final DataAdapterNotificationService dataAdapterNotificationService;
     private final NextStepClient nextStepClient;
     private final MessageTranslationService messageTranslationService;
 
     @Autowired
-    public OperationReviewController(DataAdapterClient dataAdapterClient, NextStepClient nextStepClient, MessageTranslationService messageTranslationService) {
+    public OperationReviewController(DataAdapterClient dataAdapterClient, DataAdapterNotificationService dataAdapterNotificationService, NextStepClient nextStepClient, MessageTranslationService messageTranslationService) {
         this.dataAdapterClient = dataAdapterClient;
+        this.dataAdapterNotificationService = dataAdapterNotificationService;
         this.nextStepClient = nextStepClient;
         this.messageTranslationService = messageTranslationService;
     }
@@ -154,17 +157,18 @@ public class OperationReviewController extends AuthMethodController<OperationRev
     }
 
     @RequestMapping(value = "/formData", method = RequestMethod.PUT)
-    public @ResponseBody ObjectResponse updateFormData(@RequestBody UpdateOperationFormDataRequest request) throws NextStepServiceException, DataAdapterClientErrorException, AuthStepException {
+    public @ResponseBody ObjectResponse updateFormData(@RequestBody UpdateOperationFormDataRequest request) throws NextStepServiceException, AuthStepException {
         final GetOperationDetailResponse operation = getOperation();
-        // update formData in Next Step server
-        nextStepClient.updateOperationFormData(operation.getOperationId(), request.getFormData());
+        // update user input in Next Step server, the form definition is not sent
+        nextStepClient.updateOperationUserInput(operation.getOperationId(), request.getFormData().getUserInput());
+        invalidateCachedOperation(operation.getOperationId());
         // Send notification to Data Adapter if the bank account has changed.
         // In case there is no bank account choice, the notification is not performed.
         Map<String, String> userInput = request.getFormData().getUserInput();
         if (userInput.containsKey(FIELD_BANK_ACCOUNT_CHOICE_DISABLED) && userInput.containsKey(FIELD_CHOSEN_BANK_ACCOUNT_NUMBER)) {
             BankAccountChoice bankAccountChoice = new BankAccountChoice();
             bankAccountChoice.setBankAccountNumber(request.getFormData().getUserInput().get(FIELD_CHOSEN_BANK_ACCOUNT_NUMBER));
-            dataAdapterClient.formDataChangedNotification(bankAccountChoice, operation.getUserId(), operation.getOperationId());
+            dataAdapterNotificationService.formDataChangedNotification(bankAccountChoice, operation.getUserId(), operation.getOperationId());
         }
         return new ObjectResponse();
     }
@@ -174,6 +178,7 @@ public class OperationReviewController extends AuthMethodController<OperationRev
         final GetOperationDetailResponse operation = getOperation();
         // update chosenAuthMethod in Next Step server
         nextStepClient.updateChosenAuthMethod(operation.getOperationId(), request.getChosenAuthMethod());
+        invalidateCachedOperation(operation.getOperationId());
         return new ObjectResponse();
     }
 
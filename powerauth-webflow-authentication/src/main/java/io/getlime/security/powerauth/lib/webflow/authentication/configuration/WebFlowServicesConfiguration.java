@@ -17,8 +17,13 @@
 package io.getlime.security.powerauth.lib.webflow.authentication.configuration;
 
 import io.getlime.security.powerauth.lib.dataadapter.client.DataAdapterClient;
+import io.getlime.security.powerauth.lib.dataadapter.client.DataAdapterClientConfiguration;
+import io.getlime.security.powerauth.lib.dataadapter.client.DataAdapterEndpointGroup;
 import io.getlime.security.powerauth.lib.nextstep.client.NextStepClient;
+import io.getlime.security.powerauth.lib.nextstep.client.NextStepClientConfiguration;
+import io.getlime.security.powerauth.lib.webflow.authentication.service.DataAdapterNotificationService;
 import io.getlime.security.powerauth.lib.webflow.authentication.service.SSLConfigurationService;
+import io.getlime.security.powerauth.lib.webflow.authentication.service.UserAuthMethodsCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -52,6 +57,174 @@ public class WebFlowServicesConfiguration {
     @Value("${powerauth.service.ssl.acceptInvalidSslCertificate}")
     private boolean acceptInvalidSslCertificate;
 
+    /**
+     * Maximum number of pooled HTTP connections to Data Adapter.
+     */
+    @Value("${powerauth.dataAdapter.service.http.maxConnections}")
+    private int dataAdapterMaxConnections;
+
+    /**
+     * Maximum number of pooled HTTP connections per route to Data Adapter.
+     */
+    @Value("${powerauth.dataAdapter.service.http.maxConnectionsPerRoute}")
+    private int dataAdapterMaxConnectionsPerRoute;
+
+    /**
+     * Timeout for establishing a connection to Data Adapter in milliseconds.
+     */
+    @Value("${powerauth.dataAdapter.service.http.connectTimeout}")
+    private int dataAdapterConnectTimeout;
+
+    /**
+     * Timeout for obtaining a connection to Data Adapter from the pool in milliseconds.
+     */
+    @Value("${powerauth.dataAdapter.service.http.connectionRequestTimeout}")
+    private int dataAdapterConnectionRequestTimeout;
+
+    /**
+     * Time after which idle connections to Data Adapter are evicted from the pool in milliseconds.
+     */
+    @Value("${powerauth.dataAdapter.service.http.idleConnectionTimeout}")
+    private long dataAdapterIdleConnectionTimeout;
+
+    /**
+     * Timeout for reading a response from Data Adapter authentication and user detail endpoints in milliseconds.
+     */
+    @Value("${powerauth.dataAdapter.service.http.auth.readTimeout}")
+    private int dataAdapterAuthReadTimeout;
+
+    /**
+     * Maximum number of concurrent requests to Data Adapter authentication and user detail endpoints.
+     */
+    @Value("${powerauth.dataAdapter.service.http.auth.maxConcurrentRequests}")
+    private int dataAdapterAuthMaxConcurrentRequests;
+
+    /**
+     * Maximum time to wait for a free slot for a request to Data Adapter authentication and user detail endpoints in milliseconds.
+     */
+    @Value("${powerauth.dataAdapter.service.http.auth.acquireTimeout}")
+    private long dataAdapterAuthAcquireTimeout;
+
+    /**
+     * Timeout for reading a response from Data Adapter SMS authorization endpoints in milliseconds.
+     */
+    @Value("${powerauth.dataAdapter.service.http.sms.readTimeout}")
+    private int dataAdapterSmsReadTimeout;
+
+    /**
+     * Maximum number of concurrent requests to Data Adapter SMS authorization endpoints.
+     */
+    @Value("${powerauth.dataAdapter.service.http.sms.maxConcurrentRequests}")
+    private int dataAdapterSmsMaxConcurrentRequests;
+
+    /**
+     * Maximum time to wait for a free slot for a request to Data Adapter SMS authorization endpoints in milliseconds.
+     */
+    @Value("${powerauth.dataAdapter.service.http.sms.acquireTimeout}")
+    private long dataAdapterSmsAcquireTimeout;
+
+    /**
+     * Timeout for reading a response from Data Adapter bank account endpoints in milliseconds.
+     */
+    @Value("${powerauth.dataAdapter.service.http.accounts.readTimeout}")
+    private int dataAdapterAccountsReadTimeout;
+
+    /**
+     * Maximum number of concurrent requests to Data Adapter bank account endpoints.
+     */
+    @Value("${powerauth.dataAdapter.service.http.accounts.maxConcurrentRequests}")
+    private int dataAdapterAccountsMaxConcurrentRequests;
+
+    /**
+     * Maximum time to wait for a free slot for a request to Data Adapter bank account endpoints in milliseconds.
+     */
+    @Value("${powerauth.dataAdapter.service.http.accounts.acquireTimeout}")
+    private long dataAdapterAccountsAcquireTimeout;
+
+    /**
+     * Timeout for reading a response from Data Adapter notification endpoints in milliseconds.
+     */
+    @Value("${powerauth.dataAdapter.service.http.notifications.readTimeout}")
+    private int dataAdapterNotificationsReadTimeout;
+
+    /**
+     * Maximum number of concurrent requests to Data Adapter notification endpoints.
+     */
+    @Value("${powerauth.dataAdapter.service.http.notifications.maxConcurrentRequests}")
+    private int dataAdapterNotificationsMaxConcurrentRequests;
+
+    /**
+     * Maximum time to wait for a free slot for a request to Data Adapter notification endpoints in milliseconds.
+     */
+    @Value("${powerauth.dataAdapter.service.http.notifications.acquireTimeout}")
+    private long dataAdapterNotificationsAcquireTimeout;
+
+    /**
+     * Maximum number of queued notifications for Data Adapter.
+     */
+    @Value("${powerauth.dataAdapter.notification.queueCapacity}")
+    private int dataAdapterNotificationQueueCapacity;
+
+    /**
+     * Maximum number of notifications sent to Data Adapter in a single request.
+     */
+    @Value("${powerauth.dataAdapter.notification.batchSize}")
+    private int dataAdapterNotificationBatchSize;
+
+    /**
+     * Maximum time to wait for more notifications before a partial batch is sent to Data Adapter in milliseconds.
+     */
+    @Value("${powerauth.dataAdapter.notification.flushInterval}")
+    private long dataAdapterNotificationFlushInterval;
+
+    /**
+     * Maximum number of pooled HTTP connections to Next Step server.
+     */
+    @Value("${powerauth.nextstep.service.http.maxConnections}")
+    private int nextStepMaxConnections;
+
+    /**
+     * Maximum number of pooled HTTP connections per route to Next Step server.
+     */
+    @Value("${powerauth.nextstep.service.http.maxConnectionsPerRoute}")
+    private int nextStepMaxConnectionsPerRoute;
+
+    /**
+     * Timeout for establishing a connection to Next Step server in milliseconds.
+     */
+    @Value("${powerauth.nextstep.service.http.connectTimeout}")
+    private int nextStepConnectTimeout;
+
+    /**
+     * Timeout for reading a response from Next Step server in milliseconds.
+     */
+    @Value("${powerauth.nextstep.service.http.readTimeout}")
+    private int nextStepReadTimeout;
+
+    /**
+     * Timeout for obtaining a connection to Next Step server from the pool in milliseconds.
+     */
+    @Value("${powerauth.nextstep.service.http.connectionRequestTimeout}")
+    private int nextStepConnectionRequestTimeout;
+
+    /**
+     * Time after which idle connections to Next Step server are evicted from the pool in milliseconds.
+     */
+    @Value("${powerauth.nextstep.service.http.idleConnectionTimeout}")
+    private long nextStepIdleConnectionTimeout;
+
+    /**
+     * Maximum number of users with cached enabled authentication methods.
+     */
+    @Value("${powerauth.nextstep.userAuthMethods.cache.maxSize}")
+    private int userAuthMethodsCacheMaxSize;
+
+    /**
+     * Time to live of cached enabled authentication methods in milliseconds.
+     */
+    @Value("${powerauth.nextstep.userAuthMethods.cache.timeToLive}")
+    private long userAuthMethodsCacheTimeToLive;
+
     @Autowired
     public WebFlowServicesConfiguration(SSLConfigurationService sslConfigurationService) {
         this.sslConfigurationService = sslConfigurationService;
@@ -64,7 +237,7 @@ public class WebFlowServicesConfiguration {
      */
     @Bean
     public DataAdapterClient defaultDataAdapterClient() {
-        DataAdapterClient client = new DataAdapterClient(dataAdapterServiceUrl);
+        DataAdapterClient client = new DataAdapterClient(dataAdapterServiceUrl, dataAdapterClientConfiguration());
         // whether invalid SSL certificates should be accepted
         if (acceptInvalidSslCertificate) {
             sslConfigurationService.trustAllCertificates();
@@ -72,6 +245,52 @@ public class WebFlowServicesConfiguration {
         return client;
     }
 
+    /**
+     * Service for asynchronous delivery of notifications to Data Adapter.
+     *
+     * @param dataAdapterClient Data adapter client.
+     * @return Data Adapter notification service.
+     */
+    @Bean
+    public DataAdapterNotificationService dataAdapterNotificationService(DataAdapterClient dataAdapterClient) {
+        return new DataAdapterNotificationService(dataAdapterClient, dataAdapterNotificationQueueCapacity, dataAdapterNotificationBatchSize, dataAdapterNotificationFlushInterval);
+    }
+
+    /**
+     * Prepare HTTP transport configuration for Data Adapter client.
+     *
+     * @return HTTP transport configuration.
+     */
+    private DataAdapterClientConfiguration dataAdapterClientConfiguration() {
+        DataAdapterClientConfiguration configuration = new DataAdapterClientConfiguration();
+        configuration.setMaxConnections(dataAdapterMaxConnections);
+        configuration.setMaxConnectionsPerRoute(dataAdapterMaxConnectionsPerRoute);
+        configuration.setConnectTimeout(dataAdapterConnectTimeout);
+        configuration.setConnectionRequestTimeout(dataAdapterConnectionRequestTimeout);
+        configuration.setIdleConnectionTimeout(dataAdapterIdleConnectionTimeout);
+        configureEndpointGroup(configuration, DataAdapterEndpointGroup.AUTH, dataAdapterAuthReadTimeout, dataAdapterAuthMaxConcurrentRequests, dataAdapterAuthAcquireTimeout);
+        configureEndpointGroup(configuration, DataAdapterEndpointGroup.SMS, dataAdapterSmsReadTimeout, dataAdapterSmsMaxConcurrentRequests, dataAdapterSmsAcquireTimeout);
+        configureEndpointGroup(configuration, DataAdapterEndpointGroup.ACCOUNTS, dataAdapterAccountsReadTimeout, dataAdapterAccountsMaxConcurrentRequests, dataAdapterAccountsAcquireTimeout);
+        configureEndpointGroup(configuration, DataAdapterEndpointGroup.NOTIFICATIONS, dataAdapterNotificationsReadTimeout, dataAdapterNotificationsMaxConcurrentRequests, dataAdapterNotificationsAcquireTimeout);
+        return configuration;
+    }
+
+    /**
+     * Configure timeouts and concurrency limit of a Data Adapter endpoint group.
+     *
+     * @param configuration Data Adapter client configuration.
+     * @param group Endpoint group.
+     * @param readTimeout Read timeout in milliseconds.
+     * @param maxConcurrentRequests Maximum number of concurrent requests.
+     * @param acquireTimeout Maximum time to wait for a free slot in milliseconds.
+     */
+    private void configureEndpointGroup(DataAdapterClientConfiguration configuration, DataAdapterEndpointGroup group, int readTimeout, int maxConcurrentRequests, long acquireTimeout) {
+        DataAdapterClientConfiguration.EndpointGroupConfiguration groupConfiguration = configuration.getEndpointGroup(group);
+        groupConfiguration.setReadTimeout(readTimeout);
+        groupConfiguration.setMaxConcurrentRequests(maxConcurrentRequests);
+        groupConfiguration.setAcquireTimeout(acquireTimeout);
+    }
+
     /**
      * Default Next Step service client.
      *
@@ -79,7 +298,7 @@ public class WebFlowServicesConfiguration {
      */
     @Bean
     public NextStepClient defaultNextStepClient() {
-        NextStepClient client = new NextStepClient(nextstepServiceUrl);
+        NextStepClient client = new NextStepClient(nextstepServiceUrl, nextStepClientConfiguration());
         // whether invalid SSL certificates should be accepted
         if (acceptInvalidSslCertificate) {
             sslConfigurationService.trustAllCertificates();
@@ -87,4 +306,34 @@ public class WebFlowServicesConfiguration {
         return client;
     }
 
+    /**
+     * Cache of authentication methods enabled for users. The cache is registered in Next Step client
+     * so that entries are invalidated when authentication methods of a user are changed.
+     *
+     * @param nextStepClient Next Step service client.
+     * @return Cache of authentication methods enabled for users.
+     */
+    @Bean
+    public UserAuthMethodsCache userAuthMethodsCache(NextStepClient nextStepClient) {
+        UserAuthMethodsCache cache = new UserAuthMethodsCache(nextStepClient, userAuthMethodsCacheMaxSize, userAuthMethodsCacheTimeToLive);
+        nextStepClient.addUserAuthMethodsChangeListener(cache);
+        return cache;
+    }
+
+    /**
+     * Prepare HTTP transport configuration for Next Step service clients.
+     *
+     * @return HTTP transport configuration.
+     */
+    private NextStepClientConfiguration nextStepClientConfiguration() {
+        NextStepClientConfiguration configuration = new NextStepClientConfiguration();
+        configuration.setMaxConnections(nextStepMaxConnections);
+        configuration.setMaxConnectionsPerRoute(nextStepMaxConnectionsPerRoute);
+        configuration.setConnectTimeout(nextStepConnectTimeout);
+        configuration.setReadTimeout(nextStepReadTimeout);
+        configuration.setConnectionRequestTimeout(nextStepConnectionRequestTimeout);
+        configuration.setIdleConnectionTimeout(nextStepIdleConnectionTimeout);
+        return configuration;
+    }
+
 }
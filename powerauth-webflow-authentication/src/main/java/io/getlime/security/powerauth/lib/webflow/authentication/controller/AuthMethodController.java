@@ -16,9 +16,9 @@
 
 package io.getlime.security.powerauth.lib.webflow.authentication.controller;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.getlime.core.rest.model.base.response.ObjectResponse;
-import io.getlime.security.powerauth.lib.dataadapter.client.DataAdapterClient;
-import io.getlime.security.powerauth.lib.dataadapter.client.DataAdapterClientErrorException;
 import io.getlime.security.powerauth.lib.dataadapter.model.entity.OperationChange;
 import io.getlime.security.powerauth.lib.nextstep.client.NextStepClient;
 import io.getlime.security.powerauth.lib.nextstep.model.entity.AuthStep;
@@ -38,12 +38,18 @@ import io.getlime.security.powerauth.lib.webflow.authentication.exception.AuthSt
 import io.getlime.security.powerauth.lib.webflow.authentication.security.UserOperationAuthentication;
 import io.getlime.security.powerauth.lib.webflow.authentication.service.AuthMethodQueryService;
 import io.getlime.security.powerauth.lib.webflow.authentication.service.AuthenticationManagementService;
+import io.getlime.security.powerauth.lib.webflow.authentication.service.DataAdapterNotificationService;
 import io.getlime.security.powerauth.lib.webflow.authentication.service.MessageTranslationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
-import java.util.HashSet;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -62,6 +68,16 @@ import java.util.logging.Logger;
 @Component
 public abstract class AuthMethodController<T extends AuthStepRequest, R extends AuthStepResponse, E extends AuthStepException> {
 
+    /**
+     * Name of request attribute which holds snapshots of operations loaded during current HTTP request.
+     */
+    private static final String OPERATION_CACHE_ATTRIBUTE = AuthMethodController.class.getName() + ".OPERATION_CACHE";
+
+    /**
+     * Object mapper used for copying cached operation snapshots.
+     */
+    private static final ObjectMapper objectMapper = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
     @Autowired
     private AuthenticationManagementService authenticationManagementService;
 
@@ -72,7 +88,7 @@ public abstract class AuthMethodController<T extends AuthStepRequest, R extends
     private AuthMethodQueryService authMethodQueryService;
 
     @Autowired
-    private DataAdapterClient dataAdapterClient;
+    private DataAdapterNotificationService dataAdapterNotificationService;
 
     @Autowired
     private MessageTranslationService messageTranslationService;
@@ -93,8 +109,7 @@ public abstract class AuthMethodController<T extends AuthStepRequest, R extends
 
     protected GetOperationDetailResponse getOperation(String operationId) throws AuthStepException {
         try {
-            final ObjectResponse<GetOperationDetailResponse> operationDetail = nextStepClient.getOperationDetail(operationId);
-            final GetOperationDetailResponse operation = operationDetail.getResponseObject();
+            final GetOperationDetailResponse operation = getOperationDetail(operationId);
             validateOperationState(operation);
             filterStepsBasedOnActiveAuthMethods(operation.getSteps(), operation.getUserId(), operationId);
             // translate formData messages
@@ -111,15 +126,50 @@ public abstract class AuthMethodController<T extends AuthStepRequest, R extends
     protected List<GetOperationDetailResponse> getOperationListForUser(String userId) {
         try {
             final ObjectResponse<List<GetOperationDetailResponse>> operations = nextStepClient.getPendingOperations(userId, getAuthMethodName());
-            final List<GetOperationDetailResponse> responseObject = operations.getResponseObject();
-            for (GetOperationDetailResponse response: responseObject) {
+            return translateOperationList(operations.getResponseObject(), false);
+        } catch (NextStepServiceException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get a page of operations for user. In case summary is requested, only the title of each operation is translated.
+     *
+     * @param userId User ID.
+     * @param lastTimestampCreated Creation time of the last operation from previous page, null for the first page.
+     * @param lastOperationId Operation ID of the last operation from previous page, null for the first page.
+     * @param limit Maximum number of operations.
+     * @param summary Whether operation summaries with only the title in form data are requested.
+     * @return List of operations, or null in case of an error.
+     */
+    protected List<GetOperationDetailResponse> getOperationListForUser(String userId, Date lastTimestampCreated, String lastOperationId, int limit, boolean summary) {
+        try {
+            final ObjectResponse<List<GetOperationDetailResponse>> operations = nextStepClient.getPendingOperations(userId, getAuthMethodName(),
+                    lastTimestampCreated, lastOperationId, limit, summary);
+            return translateOperationList(operations.getResponseObject(), summary);
+        } catch (NextStepServiceException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Translate form data messages in operation list.
+     *
+     * @param operations List of operations.
+     * @param summary Whether operations are summaries which contain only the title in form data.
+     * @return List of operations with translated form data.
+     */
+    private List<GetOperationDetailResponse> translateOperationList(List<GetOperationDetailResponse> operations, boolean summary) {
+        for (GetOperationDetailResponse response: operations) {
+            if (summary) {
+                // translate formData title
+                messageTranslationService.translateTitle(response.getFormData());
+            } else {
                 // translate formData messages
                 messageTranslationService.translateFormData(response.getFormData());
             }
-            return operations.getResponseObject();
-        } catch (NextStepServiceException e) {
-            return null;
         }
+        return operations;
     }
 
     /**
@@ -156,15 +206,11 @@ public abstract class AuthMethodController<T extends AuthStepRequest, R extends
      */
     protected UpdateOperationResponse authorize(String operationId, String userId, List<KeyValueParameter> params) throws NextStepServiceException, AuthStepException {
         // validate operation before requesting update
-        validateOperationState(operationId);
-        ObjectResponse<UpdateOperationResponse> response = nextStepClient.updateOperation(operationId, userId, getAuthMethodName(), AuthStepResult.CONFIRMED, null, params);
+        final GetOperationDetailResponse operation = validateOperationState(operationId);
+        ObjectResponse<UpdateOperationResponse> response = updateOperation(operation, userId, AuthStepResult.CONFIRMED, null, params);
         // notify Data Adapter in case operation is in DONE state now
         if (response.getResponseObject().getResult()==AuthResult.DONE) {
-            try {
-                dataAdapterClient.operationChangedNotification(OperationChange.DONE, userId, operationId);
-            } catch (DataAdapterClientErrorException ex) {
-                Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error while notifying Data Adapter", ex);
-            }
+            dataAdapterNotificationService.operationChangedNotification(OperationChange.DONE, userId, operationId);
         }
         filterStepsBasedOnActiveAuthMethods(response.getResponseObject().getSteps(), userId, operationId);
         return response.getResponseObject();
@@ -181,15 +227,11 @@ public abstract class AuthMethodController<T extends AuthStepRequest, R extends
      */
     protected UpdateOperationResponse failAuthorization(String operationId, String userId, List<KeyValueParameter> params) throws NextStepServiceException, AuthStepException {
         // validate operation before requesting update
-        validateOperationState(operationId);
-        ObjectResponse<UpdateOperationResponse> response = nextStepClient.updateOperation(operationId, userId, getAuthMethodName(), AuthStepResult.AUTH_FAILED, null, params);
+        final GetOperationDetailResponse operation = validateOperationState(operationId);
+        ObjectResponse<UpdateOperationResponse> response = updateOperation(operation, userId, AuthStepResult.AUTH_FAILED, null, params);
         // notify Data Adapter in case operation is in FAILED state now
         if (response.getResponseObject().getResult()==AuthResult.FAILED) {
-            try {
-                dataAdapterClient.operationChangedNotification(OperationChange.FAILED, userId, operationId);
-            } catch (DataAdapterClientErrorException ex) {
-                Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error while notifying Data Adapter", ex);
-            }
+            dataAdapterNotificationService.operationChangedNotification(OperationChange.FAILED, userId, operationId);
         }
         filterStepsBasedOnActiveAuthMethods(response.getResponseObject().getSteps(), userId, operationId);
         return response.getResponseObject();
@@ -205,15 +247,11 @@ public abstract class AuthMethodController<T extends AuthStepRequest, R extends
      */
     protected UpdateOperationResponse cancelAuthorization(String operationId, String userId, OperationCancelReason cancelReason, List<KeyValueParameter> params) throws NextStepServiceException, AuthStepException {
         // validate operation before requesting update
-        validateOperationState(operationId);
-        ObjectResponse<UpdateOperationResponse> response = nextStepClient.updateOperation(operationId, userId, getAuthMethodName(), AuthStepResult.CANCELED, cancelReason.toString(), params);
+        final GetOperationDetailResponse operation = validateOperationState(operationId);
+        ObjectResponse<UpdateOperationResponse> response = updateOperation(operation, userId, AuthStepResult.CANCELED, cancelReason.toString(), params);
         // notify Data Adapter in case operation is in FAILED state now
         if (response.getResponseObject().getResult()==AuthResult.FAILED) {
-            try {
-                dataAdapterClient.operationChangedNotification(OperationChange.CANCELED, userId, operationId);
-            } catch (DataAdapterClientErrorException ex) {
-                Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error while notifying Data Adapter", ex);
-            }
+            dataAdapterNotificationService.operationChangedNotification(OperationChange.CANCELED, userId, operationId);
         }
         filterStepsBasedOnActiveAuthMethods(response.getResponseObject().getSteps(), userId, operationId);
         return response.getResponseObject();
@@ -251,9 +289,9 @@ public abstract class AuthMethodController<T extends AuthStepRequest, R extends
      */
     protected R continueOperationWithId(String operationId, AuthResponseProvider provider) {
         try {
+            // steps are already filtered based on active authentication methods in getOperation()
             final GetOperationDetailResponse operation = getOperation(operationId);
             final String userId = operation.getUserId();
-            filterStepsBasedOnActiveAuthMethods(operation.getSteps(), userId, operationId);
             if (userId != null) {
                 authenticationManagementService.updateAuthenticationWithUserId(userId);
             }
@@ -356,15 +394,119 @@ public abstract class AuthMethodController<T extends AuthStepRequest, R extends
     }
 
     /**
-     * Retrieve operation and validate it.
+     * Retrieve operation and validate it. Operation which was already loaded during current HTTP request
+     * is not fetched from Next Step server again.
      * @param operationId Operation ID.
+     * @return Validated operation.
      * @throws NextStepServiceException Thrown when communication with Next Step server fails.
      * @throws AuthStepException Thrown when operation state is invalid.
      */
-    private void validateOperationState(String operationId) throws NextStepServiceException, AuthStepException {
-        final ObjectResponse<GetOperationDetailResponse> operationDetail = nextStepClient.getOperationDetail(operationId);
-        final GetOperationDetailResponse operation = operationDetail.getResponseObject();
+    private GetOperationDetailResponse validateOperationState(String operationId) throws NextStepServiceException, AuthStepException {
+        final GetOperationDetailResponse operation = getOperationDetail(operationId);
         validateOperationState(operation);
+        return operation;
+    }
+
+    /**
+     * Update a validated operation in Next Step server. The update is rejected by Next Step server in case the operation
+     * was modified since it was validated. Updated operation detail is received in the response and it replaces
+     * the operation snapshot cached in current HTTP request.
+     * @param operation Validated operation.
+     * @param userId User ID.
+     * @param authStepResult Result of authentication step.
+     * @param authStepResultDescription Description of the result.
+     * @param params Custom parameters.
+     * @return Response with information about operation update result.
+     * @throws NextStepServiceException Thrown when communication with Next Step server fails or operation was modified concurrently.
+     */
+    private ObjectResponse<UpdateOperationResponse> updateOperation(GetOperationDetailResponse operation, String userId, AuthStepResult authStepResult, String authStepResultDescription, List<KeyValueParameter> params) throws NextStepServiceException {
+        final String operationId = operation.getOperationId();
+        final ObjectResponse<GetOperationDetailResponse> operationDetail;
+        try {
+            operationDetail = nextStepClient.updateOperationWithDetail(operationId, userId, getAuthMethodName(), authStepResult, authStepResultDescription, params, operation.getVersion());
+        } catch (NextStepServiceException ex) {
+            invalidateCachedOperation(operationId);
+            throw ex;
+        }
+        final GetOperationDetailResponse updatedOperation = operationDetail.getResponseObject();
+        cacheOperation(updatedOperation);
+        final UpdateOperationResponse response = new UpdateOperationResponse();
+        response.setOperationId(updatedOperation.getOperationId());
+        response.setOperationName(updatedOperation.getOperationName());
+        response.setUserId(updatedOperation.getUserId());
+        response.setResult(updatedOperation.getResult());
+        response.setResultDescription(updatedOperation.getResultDescription());
+        // timestamp of the update response is the time of the update, not the time when the operation was created
+        response.setTimestampCreated(updatedOperation.getTimestampUpdated());
+        response.setTimestampExpires(updatedOperation.getTimestampExpires());
+        response.getSteps().addAll(updatedOperation.getSteps());
+        return new ObjectResponse<>(response);
+    }
+
+    /**
+     * Get operation detail from Next Step server. The operation is loaded only once per HTTP request, repeated
+     * reads within the same request are served from a snapshot stored in request attributes. Each call returns
+     * a new copy of the snapshot, so callers may modify the returned object.
+     * @param operationId Operation ID.
+     * @return Operation detail.
+     * @throws NextStepServiceException Thrown when communication with Next Step server fails.
+     */
+    private GetOperationDetailResponse getOperationDetail(String operationId) throws NextStepServiceException {
+        final Map<String, GetOperationDetailResponse> operationCache = getOperationCache();
+        if (operationCache == null) {
+            // no HTTP request is bound to current thread, caching is not possible
+            return nextStepClient.getOperationDetail(operationId).getResponseObject();
+        }
+        GetOperationDetailResponse operation = operationCache.get(operationId);
+        if (operation == null) {
+            operation = nextStepClient.getOperationDetail(operationId).getResponseObject();
+            if (operation == null) {
+                return null;
+            }
+            operationCache.put(operationId, operation);
+        }
+        return objectMapper.convertValue(operation, GetOperationDetailResponse.class);
+    }
+
+    /**
+     * Store snapshot of an operation in current HTTP request.
+     * @param operation Operation detail.
+     */
+    private void cacheOperation(GetOperationDetailResponse operation) {
+        final Map<String, GetOperationDetailResponse> operationCache = getOperationCache();
+        if (operationCache != null && operation != null) {
+            operationCache.put(operation.getOperationId(), objectMapper.convertValue(operation, GetOperationDetailResponse.class));
+        }
+    }
+
+    /**
+     * Invalidate snapshot of an operation cached in current HTTP request. Needs to be called whenever
+     * the operation is updated in Next Step server.
+     * @param operationId Operation ID.
+     */
+    protected void invalidateCachedOperation(String operationId) {
+        final Map<String, GetOperationDetailResponse> operationCache = getOperationCache();
+        if (operationCache != null) {
+            operationCache.remove(operationId);
+        }
+    }
+
+    /**
+     * Get cache of operation snapshots bound to current HTTP request.
+     * @return Operation cache, or null when no request is bound to current thread.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, GetOperationDetailResponse> getOperationCache() {
+        final RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes == null) {
+            return null;
+        }
+        Map<String, GetOperationDetailResponse> operationCache = (Map<String, GetOperationDetailResponse>) requestAttributes.getAttribute(OPERATION_CACHE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (operationCache == null) {
+            operationCache = new HashMap<>();
+            requestAttributes.setAttribute(OPERATION_CACHE_ATTRIBUTE, operationCache, RequestAttributes.SCOPE_REQUEST);
+        }
+        return operationCache;
     }
 
     /**
@@ -412,13 +554,16 @@ public abstract class AuthMethodController<T extends AuthStepRequest, R extends
      * @param operationId Operation ID.
      */
     private void filterStepsBasedOnActiveAuthMethods(List<AuthStep> authSteps, String userId, String operationId) {
-        Set<AuthStep> authStepsToRemove = new HashSet<>();
+        if (authSteps.isEmpty()) {
+            return;
+        }
+        Set<AuthMethod> authMethods = EnumSet.noneOf(AuthMethod.class);
         for (AuthStep authStep: authSteps) {
-            if (!authMethodQueryService.isAuthMethodEnabled(authStep.getAuthMethod(), userId, operationId)) {
-                authStepsToRemove.add(authStep);
-            }
+            authMethods.add(authStep.getAuthMethod());
         }
-        authSteps.removeAll(authStepsToRemove);
+        // resolve availability of all authentication methods at once
+        final Set<AuthMethod> enabledAuthMethods = authMethodQueryService.getEnabledAuthMethods(authMethods, userId, operationId);
+        authSteps.removeIf(authStep -> !enabledAuthMethods.contains(authStep.getAuthMethod()));
     }
 
     /**
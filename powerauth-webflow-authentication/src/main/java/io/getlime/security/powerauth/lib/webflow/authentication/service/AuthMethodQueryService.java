@@ -16,10 +16,8 @@
 package io.getlime.security.powerauth.lib.webflow.authentication.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import io.getlime.core.rest.model.base.response.ObjectResponse;
 import io.getlime.powerauth.soap.ActivationStatus;
 import io.getlime.powerauth.soap.GetActivationListForUserResponse;
-import io.getlime.security.powerauth.lib.nextstep.client.NextStepClient;
 import io.getlime.security.powerauth.lib.nextstep.model.entity.UserAuthMethodDetail;
 import io.getlime.security.powerauth.lib.nextstep.model.enumeration.AuthMethod;
 import io.getlime.security.powerauth.lib.nextstep.model.exception.NextStepServiceException;
@@ -28,8 +26,7 @@ import io.getlime.security.powerauth.soap.spring.client.PowerAuthServiceClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 /**
  * Service for getting information about current availability of authentication methods.
@@ -39,12 +36,12 @@ import java.util.Map;
 @Service
 public class AuthMethodQueryService {
 
-    private final NextStepClient nextStepClient;
+    private final UserAuthMethodsCache userAuthMethodsCache;
     private final PowerAuthServiceClient powerAuthServiceClient;
 
     @Autowired
-    public AuthMethodQueryService(NextStepClient nextStepClient, PowerAuthServiceClient powerAuthServiceClient, ObjectMapper objectMapper) {
-        this.nextStepClient = nextStepClient;
+    public AuthMethodQueryService(UserAuthMethodsCache userAuthMethodsCache, PowerAuthServiceClient powerAuthServiceClient, ObjectMapper objectMapper) {
+        this.userAuthMethodsCache = userAuthMethodsCache;
         this.powerAuthServiceClient = powerAuthServiceClient;
     }
 
@@ -57,27 +54,41 @@ public class AuthMethodQueryService {
      * @return Whether authentication method is available.
      */
     public boolean isAuthMethodEnabled(AuthMethod authMethod, String userId, String operationId) {
+        return getEnabledAuthMethods(Collections.singleton(authMethod), userId, operationId).contains(authMethod);
+    }
+
+    /**
+     * Resolves which of the given authentication methods are currently available. Availability of all methods
+     * is resolved using a single Next Step request and at most one PowerAuth request.
+     *
+     * @param authMethods Authentication methods to check.
+     * @param userId User ID.
+     * @param operationId Operation ID.
+     * @return Set of authentication methods which are available, subset of requested authentication methods.
+     */
+    public Set<AuthMethod> getEnabledAuthMethods(Collection<AuthMethod> authMethods, String userId, String operationId) {
+        final Set<AuthMethod> enabledMethods = EnumSet.noneOf(AuthMethod.class);
+        if (authMethods.isEmpty()) {
+            return enabledMethods;
+        }
+        final GetUserAuthMethodsResponse userAuthMethods;
         try {
-            ObjectResponse<GetUserAuthMethodsResponse> response = nextStepClient.getAuthMethodsEnabledForUser(userId);
-            List<UserAuthMethodDetail> enabledAuthMethods = response.getResponseObject().getUserAuthMethods();
-            for (UserAuthMethodDetail authMethodDetail: enabledAuthMethods) {
-                if (authMethodDetail.getAuthMethod() == authMethod) {
-                    // Authentication methods without UI are not available
-                    if (!authMethodDetail.getHasUserInterface()) {
-                        return false;
-                    }
-                    // AuthMethod POWERAUTH_TOKEN requires special logic - activation could be BLOCKED at any time
-                    if (authMethod != AuthMethod.POWERAUTH_TOKEN) {
-                        return true;
-                    } else {
-                        return isMobileTokenAuthMethodAvailable(userId, operationId);
-                    }
-                }
-            }
-            return false;
+            userAuthMethods = userAuthMethodsCache.getAuthMethodsEnabledForUser(userId);
         } catch (NextStepServiceException e) {
-            return false;
+            return enabledMethods;
+        }
+        for (UserAuthMethodDetail authMethodDetail: userAuthMethods.getUserAuthMethods()) {
+            final AuthMethod authMethod = authMethodDetail.getAuthMethod();
+            // Authentication methods without UI are not available
+            if (authMethods.contains(authMethod) && authMethodDetail.getHasUserInterface()) {
+                enabledMethods.add(authMethod);
+            }
         }
+        // AuthMethod POWERAUTH_TOKEN requires special logic - activation could be BLOCKED at any time
+        if (enabledMethods.contains(AuthMethod.POWERAUTH_TOKEN) && !isMobileTokenAuthMethodAvailable(userId, getConfiguredActivationId(userAuthMethods))) {
+            enabledMethods.remove(AuthMethod.POWERAUTH_TOKEN);
+        }
+        return enabledMethods;
     }
 
     /**
@@ -87,9 +98,16 @@ public class AuthMethodQueryService {
      * @throws NextStepServiceException Thrown when Next Step request fails.
      */
     public String getActivationIdForMobileTokenAuthMethod(String userId) throws NextStepServiceException {
+        return getConfiguredActivationId(userAuthMethodsCache.getAuthMethodsEnabledForUser(userId));
+    }
+
+    /**
+     * Get the configured activationId for mobile token from user authentication methods.
+     * @param userAuthMethods Authentication methods enabled for the user.
+     * @return Activation ID, null value is returned when activationId is not configured or configuration is invalid.
+     */
+    private String getConfiguredActivationId(GetUserAuthMethodsResponse userAuthMethods) {
         String configuredActivation = null;
-        ObjectResponse<GetUserAuthMethodsResponse> response = nextStepClient.getAuthMethodsEnabledForUser(userId);
-        GetUserAuthMethodsResponse userAuthMethods = response.getResponseObject();
         for (UserAuthMethodDetail authMethodDetail : userAuthMethods.getUserAuthMethods()) {
             if (authMethodDetail.getAuthMethod() == AuthMethod.POWERAUTH_TOKEN) {
                 Map<String, String> config = authMethodDetail.getConfig();
@@ -106,11 +124,10 @@ public class AuthMethodQueryService {
     /**
      * Returns whether Mobile Token authentication method is currently available by querying the PowerAuth backend for ACTIVE activations.
      * @param userId User ID.
-     * @param operationId Operation ID.
+     * @param configuredActivationId Activation ID configured for Mobile Token.
      * @return Whether Mobile Token authentication method is available.
      */
-    private boolean isMobileTokenAuthMethodAvailable(String userId, String operationId) throws NextStepServiceException {
-        String configuredActivationId = getActivationIdForMobileTokenAuthMethod(userId);
+    private boolean isMobileTokenAuthMethodAvailable(String userId, String configuredActivationId) {
         if (configuredActivationId == null) {
             return false;
         }
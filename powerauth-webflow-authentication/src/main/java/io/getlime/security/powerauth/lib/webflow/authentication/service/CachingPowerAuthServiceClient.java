@@ -0,0 +1,252 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.lib.webflow.authentication.service;
+
+import io.getlime.powerauth.soap.GetActivationListForUserResponse;
+import io.getlime.powerauth.soap.GetActivationStatusResponse;
+import io.getlime.powerauth.soap.SignatureType;
+import io.getlime.powerauth.soap.VerifyOfflineSignatureResponse;
+import io.getlime.security.powerauth.soap.spring.client.PowerAuthServiceClient;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * PowerAuth 2.0 Server client which caches activation lookups for a short time. Results of {@link #getActivationStatus(String)}
+ * and {@link #getActivationListForUser(String)} are cached for the configured time to live, concurrent identical lookups
+ * are coalesced into a single SOAP request. Callers which need the current activation status can request a forced
+ * refresh, cached activation status and cached activation list of the user are also dropped after offline signature
+ * verification because verification can change the activation status.
+ * <p>
+ * Cached responses are shared, callers must not modify them.
+ *
+ * @author Roman Strobl, roman.strobl@lime-company.eu
+ */
+public class CachingPowerAuthServiceClient extends PowerAuthServiceClient {
+
+    private final SingleFlightCache<GetActivationStatusResponse> activationStatusCache;
+    private final SingleFlightCache<List<GetActivationListForUserResponse.Activations>> activationListCache;
+
+    /**
+     * Create caching PowerAuth 2.0 Server client.
+     *
+     * @param timeToLive Time to live of cached responses in milliseconds.
+     * @param maxSize Maximum number of cached responses of each type, use 0 to disable caching.
+     */
+    public CachingPowerAuthServiceClient(long timeToLive, int maxSize) {
+        this.activationStatusCache = new SingleFlightCache<>(timeToLive, maxSize);
+        this.activationListCache = new SingleFlightCache<>(timeToLive, maxSize);
+    }
+
+    @Override
+    public GetActivationStatusResponse getActivationStatus(String activationId) {
+        return getActivationStatus(activationId, false);
+    }
+
+    /**
+     * Get activation status, optionally bypassing the cache.
+     *
+     * @param activationId Activation ID.
+     * @param forceRefresh Whether the activation status should be always loaded from PowerAuth 2.0 Server.
+     * @return Activation status.
+     */
+    public GetActivationStatusResponse getActivationStatus(String activationId, boolean forceRefresh) {
+        return activationStatusCache.get(activationId, forceRefresh, () -> super.getActivationStatus(activationId));
+    }
+
+    @Override
+    public List<GetActivationListForUserResponse.Activations> getActivationListForUser(String userId) {
+        return getActivationListForUser(userId, false);
+    }
+
+    /**
+     * Get list of activations for a user, optionally bypassing the cache.
+     *
+     * @param userId User ID.
+     * @param forceRefresh Whether the activation list should be always loaded from PowerAuth 2.0 Server.
+     * @return List of activations.
+     */
+    public List<GetActivationListForUserResponse.Activations> getActivationListForUser(String userId, boolean forceRefresh) {
+        return activationListCache.get(userId, forceRefresh, () -> super.getActivationListForUser(userId));
+    }
+
+    @Override
+    public VerifyOfflineSignatureResponse verifyOfflineSignature(String activationId, String data, String signature, SignatureType signatureType) {
+        VerifyOfflineSignatureResponse response = null;
+        try {
+            response = super.verifyOfflineSignature(activationId, data, signature, signatureType);
+            return response;
+        } finally {
+            // failed verification can block the activation, the activation status is also part of the activation list of the user
+            invalidateActivation(activationId);
+            if (response != null && response.getUserId() != null) {
+                invalidateUser(response.getUserId());
+            }
+        }
+    }
+
+    /**
+     * Drop cached status of given activation.
+     *
+     * @param activationId Activation ID.
+     */
+    public void invalidateActivation(String activationId) {
+        activationStatusCache.invalidate(activationId);
+    }
+
+    /**
+     * Drop cached activation list of given user.
+     *
+     * @param userId User ID.
+     */
+    public void invalidateUser(String userId) {
+        activationListCache.invalidate(userId);
+    }
+
+    /**
+     * Get number of lookups served from the cache.
+     * @return Hit count.
+     */
+    public long getHitCount() {
+        return activationStatusCache.hitCount.get() + activationListCache.hitCount.get();
+    }
+
+    /**
+     * Get number of lookups which required a request to PowerAuth 2.0 Server.
+     * @return Miss count.
+     */
+    public long getMissCount() {
+        return activationStatusCache.missCount.get() + activationListCache.missCount.get();
+    }
+
+    /**
+     * Get number of lookups which waited for a concurrent identical request instead of sending a new request.
+     * @return Coalesced lookup count.
+     */
+    public long getCoalescedCount() {
+        return activationStatusCache.coalescedCount.get() + activationListCache.coalescedCount.get();
+    }
+
+    /**
+     * Bounded cache with time to live of entries, loads of the same key are executed only once at a time.
+     *
+     * @param <T> Type of cached values.
+     */
+    private static class SingleFlightCache<T> {
+
+        private final long timeToLive;
+        private final Map<String, CacheEntry<T>> entries;
+        private final ConcurrentMap<String, CompletableFuture<T>> inFlight = new ConcurrentHashMap<>();
+
+        private final AtomicLong hitCount = new AtomicLong();
+        private final AtomicLong missCount = new AtomicLong();
+        private final AtomicLong coalescedCount = new AtomicLong();
+
+        SingleFlightCache(long timeToLive, final int maxSize) {
+            this.timeToLive = timeToLive;
+            this.entries = new LinkedHashMap<String, CacheEntry<T>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CacheEntry<T>> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        T get(String key, boolean forceRefresh, Supplier<T> loader) {
+            if (!forceRefresh) {
+                synchronized (entries) {
+                    final CacheEntry<T> entry = entries.get(key);
+                    if (entry != null && entry.expires > System.currentTimeMillis()) {
+                        hitCount.incrementAndGet();
+                        return entry.value;
+                    }
+                }
+            }
+            final CompletableFuture<T> future = new CompletableFuture<>();
+            if (forceRefresh) {
+                inFlight.put(key, future);
+            } else {
+                final CompletableFuture<T> existing = inFlight.putIfAbsent(key, future);
+                if (existing != null) {
+                    coalescedCount.incrementAndGet();
+                    return join(existing);
+                }
+            }
+            missCount.incrementAndGet();
+            try {
+                final T value = loader.get();
+                synchronized (entries) {
+                    // value loaded before an invalidation is returned to the caller but it is not cached
+                    if (inFlight.remove(key, future)) {
+                        entries.put(key, new CacheEntry<>(value, System.currentTimeMillis() + timeToLive));
+                    }
+                }
+                future.complete(value);
+                return value;
+            } catch (RuntimeException | Error ex) {
+                future.completeExceptionally(ex);
+                throw ex;
+            } finally {
+                inFlight.remove(key, future);
+            }
+        }
+
+        void invalidate(String key) {
+            synchronized (entries) {
+                entries.remove(key);
+                inFlight.remove(key);
+            }
+        }
+
+        private T join(CompletableFuture<T> future) {
+            try {
+                return future.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+                if (ex.getCause() instanceof Error) {
+                    throw (Error) ex.getCause();
+                }
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Cached value with its expiration time.
+     *
+     * @param <T> Type of cached value.
+     */
+    private static class CacheEntry<T> {
+
+        private final T value;
+        private final long expires;
+
+        CacheEntry(T value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+
+}
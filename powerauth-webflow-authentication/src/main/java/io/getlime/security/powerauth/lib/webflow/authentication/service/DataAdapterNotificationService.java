@@ -0,0 +1,218 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.lib.webflow.authentication.service;
+
+import io.getlime.security.powerauth.lib.dataadapter.client.DataAdapterClient;
+import io.getlime.security.powerauth.lib.dataadapter.client.DataAdapterClientErrorException;
+import io.getlime.security.powerauth.lib.dataadapter.model.entity.FormDataChange;
+import io.getlime.security.powerauth.lib.dataadapter.model.entity.OperationChange;
+import io.getlime.security.powerauth.lib.dataadapter.model.request.FormDataChangeNotificationRequest;
+import io.getlime.security.powerauth.lib.dataadapter.model.request.OperationChangeNotificationRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Service which delivers informational notifications about operation and formData changes to Data Adapter asynchronously.
+ * Notifications are queued in a bounded queue and a background thread sends them to Data Adapter in batches, so that
+ * the notifications do not delay responses to the user. Notifications which can not be delivered are logged and dropped.
+ *
+ * @author Roman Strobl, roman.strobl@lime-company.eu
+ */
+public class DataAdapterNotificationService {
+
+    private final DataAdapterClient dataAdapterClient;
+    private final BlockingQueue<Object> queue;
+    private final int batchSize;
+    private final long flushInterval;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * Create notification service and start the background thread.
+     *
+     * @param dataAdapterClient Data Adapter client.
+     * @param queueCapacity Maximum number of queued notifications, new notifications are dropped when the queue is full.
+     * @param batchSize Maximum number of notifications sent in a single request.
+     * @param flushInterval Maximum time in milliseconds to wait for more notifications before a partial batch is sent.
+     */
+    public DataAdapterNotificationService(DataAdapterClient dataAdapterClient, int queueCapacity, int batchSize, long flushInterval) {
+        this.dataAdapterClient = dataAdapterClient;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.worker = new Thread(this::processQueue, "data-adapter-notification-sender");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Queue notification about operation change.
+     *
+     * @param operationChange Operation change.
+     * @param userId User ID.
+     * @param operationId Operation ID.
+     */
+    public void operationChangedNotification(OperationChange operationChange, String userId, String operationId) {
+        enqueue(new OperationChangeNotificationRequest(userId, operationId, operationChange));
+    }
+
+    /**
+     * Queue notification about formData change.
+     *
+     * @param formDataChange FormData change.
+     * @param userId User ID.
+     * @param operationId Operation ID.
+     */
+    public void formDataChangedNotification(FormDataChange formDataChange, String userId, String operationId) {
+        enqueue(new FormDataChangeNotificationRequest(userId, operationId, formDataChange));
+    }
+
+    /**
+     * Stop the background thread, notifications remaining in the queue are sent before the thread ends.
+     */
+    public void close() {
+        running = false;
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(Object notification) {
+        if (!queue.offer(notification)) {
+            rejectedCount.incrementAndGet();
+            Logger.getLogger(this.getClass().getName()).log(Level.WARNING, "Data Adapter notification queue is full, notification was dropped");
+        }
+    }
+
+    /**
+     * Collect notifications into batches and send them until the service is closed and the queue is empty.
+     */
+    private void processQueue() {
+        final List<Object> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                final Object first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // wait a short time for more notifications to fill the batch
+                final long deadline = System.currentTimeMillis() + flushInterval;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    final long remaining = deadline - System.currentTimeMillis();
+                    if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                        break;
+                    }
+                    final Object next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                send(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex) {
+                Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error occurred while sending Data Adapter notifications", ex);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Send a batch of notifications, operation changes and formData changes are sent in separate requests.
+     *
+     * @param batch Notifications.
+     */
+    private void send(List<Object> batch) {
+        final List<OperationChangeNotificationRequest> operationChanges = new ArrayList<>();
+        final List<FormDataChangeNotificationRequest> formDataChanges = new ArrayList<>();
+        for (Object notification: batch) {
+            if (notification instanceof OperationChangeNotificationRequest) {
+                operationChanges.add((OperationChangeNotificationRequest) notification);
+            } else {
+                formDataChanges.add((FormDataChangeNotificationRequest) notification);
+            }
+        }
+        if (!formDataChanges.isEmpty()) {
+            try {
+                dataAdapterClient.formDataChangedNotifications(formDataChanges);
+                sentCount.addAndGet(formDataChanges.size());
+            } catch (DataAdapterClientErrorException ex) {
+                failedCount.addAndGet(formDataChanges.size());
+                Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error while notifying Data Adapter", ex);
+            }
+        }
+        if (!operationChanges.isEmpty()) {
+            try {
+                dataAdapterClient.operationChangedNotifications(operationChanges);
+                sentCount.addAndGet(operationChanges.size());
+            } catch (DataAdapterClientErrorException ex) {
+                failedCount.addAndGet(operationChanges.size());
+                Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error while notifying Data Adapter", ex);
+            }
+        }
+    }
+
+    /**
+     * Get number of notifications waiting in the queue.
+     * @return Queue depth.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Get number of notifications delivered to Data Adapter.
+     * @return Sent notification count.
+     */
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    /**
+     * Get number of notifications which could not be delivered to Data Adapter.
+     * @return Failed notification count.
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Get number of notifications dropped because the queue was full.
+     * @return Rejected notification count.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+}
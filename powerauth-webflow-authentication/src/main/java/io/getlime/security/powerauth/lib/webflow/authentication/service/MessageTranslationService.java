@@ -78,6 +78,23 @@ public class MessageTranslationService {
         }
     }
 
+    /**
+     * Translate only the title of formData, used for operation summaries which contain only the title.
+     *
+     * @param formData Form data.
+     */
+    public void translateTitle(OperationFormData formData) {
+        if (formData==null || formData.getTitle()==null) {
+            return;
+        }
+        OperationFormAttribute title = formData.getTitle();
+        String titleLabel = localize(title.getId());
+        if (titleLabel != null) {
+            String translatedTitle = translateMessage(titleLabel, createIdValueMap(formData));
+            formData.addTitle(title.getId(), translatedTitle);
+        }
+    }
+
     /**
      * Localize form fields.
      * @param formData Form data.
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2017 Lime - HighTech Solutions s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.getlime.security.powerauth.lib.webflow.authentication.service;
+
+import io.getlime.security.powerauth.lib.nextstep.client.NextStepClient;
+import io.getlime.security.powerauth.lib.nextstep.client.UserAuthMethodsChangeListener;
+import io.getlime.security.powerauth.lib.nextstep.model.exception.NextStepServiceException;
+import io.getlime.security.powerauth.lib.nextstep.model.response.GetUserAuthMethodsResponse;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of authentication methods enabled for users, the cache is used to avoid repeated requests to Next Step server
+ * for the same user. Entries expire after configured time to live, the number of entries is bounded and least recently
+ * used entries are evicted when the cache is full. Concurrent loads for the same user are coalesced into a single request.
+ * Entry of a user is invalidated when authentication methods of the user are changed using {@link NextStepClient}.
+ * <p>
+ * Each load is registered as the current load of the user and its response is stored only in case the load is still
+ * registered when it completes. Invalidation drops the registration, so a response loaded before the change is never
+ * stored after the invalidation.
+ * <p>
+ * Responses stored in the cache are shared, callers must not modify them.
+ *
+ * @author Roman Strobl, roman.strobl@lime-company.eu
+ */
+public class UserAuthMethodsCache implements UserAuthMethodsChangeListener {
+
+    private final NextStepClient nextStepClient;
+    private final long timeToLive;
+    private final Map<String, CacheEntry> entries;
+    private final ConcurrentMap<String, CompletableFuture<GetUserAuthMethodsResponse>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Create cache of authentication methods enabled for users.
+     *
+     * @param nextStepClient Next Step client used for loading of authentication methods.
+     * @param maxSize Maximum number of cached users, use 0 to disable caching.
+     * @param timeToLive Time to live of cache entries in milliseconds.
+     */
+    public UserAuthMethodsCache(NextStepClient nextStepClient, final int maxSize, long timeToLive) {
+        this.nextStepClient = nextStepClient;
+        this.timeToLive = timeToLive;
+        this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                if (size() > maxSize) {
+                    evictionCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get authentication methods enabled for given user. Cached response is returned in case it is available
+     * and it is not expired, otherwise the response is loaded from Next Step server. In case the response for the same
+     * user is already being loaded, the caller waits for the pending load.
+     *
+     * @param userId User ID.
+     * @return Authentication methods enabled for the user.
+     * @throws NextStepServiceException Thrown when Next Step request fails.
+     */
+    public GetUserAuthMethodsResponse getAuthMethodsEnabledForUser(String userId) throws NextStepServiceException {
+        synchronized (entries) {
+            final CacheEntry entry = entries.get(userId);
+            if (entry != null) {
+                if (entry.expires > System.currentTimeMillis()) {
+                    hitCount.incrementAndGet();
+                    return entry.response;
+                }
+                entries.remove(userId);
+                evictionCount.incrementAndGet();
+            }
+        }
+        final CompletableFuture<GetUserAuthMethodsResponse> future = new CompletableFuture<>();
+        final CompletableFuture<GetUserAuthMethodsResponse> existing = inFlight.putIfAbsent(userId, future);
+        if (existing != null) {
+            coalescedCount.incrementAndGet();
+            return join(existing);
+        }
+        missCount.incrementAndGet();
+        try {
+            final GetUserAuthMethodsResponse response = nextStepClient.getAuthMethodsEnabledForUser(userId).getResponseObject();
+            synchronized (entries) {
+                // the load is no longer registered in case the user was invalidated while the response was loaded
+                if (inFlight.remove(userId, future)) {
+                    entries.put(userId, new CacheEntry(response, System.currentTimeMillis() + timeToLive));
+                }
+            }
+            future.complete(response);
+            return response;
+        } catch (NextStepServiceException | RuntimeException | Error ex) {
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(userId, future);
+        }
+    }
+
+    /**
+     * Invalidate cached authentication methods for given user.
+     *
+     * @param userId User ID.
+     */
+    public void invalidate(String userId) {
+        synchronized (entries) {
+            entries.remove(userId);
+            inFlight.remove(userId);
+        }
+    }
+
+    /**
+     * Invalidate all cached entries.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            inFlight.clear();
+        }
+    }
+
+    @Override
+    public void userAuthMethodsChanged(String userId) {
+        invalidate(userId);
+    }
+
+    /**
+     * Get number of requests served from the cache.
+     * @return Hit count.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Get number of requests which required loading from Next Step server.
+     * @return Miss count.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Get number of requests which waited for a pending load for the same user instead of sending a new request.
+     * @return Coalesced request count.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * Get number of entries evicted due to size limit or expiration.
+     * @return Eviction count.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Get ratio of requests served from the cache.
+     * @return Hit rate between 0 and 1.
+     */
+    public double getHitRate() {
+        final long hits = hitCount.get();
+        final long total = hits + missCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Get current number of cached entries.
+     * @return Number of cached entries.
+     */
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Wait for a pending load and return its response.
+     *
+     * @param future Pending load.
+     * @return Authentication methods enabled for the user.
+     * @throws NextStepServiceException Thrown when the pending load failed.
+     */
+    private GetUserAuthMethodsResponse join(CompletableFuture<GetUserAuthMethodsResponse> future) throws NextStepServiceException {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof NextStepServiceException) {
+                throw (NextStepServiceException) ex.getCause();
+            }
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Cached response with its expiration time.
+     */
+    private static class CacheEntry {
+
+        private final GetUserAuthMethodsResponse response;
+        private final long expires;
+
+        CacheEntry(GetUserAuthMethodsResponse response, long expires) {
+            this.response = response;
+            this.expires = expires;
+        }
+    }
+
+}
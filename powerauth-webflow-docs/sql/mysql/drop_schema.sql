@@ -1,5 +1,8 @@
 DROP TABLE IF EXISTS da_sms_authorization;
 DROP TABLE IF EXISTS ns_step_definition;
+DROP TABLE IF EXISTS ns_scheduler_lease;
+DROP TABLE IF EXISTS ns_operation_history_archive;
+DROP TABLE IF EXISTS ns_operation_archive;
 DROP TABLE IF EXISTS ns_operation_history;
 DROP TABLE IF EXISTS ns_operation;
 DROP TABLE IF EXISTS ns_user_prefs;
@@ -0,0 +1,8 @@
+-- Migration of existing operations for allocation of operation history IDs from column ns_operation.last_result_id.
+-- The script needs to be executed before Next Step is started with the new version.
+
+-- Column last_result_id stores the last history ID allocated for the operation.
+ALTER TABLE ns_operation ADD last_result_id BIGINT DEFAULT 0 NOT NULL AFTER timestamp_expires;
+
+-- New history IDs are allocated after the highest history ID of each existing operation.
+UPDATE ns_operation o SET last_result_id = (SELECT COALESCE(MAX(h.result_id), 0) FROM ns_operation_history h WHERE h.operation_id = o.operation_id);
@@ -0,0 +1,47 @@
+-- Migration of existing operations for failing of expired operations and archiving of finished operations in background.
+-- The script needs to be executed after scripts migration_operation_version.sql and migration_operation_summary.sql and before Next Step is started with the new version.
+
+-- Index ns_operation_expiration is used by the background job which fails expired operations and archives finished operations.
+CREATE INDEX ns_operation_expiration ON ns_operation (result, timestamp_expires);
+
+-- Table ns_operation_archive stores finished operations moved from table ns_operation after the retention period.
+CREATE TABLE ns_operation_archive (
+  operation_id              VARCHAR(256) PRIMARY KEY,
+  operation_name            VARCHAR(32),
+  operation_data            TEXT,
+  operation_form_data       TEXT,
+  user_id                   VARCHAR(256),
+  result                    VARCHAR(32),
+  timestamp_created         TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  timestamp_expires         TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  last_result_id            BIGINT DEFAULT 0 NOT NULL,
+  auth_failure_counts       VARCHAR(256),
+  failed_auth_methods       VARCHAR(256),
+  last_auth_step_result     VARCHAR(32),
+  terminal_result           VARCHAR(32),
+  version                   BIGINT DEFAULT 0 NOT NULL
+) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci;
+
+-- Table ns_operation_history_archive stores history of operations moved to table ns_operation_archive.
+CREATE TABLE ns_operation_history_archive (
+  operation_id                VARCHAR(256),
+  result_id                   INTEGER,
+  request_auth_method         VARCHAR(32),
+  request_auth_step_result    VARCHAR(32),
+  request_params              VARCHAR(4096),
+  response_result             VARCHAR(32),
+  response_result_description VARCHAR(256),
+  response_steps              VARCHAR(4096),
+  response_timestamp_created  TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  response_timestamp_expires  TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  chosen_auth_method          VARCHAR(32),
+  PRIMARY KEY (operation_id, result_id)
+) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci;
+
+-- Table ns_scheduler_lease stores leases which ensure that a background job runs only on a single Next Step node at a time.
+-- Rows are created by Next Step when a lease is acquired for the first time.
+CREATE TABLE ns_scheduler_lease (
+  lease_name                VARCHAR(32) PRIMARY KEY,
+  owner                     VARCHAR(256),
+  timestamp_expires         TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci;
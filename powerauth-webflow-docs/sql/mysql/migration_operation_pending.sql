@@ -0,0 +1,5 @@
+-- Migration of existing operations for queries of pending operations filtered in table ns_operation.
+-- The script needs to be executed before Next Step is started with the new version.
+
+-- Index ns_operation_pending is used for queries of pending operations for a user.
+CREATE INDEX ns_operation_pending ON ns_operation (user_id, result, timestamp_expires);
@@ -0,0 +1,33 @@
+-- Migration of existing operations for the summary of operation history stored in table ns_operation.
+-- The script needs to be executed after script migration_last_result_id.sql and before Next Step is started with the new version.
+
+-- Columns with the summary of operation history.
+ALTER TABLE ns_operation
+  ADD auth_failure_counts VARCHAR(256) AFTER last_result_id,
+  ADD failed_auth_methods VARCHAR(256) AFTER auth_failure_counts,
+  ADD last_auth_step_result VARCHAR(32) AFTER failed_auth_methods,
+  ADD terminal_result VARCHAR(32) AFTER last_auth_step_result;
+
+-- Number of authorization failures of each authentication method in format METHOD:count;METHOD:count.
+UPDATE ns_operation o SET auth_failure_counts = (
+  SELECT GROUP_CONCAT(CONCAT(f.request_auth_method, ':', f.failure_count) SEPARATOR ';')
+  FROM (SELECT h.operation_id, h.request_auth_method, COUNT(*) AS failure_count FROM ns_operation_history h
+        WHERE h.request_auth_method IS NOT NULL AND h.request_auth_step_result = 'AUTH_FAILED'
+        GROUP BY h.operation_id, h.request_auth_method) f
+  WHERE f.operation_id = o.operation_id);
+
+-- Authentication methods which failed completely in format METHOD;METHOD.
+UPDATE ns_operation o SET failed_auth_methods = (
+  SELECT GROUP_CONCAT(DISTINCT h.request_auth_method SEPARATOR ';') FROM ns_operation_history h
+  WHERE h.operation_id = o.operation_id AND h.request_auth_method IS NOT NULL AND h.request_auth_step_result = 'AUTH_METHOD_FAILED');
+
+-- Authentication step result of the last history record.
+UPDATE ns_operation o SET last_auth_step_result = (
+  SELECT h.request_auth_step_result FROM ns_operation_history h
+  WHERE h.operation_id = o.operation_id AND h.result_id = (SELECT MAX(h2.result_id) FROM ns_operation_history h2 WHERE h2.operation_id = o.operation_id));
+
+-- The first final result of the operation.
+UPDATE ns_operation o SET terminal_result = (
+  SELECT h.response_result FROM ns_operation_history h
+  WHERE h.operation_id = o.operation_id AND h.result_id = (SELECT MIN(h2.result_id) FROM ns_operation_history h2
+    WHERE h2.operation_id = o.operation_id AND h2.response_result IN ('DONE', 'FAILED')));
@@ -0,0 +1,8 @@
+-- Migration of existing operations for user input stored separately from form data in table ns_operation.
+-- The script needs to be executed after script migration_operation_archive.sql and before Next Step is started with the new version.
+
+-- Column operation_user_input stores the user input of the operation form data.
+ALTER TABLE ns_operation ADD operation_user_input TEXT;
+
+-- Archived operations store the same column.
+ALTER TABLE ns_operation_archive ADD operation_user_input TEXT;
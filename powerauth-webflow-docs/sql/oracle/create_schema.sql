@@ -89,12 +89,29 @@ CREATE TABLE ns_operation (
   operation_name            VARCHAR(32),
   operation_data            CLOB,
   operation_form_data       CLOB,
+  operation_user_input      CLOB,
+  operation_title           CLOB,
   user_id                   VARCHAR(256),
   result                    VARCHAR(32),
   timestamp_created         TIMESTAMP,
-  timestamp_expires         TIMESTAMP
+  timestamp_expires         TIMESTAMP,
+  last_result_id            NUMBER(19) DEFAULT 0 NOT NULL,
+  auth_failure_counts       VARCHAR(256),
+  failed_auth_methods       VARCHAR(256),
+  last_auth_step_result     VARCHAR(32),
+  terminal_result           VARCHAR(32),
+  version                   NUMBER(19) DEFAULT 0 NOT NULL
 );
 
+-- Index ns_operation_pending is used for queries of pending operations for a user.
+CREATE INDEX ns_operation_pending ON ns_operation (user_id, result, timestamp_expires);
+
+-- Index ns_operation_pending_created is used for pages of pending operations for a user ordered by creation time.
+CREATE INDEX ns_operation_pending_created ON ns_operation (user_id, result, timestamp_created);
+
+-- Index ns_operation_expiration is used by the background job which fails expired operations and archives finished operations.
+CREATE INDEX ns_operation_expiration ON ns_operation (result, timestamp_expires);
+
 -- Table ns_operation_history stores all changes of operations.
 -- Data in this table needs to be loaded before Web Flow is started.
 CREATE TABLE ns_operation_history (
@@ -106,6 +123,7 @@ CREATE TABLE ns_operation_history (
   response_result             VARCHAR(32),
   response_result_description VARCHAR(256),
   response_steps              VARCHAR(4000),
+  response_auth_methods       VARCHAR(256),
   response_timestamp_created  TIMESTAMP,
   response_timestamp_expires  TIMESTAMP,
   chosen_auth_method          VARCHAR(32),
@@ -114,6 +132,50 @@ CREATE TABLE ns_operation_history (
   CONSTRAINT history_auth_method_fk FOREIGN KEY (request_auth_method) REFERENCES ns_auth_method (auth_method)
 );
 
+-- Table ns_operation_archive stores finished operations moved from table ns_operation after the retention period.
+CREATE TABLE ns_operation_archive (
+  operation_id              VARCHAR(256) PRIMARY KEY,
+  operation_name            VARCHAR(32),
+  operation_data            CLOB,
+  operation_form_data       CLOB,
+  operation_user_input      CLOB,
+  operation_title           CLOB,
+  user_id                   VARCHAR(256),
+  result                    VARCHAR(32),
+  timestamp_created         TIMESTAMP,
+  timestamp_expires         TIMESTAMP,
+  last_result_id            NUMBER(19) DEFAULT 0 NOT NULL,
+  auth_failure_counts       VARCHAR(256),
+  failed_auth_methods       VARCHAR(256),
+  last_auth_step_result     VARCHAR(32),
+  terminal_result           VARCHAR(32),
+  version                   NUMBER(19) DEFAULT 0 NOT NULL
+);
+
+-- Table ns_operation_history_archive stores history of operations moved to table ns_operation_archive.
+CREATE TABLE ns_operation_history_archive (
+  operation_id                VARCHAR(256),
+  result_id                   INTEGER,
+  request_auth_method         VARCHAR(32),
+  request_auth_step_result    VARCHAR(32),
+  request_params              VARCHAR(4000),
+  response_result             VARCHAR(32),
+  response_result_description VARCHAR(256),
+  response_steps              VARCHAR(4000),
+  response_auth_methods       VARCHAR(256),
+  response_timestamp_created  TIMESTAMP,
+  response_timestamp_expires  TIMESTAMP,
+  chosen_auth_method          VARCHAR(32),
+  CONSTRAINT history_archive_pk PRIMARY KEY (operation_id, result_id)
+);
+
+-- Table ns_scheduler_lease stores leases which ensure that a background job runs only on a single Next Step node at a time.
+CREATE TABLE ns_scheduler_lease (
+  lease_name                VARCHAR(32) PRIMARY KEY,
+  owner                     VARCHAR(256),
+  timestamp_expires         TIMESTAMP
+);
+
 -- Table ns_step_definition stores definitions of authentication/authorization steps.
 -- Data in this table needs to be loaded before Web Flow is started.
 CREATE TABLE ns_step_definition (
@@ -12,6 +12,27 @@ EXCEPTION
 END;
 /
 
+BEGIN
+   EXECUTE IMMEDIATE 'DROP TABLE ns_scheduler_lease';
+EXCEPTION
+   WHEN OTHERS THEN NULL;
+END;
+/
+
+BEGIN
+   EXECUTE IMMEDIATE 'DROP TABLE ns_operation_history_archive';
+EXCEPTION
+   WHEN OTHERS THEN NULL;
+END;
+/
+
+BEGIN
+   EXECUTE IMMEDIATE 'DROP TABLE ns_operation_archive';
+EXCEPTION
+   WHEN OTHERS THEN NULL;
+END;
+/
+
 BEGIN
    EXECUTE IMMEDIATE 'DROP TABLE ns_operation_history';
 EXCEPTION
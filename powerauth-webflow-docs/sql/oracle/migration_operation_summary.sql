@@ -0,0 +1,36 @@
+-- Migration of existing operations for the summary of operation history stored in table ns_operation.
+-- The script needs to be executed after script migration_last_result_id.sql and before Next Step is started with the new version.
+
+-- Columns with the summary of operation history.
+ALTER TABLE ns_operation ADD (
+  auth_failure_counts       VARCHAR(256),
+  failed_auth_methods       VARCHAR(256),
+  last_auth_step_result     VARCHAR(32),
+  terminal_result           VARCHAR(32)
+);
+
+-- Number of authorization failures of each authentication method in format METHOD:count;METHOD:count.
+UPDATE ns_operation o SET auth_failure_counts = (
+  SELECT LISTAGG(f.request_auth_method || ':' || f.failure_count, ';') WITHIN GROUP (ORDER BY f.request_auth_method)
+  FROM (SELECT h.operation_id, h.request_auth_method, COUNT(*) AS failure_count FROM ns_operation_history h
+        WHERE h.request_auth_method IS NOT NULL AND h.request_auth_step_result = 'AUTH_FAILED'
+        GROUP BY h.operation_id, h.request_auth_method) f
+  WHERE f.operation_id = o.operation_id);
+
+-- Authentication methods which failed completely in format METHOD;METHOD.
+UPDATE ns_operation o SET failed_auth_methods = (
+  SELECT LISTAGG(m.request_auth_method, ';') WITHIN GROUP (ORDER BY m.request_auth_method)
+  FROM (SELECT DISTINCT h.operation_id, h.request_auth_method FROM ns_operation_history h
+        WHERE h.request_auth_method IS NOT NULL AND h.request_auth_step_result = 'AUTH_METHOD_FAILED') m
+  WHERE m.operation_id = o.operation_id);
+
+-- Authentication step result of the last history record.
+UPDATE ns_operation o SET last_auth_step_result = (
+  SELECT h.request_auth_step_result FROM ns_operation_history h
+  WHERE h.operation_id = o.operation_id AND h.result_id = (SELECT MAX(h2.result_id) FROM ns_operation_history h2 WHERE h2.operation_id = o.operation_id));
+
+-- The first final result of the operation.
+UPDATE ns_operation o SET terminal_result = (
+  SELECT h.response_result FROM ns_operation_history h
+  WHERE h.operation_id = o.operation_id AND h.result_id = (SELECT MIN(h2.result_id) FROM ns_operation_history h2
+    WHERE h2.operation_id = o.operation_id AND h2.response_result IN ('DONE', 'FAILED')));
@@ -0,0 +1,15 @@
+-- Migration of existing operations for the operation title stored in table ns_operation.
+-- The script needs to be executed after script migration_operation_user_input.sql and before Next Step is started with the new version.
+
+-- Column operation_title stores the serialized title from operation form data.
+ALTER TABLE ns_operation ADD operation_title CLOB;
+
+-- Archived operations store the same column.
+ALTER TABLE ns_operation_archive ADD operation_title CLOB;
+
+-- Index ns_operation_pending_created is used for pages of pending operations for a user ordered by creation time.
+CREATE INDEX ns_operation_pending_created ON ns_operation (user_id, result, timestamp_created);
+
+-- Title is extracted from form data of pending operations, finished operations are not listed anymore.
+UPDATE ns_operation SET operation_title = JSON_QUERY(operation_form_data, '$.title')
+WHERE result = 'CONTINUE' AND operation_form_data IS JSON;
@@ -0,0 +1,5 @@
+-- Migration of existing operations for optimistic locking of operations in table ns_operation.
+-- The script needs to be executed before Next Step is started with the new version.
+
+-- Column version stores the version of the operation which is checked when the operation is updated.
+ALTER TABLE ns_operation ADD version NUMBER(19) DEFAULT 0 NOT NULL;
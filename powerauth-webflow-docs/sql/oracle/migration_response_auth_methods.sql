@@ -0,0 +1,8 @@
+-- Migration of existing operation history for authentication methods of the next step stored in table ns_operation_history.
+-- The script needs to be executed after script migration_operation_archive.sql and before Next Step is started with the new version.
+
+-- Column response_auth_methods stores authentication methods available in the next step in format METHOD;METHOD.
+ALTER TABLE ns_operation_history ADD response_auth_methods VARCHAR(256);
+
+-- Archived operation history stores the same column.
+ALTER TABLE ns_operation_history_archive ADD response_auth_methods VARCHAR(256);
@@ -1,8 +1,10 @@
 package io.getlime.security.powerauth.app.webflow.configuration;
 
 import io.getlime.push.client.PushServerClient;
+import io.getlime.security.powerauth.lib.webflow.authentication.mtoken.service.PushMessageOutbox;
+import io.getlime.security.powerauth.lib.webflow.authentication.mtoken.service.PushMessageOutboxConfiguration;
+import io.getlime.security.powerauth.lib.webflow.authentication.service.CachingPowerAuthServiceClient;
 import io.getlime.security.powerauth.lib.webflow.authentication.service.SSLConfigurationService;
-import io.getlime.security.powerauth.soap.spring.client.PowerAuthServiceClient;
 import org.apache.ws.security.WSConstants;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -40,6 +42,30 @@ public class PowerAuthWebServiceConfiguration {
     @Value("${powerauth.service.ssl.acceptInvalidSslCertificate}")
     private boolean acceptInvalidSslCertificate;
 
+    @Value("${powerauth.service.cache.timeToLive}")
+    private long cacheTimeToLive;
+
+    @Value("${powerauth.service.cache.maxSize}")
+    private int cacheMaxSize;
+
+    @Value("${powerauth.push.outbox.queueCapacity}")
+    private int pushOutboxQueueCapacity;
+
+    @Value("${powerauth.push.outbox.workerThreads}")
+    private int pushOutboxWorkerThreads;
+
+    @Value("${powerauth.push.outbox.batchSize}")
+    private int pushOutboxBatchSize;
+
+    @Value("${powerauth.push.outbox.maxAttempts}")
+    private int pushOutboxMaxAttempts;
+
+    @Value("${powerauth.push.outbox.retryBackoff}")
+    private long pushOutboxRetryBackoff;
+
+    @Value("${powerauth.push.outbox.deduplicationWindow}")
+    private long pushOutboxDeduplicationWindow;
+
     @Autowired
     public PowerAuthWebServiceConfiguration(SSLConfigurationService sslConfigurationService) {
         this.sslConfigurationService = sslConfigurationService;
@@ -64,8 +90,8 @@ public class PowerAuthWebServiceConfiguration {
     }
 
     @Bean
-    public PowerAuthServiceClient powerAuthClient(Jaxb2Marshaller marshaller) {
-        PowerAuthServiceClient client = new PowerAuthServiceClient();
+    public CachingPowerAuthServiceClient powerAuthClient(Jaxb2Marshaller marshaller) {
+        CachingPowerAuthServiceClient client = new CachingPowerAuthServiceClient(cacheTimeToLive, cacheMaxSize);
         client.setDefaultUri(powerAuthServiceUrl);
         client.setMarshaller(marshaller);
         client.setUnmarshaller(marshaller);
@@ -91,4 +117,16 @@ public class PowerAuthWebServiceConfiguration {
         return client;
     }
 
+    @Bean
+    public PushMessageOutbox pushMessageOutbox(PushServerClient pushServerClient) {
+        PushMessageOutboxConfiguration configuration = new PushMessageOutboxConfiguration();
+        configuration.setQueueCapacity(pushOutboxQueueCapacity);
+        configuration.setWorkerThreads(pushOutboxWorkerThreads);
+        configuration.setBatchSize(pushOutboxBatchSize);
+        configuration.setMaxAttempts(pushOutboxMaxAttempts);
+        configuration.setRetryBackoff(pushOutboxRetryBackoff);
+        configuration.setDeduplicationWindow(pushOutboxDeduplicationWindow);
+        return new PushMessageOutbox(pushServerClient, configuration);
+    }
+
 }
\ No newline at end of file